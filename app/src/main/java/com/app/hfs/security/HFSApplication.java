@@ -5,10 +5,15 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.os.Build;
 
+import com.hfs.security.workers.EvidenceRetentionWorker;
+import com.hfs.security.workers.EvidenceUploadWorker;
+import com.hfs.security.workers.EvidenceVerifierWorker;
+
 /**
  * Global Application class for HFS - Hybrid File Security.
  * Initializes the security notification channels required for the 
- * background monitoring service to run persistently.
+ * background monitoring service to run persistently, and schedules
+ * the periodic evidence maintenance jobs.
  */
 public class HFSApplication extends Application {
 
@@ -21,6 +26,15 @@ public class HFSApplication extends Application {
 
         // Initialize the notification channel required for Foreground Security Services
         createSecurityNotificationChannel();
+
+        // Keep accumulated intruder evidence within the configured retention limits
+        EvidenceRetentionWorker.schedule(this);
+
+        // Detect gaps or modifications in the evidence manifest and files
+        EvidenceVerifierWorker.schedule(this);
+
+        // Catch-up upload of evidence that could not be sent right after capture (if enabled)
+        EvidenceUploadWorker.schedule(this);
     }
 
     /**
@@ -0,0 +1,37 @@
+package com.hfs.security;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.hfs.security.models.AppIcon;
+import com.hfs.security.models.EncryptedEvidence;
+import com.hfs.security.utils.AppIconModelLoader;
+import com.hfs.security.utils.EvidenceModelLoader;
+
+import java.io.InputStream;
+
+/**
+ * Glide configuration for HFS.
+ * Registers the loader that decrypts intruder evidence on the fly and the
+ * loader of app icons for the Protected Apps list.
+ */
+@GlideModule
+public class HFSGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(EncryptedEvidence.class, InputStream.class, new EvidenceModelLoader.Factory());
+        registry.prepend(AppIcon.class, Bitmap.class, new AppIconModelLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -4,9 +4,13 @@ import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.hfs.security.databinding.ItemAppSelectionBinding;
+import com.hfs.security.models.AppIcon;
 import com.hfs.security.models.AppInfo;
 
 import java.util.List;
@@ -59,6 +63,13 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
         holder.bind(app, listener);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull AppViewHolder holder) {
+        // Cancel the icon load of a row that scrolled away
+        Glide.with(holder.itemView.getContext()).clear(holder.binding.ivAppIcon);
+        super.onViewRecycled(holder);
+    }
+
     @Override
     public int getItemCount() {
         return appList != null ? appList.size() : 0;
@@ -66,13 +77,41 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
 
     /**
      * Updates the data set and refreshes the UI. 
-     * Used for initial load and real-time search filtering.
+     * Used for initial load, progressive catalog updates and real-time search filtering.
+     * Only the rows that changed are rebound, so the list keeps its scroll position.
      * @param newList The new filtered or complete list of apps.
      */
     public void updateList(List<AppInfo> newList) {
+        List<AppInfo> oldList = appList;
         this.appList = newList;
-        // Notifies the recycler view that the data has changed
-        notifyDataSetChanged();
+        if (oldList == null || oldList.isEmpty()) {
+            notifyDataSetChanged();
+            return;
+        }
+        DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldList.get(oldPosition).getPackageName().equals(newList.get(newPosition).getPackageName());
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                AppInfo a = oldList.get(oldPosition);
+                AppInfo b = newList.get(newPosition);
+                return a.getAppName().equals(b.getAppName()) && a.getVersionCode() == b.getVersionCode()
+                        && a.isSelected() == b.isSelected();
+            }
+        }, false).dispatchUpdatesTo(this);
     }
 
     /**
@@ -93,7 +132,13 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
             // Set basic info
             binding.tvAppName.setText(app.getAppName());
             binding.tvPackageName.setText(app.getPackageName());
-            binding.ivAppIcon.setImageDrawable(app.getIcon());
+
+            // Icons load on demand at the row's size, from Glide's memory and disk caches when possible
+            Glide.with(itemView.getContext())
+                    .load(new AppIcon(app.getPackageName(), app.getVersionCode()))
+                    .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                    .placeholder(android.R.drawable.sym_def_app_icon)
+                    .into(binding.ivAppIcon);
 
             // 1. Reset the listener to null before setting the state 
             // to prevent triggering the callback during list scrolling.
@@ -0,0 +1,240 @@
+package com.hfs.security.adapters;
+
+import android.util.Log;
+import android.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.hfs.security.databinding.ItemEvidencePageBinding;
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceImage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Adapter for the evidence viewer pager.
+ * Each page shows one capture in a ZoomableEvidenceView. Images are decoded
+ * off the main thread at screen size and the last few are kept in a small
+ * cache, so swiping back and forth does not decrypt the same file again.
+ * Images are pinned while a page shows them; one evicted while pinned is
+ * only released once its page lets go of it, so visible pages keep loading tiles.
+ */
+public class EvidencePagerAdapter extends RecyclerView.Adapter<EvidencePagerAdapter.PageViewHolder> {
+
+    private static final String TAG = "HFS_EvidencePager";
+    // Decoded images kept around: the current page, its bound neighbours and a couple more
+    private static final int IMAGE_CACHE_SIZE = 5;
+
+    /**
+     * One capture in the viewer, with its precomputed caption.
+     */
+    public static class Page {
+        private final IntruderLog capture;
+        private final String title;
+        private final String subtitle;
+
+        public Page(IntruderLog capture, String title, String subtitle) {
+            this.capture = capture;
+            this.title = title;
+            this.subtitle = subtitle;
+        }
+
+        public IntruderLog getCapture() {
+            return capture;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getSubtitle() {
+            return subtitle;
+        }
+    }
+
+    private final List<Page> pages;
+    private final ExecutorService executor;
+    private final int targetWidth;
+    private final int targetHeight;
+
+    // Number of pages holding each image, and pinned images already evicted; guarded by pinLock
+    private final Object pinLock = new Object();
+    private final Map<EvidenceImage, Integer> pins = new HashMap<>();
+    private final Set<EvidenceImage> evictedWhilePinned = new HashSet<>();
+
+    private final LruCache<String, EvidenceImage> images = new LruCache<String, EvidenceImage>(IMAGE_CACHE_SIZE) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, EvidenceImage oldValue, EvidenceImage newValue) {
+            if (oldValue == newValue) return;
+            synchronized (pinLock) {
+                if (pins.containsKey(oldValue)) {
+                    evictedWhilePinned.add(oldValue);
+                    return;
+                }
+            }
+            oldValue.release();
+        }
+    };
+
+    /**
+     * @param pages Captures to show, in pager order.
+     * @param executor Background executor for decryption, decoding and tiles.
+     * @param targetWidth Width the preview must cover (usually the screen width).
+     * @param targetHeight Height the preview must cover (usually the screen height).
+     */
+    public EvidencePagerAdapter(List<Page> pages, ExecutorService executor, int targetWidth, int targetHeight) {
+        this.pages = pages;
+        this.executor = executor;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    @NonNull
+    @Override
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemEvidencePageBinding binding = ItemEvidencePageBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        return new PageViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        final String path = pages.get(position).getCapture().getFilePath();
+        clear(holder);
+        holder.boundPath = path;
+        holder.binding.tvPageError.setVisibility(View.GONE);
+
+        // 1. Already decoded: show immediately
+        EvidenceImage cached;
+        synchronized (pinLock) {
+            cached = images.get(path);
+            if (cached != null) pin(cached);
+        }
+        if (cached != null) {
+            show(holder, cached);
+            return;
+        }
+
+        // 2. Decode in the background; the result is cached even if the page was
+        //    recycled meanwhile, so a quick swipe back finds it ready
+        holder.binding.pageProgress.setVisibility(View.VISIBLE);
+        executor.execute(() -> {
+            EvidenceImage image = null;
+            try {
+                image = EvidenceImage.load(path, targetWidth, targetHeight);
+                // Pinned before it is cached, so it cannot be evicted before the page takes it
+                synchronized (pinLock) {
+                    pin(image);
+                }
+                images.put(path, image);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to open evidence: " + e.getMessage());
+            }
+
+            final EvidenceImage loaded = image;
+            holder.itemView.post(() -> {
+                // The holder may have been rebound to another page
+                if (!path.equals(holder.boundPath)) {
+                    if (loaded != null) unpin(loaded);
+                    return;
+                }
+                if (loaded != null) {
+                    show(holder, loaded);
+                } else {
+                    holder.binding.pageProgress.setVisibility(View.GONE);
+                    holder.binding.tvPageError.setVisibility(View.VISIBLE);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PageViewHolder holder) {
+        holder.boundPath = null;
+        clear(holder);
+    }
+
+    private void show(PageViewHolder holder, EvidenceImage image) {
+        holder.shownImage = image;
+        holder.binding.pageProgress.setVisibility(View.GONE);
+        holder.binding.zoomView.setImage(image, executor);
+    }
+
+    private void clear(PageViewHolder holder) {
+        holder.binding.zoomView.setImage(null, executor);
+        if (holder.shownImage != null) {
+            unpin(holder.shownImage);
+            holder.shownImage = null;
+        }
+    }
+
+    // Callers hold pinLock
+    private void pin(EvidenceImage image) {
+        Integer count = pins.get(image);
+        pins.put(image, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Drops one pin, releasing the image if it was evicted meanwhile and nothing else shows it.
+     */
+    private void unpin(EvidenceImage image) {
+        synchronized (pinLock) {
+            Integer count = pins.get(image);
+            if (count == null) return;
+            if (count > 1) {
+                pins.put(image, count - 1);
+                return;
+            }
+            pins.remove(image);
+            if (!evictedWhilePinned.remove(image)) return;
+        }
+        image.release();
+    }
+
+    @Override
+    public int getItemCount() {
+        return pages.size();
+    }
+
+    public Page getPage(int position) {
+        return pages.get(position);
+    }
+
+    /**
+     * Releases every cached or shown image. Called when the viewer is destroyed.
+     */
+    public void release() {
+        images.evictAll();
+        synchronized (pinLock) {
+            for (EvidenceImage image : evictedWhilePinned) {
+                image.release();
+            }
+            evictedWhilePinned.clear();
+            pins.clear();
+        }
+    }
+
+    /**
+     * ViewHolder for a single evidence page.
+     */
+    static class PageViewHolder extends RecyclerView.ViewHolder {
+        private final ItemEvidencePageBinding binding;
+        // Path this holder currently shows or is loading, and the image it pins (main thread only)
+        private String boundPath;
+        private EvidenceImage shownImage;
+
+        PageViewHolder(ItemEvidencePageBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.hfs.security.adapters;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.hfs.security.databinding.ItemIntruderLogBinding;
+import com.hfs.security.models.EncryptedEvidence;
+import com.hfs.security.models.Incident;
+import com.hfs.security.utils.EvidenceCrypto;
+
+import java.util.Objects;
+
+/**
+ * Adapter for the Intruder Evidence list.
+ * Responsible for displaying one card per intrusion incident, with its latest
+ * intruder photo and a summary of its attempts, photos and wrong PIN entries.
+ * Uses Glide for efficient image loading from the hidden internal storage.
+ * Updates are diffed on a background thread (ListAdapter), so appending a page
+ * or deleting an incident only rebinds and animates the affected items.
+ */
+public class IncidentAdapter extends ListAdapter<Incident, IncidentAdapter.IncidentViewHolder> {
+
+    private final OnIncidentActionListener listener;
+
+    /**
+     * Identity is the incident row ID; contents cover every field shown on the card.
+     */
+    private static final DiffUtil.ItemCallback<Incident> DIFF_CALLBACK = new DiffUtil.ItemCallback<Incident>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Incident oldItem, @NonNull Incident newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Incident oldItem, @NonNull Incident newItem) {
+            return oldItem.getStartedAt() == newItem.getStartedAt()
+                    && oldItem.getAlertStatus() == newItem.getAlertStatus()
+                    && oldItem.getSummary().equals(newItem.getSummary())
+                    && oldItem.getAppName().equals(newItem.getAppName())
+                    && Objects.equals(oldItem.getCoverPhotoPath(), newItem.getCoverPhotoPath());
+        }
+    };
+
+    /**
+     * Interface for handling interactions with incidents.
+     */
+    public interface OnIncidentActionListener {
+        void onIncidentClicked(Incident incident);
+        void onDeleteClicked(Incident incident);
+    }
+
+    /**
+     * Constructor for the adapter.
+     * @param listener Callback for click and delete events.
+     */
+    public IncidentAdapter(OnIncidentActionListener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public IncidentViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Initialize ViewBinding for the intruder item layout
+        ItemIntruderLogBinding binding = ItemIntruderLogBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        return new IncidentViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull IncidentViewHolder holder, int position) {
+        // Retrieve the incident for the current position
+        Incident incident = getItem(position);
+        holder.bind(incident, listener);
+    }
+
+    /**
+     * ViewHolder class using ViewBinding for high-performance UI updates.
+     */
+    static class IncidentViewHolder extends RecyclerView.ViewHolder {
+        private final ItemIntruderLogBinding binding;
+
+        public IncidentViewHolder(ItemIntruderLogBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+
+        /**
+         * Binds incident data to the UI components.
+         */
+        public void bind(Incident incident, OnIncidentActionListener listener) {
+            // 1. Display metadata (strings are precomputed off the main thread)
+            binding.tvIntruderTime.setText(incident.getFormattedDate());
+            binding.tvTargetApp.setText(incident.getTargetLabel());
+            binding.tvIncidentSummary.setText(incident.getSummary());
+
+            // 2. Load the intruder's face photo from internal path using Glide
+            // Encrypted evidence only decrypts its thumbnail section, and decoded
+            // results are kept out of Glide's disk cache so no plaintext copy is written.
+            String coverPath = incident.getCoverPhotoPath();
+            if (EvidenceCrypto.isEncrypted(coverPath)) {
+                Glide.with(itemView.getContext())
+                        .load(new EncryptedEvidence(coverPath, true))
+                        .diskCacheStrategy(DiskCacheStrategy.NONE)
+                        .centerCrop()
+                        .placeholder(android.R.drawable.ic_menu_report_image)
+                        .into(binding.ivIntruderPhoto);
+            } else {
+                Glide.with(itemView.getContext())
+                        .load(coverPath)
+                        .centerCrop()
+                        .placeholder(android.R.drawable.ic_menu_report_image)
+                        .into(binding.ivIntruderPhoto);
+            }
+
+            // 3. Handle Single Tap: Open the incident's captures
+            itemView.setOnClickListener(v -> {
+                if (listener != null) {
+                    listener.onIncidentClicked(incident);
+                }
+            });
+
+            // 4. Handle Delete Icon: Remove the incident and its evidence
+            binding.btnDeleteLog.setOnClickListener(v -> {
+                if (listener != null) {
+                    listener.onDeleteClicked(incident);
+                }
+            });
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.hfs.security.models;
+
+/**
+ * Data model representing one queued alert message.
+ * An alert covers one or more incidents: intrusions that happen while an
+ * alert is still waiting to be sent are merged into it, so the trusted
+ * number receives one summary instead of a message per attempt.
+ */
+public class Alert {
+
+    private final long id;
+    private final int status;
+    private final String appNames;
+    private final long firstAt;
+    private final long lastAt;
+    private final int incidentCount;
+    private final int attempts;
+
+    /**
+     * Constructor used by the intrusion index when reading a row.
+     *
+     * @param id Row ID in the alerts table.
+     * @param status Delivery status (see IntrusionIndexHelper.SMS_*).
+     * @param appNames Comma-separated names of the targeted apps.
+     * @param firstAt Time of the first merged intrusion in milliseconds.
+     * @param lastAt Time of the latest merged intrusion in milliseconds.
+     * @param incidentCount Number of incidents covered by the alert.
+     * @param attempts Number of send attempts made so far.
+     */
+    public Alert(long id, int status, String appNames, long firstAt, long lastAt,
+                 int incidentCount, int attempts) {
+        this.id = id;
+        this.status = status;
+        this.appNames = appNames;
+        this.firstAt = firstAt;
+        this.lastAt = lastAt;
+        this.incidentCount = incidentCount;
+        this.attempts = attempts;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getAppNames() {
+        return appNames;
+    }
+
+    public long getFirstAt() {
+        return firstAt;
+    }
+
+    public long getLastAt() {
+        return lastAt;
+    }
+
+    public int getIncidentCount() {
+        return incidentCount;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
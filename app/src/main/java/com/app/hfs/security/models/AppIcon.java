@@ -0,0 +1,54 @@
+package com.hfs.security.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * Glide model for the launcher icon of an installed app.
+ * The version code is part of the identity, so an app update replaces the
+ * cached icon instead of showing the old one.
+ */
+public class AppIcon {
+
+    private final String packageName;
+    private final long versionCode;
+
+    public AppIcon(String packageName, long versionCode) {
+        this.packageName = packageName;
+        this.versionCode = versionCode;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public long getVersionCode() {
+        return versionCode;
+    }
+
+    /**
+     * Equality doubles as Glide's memory cache key.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AppIcon)) return false;
+        AppIcon other = (AppIcon) o;
+        return versionCode == other.versionCode && Objects.equals(packageName, other.packageName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(packageName, versionCode);
+    }
+
+    /**
+     * Glide's disk cache key is derived from this string.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return "AppIcon{" + packageName + ", " + versionCode + "}";
+    }
+}
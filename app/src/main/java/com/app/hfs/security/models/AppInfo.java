@@ -1,7 +1,5 @@
 package com.hfs.security.models;
 
-import android.graphics.drawable.Drawable;
-
 /**
  * Data model representing an installed application on the user's device.
  * Used in the Protected Apps Selection screen to manage which apps are locked.
@@ -10,7 +8,7 @@ public class AppInfo implements Comparable<AppInfo> {
 
     private String appName;
     private String packageName;
-    private Drawable icon;
+    private long versionCode;
     private boolean isSelected;
 
     /**
@@ -18,13 +16,13 @@ public class AppInfo implements Comparable<AppInfo> {
      * 
      * @param appName User-friendly name of the app (e.g., "WhatsApp")
      * @param packageName System ID of the app (e.g., "com.whatsapp")
-     * @param icon The launcher icon of the app
+     * @param versionCode Installed version, identifies the cached icon (see AppIcon)
      * @param isSelected Whether this app is currently marked for protection
      */
-    public AppInfo(String appName, String packageName, Drawable icon, boolean isSelected) {
+    public AppInfo(String appName, String packageName, long versionCode, boolean isSelected) {
         this.appName = appName;
         this.packageName = packageName;
-        this.icon = icon;
+        this.versionCode = versionCode;
         this.isSelected = isSelected;
     }
 
@@ -44,12 +42,12 @@ public class AppInfo implements Comparable<AppInfo> {
         this.packageName = packageName;
     }
 
-    public Drawable getIcon() {
-        return icon;
+    public long getVersionCode() {
+        return versionCode;
     }
 
-    public void setIcon(Drawable icon) {
-        this.icon = icon;
+    public void setVersionCode(long versionCode) {
+        this.versionCode = versionCode;
     }
 
     public boolean isSelected() {
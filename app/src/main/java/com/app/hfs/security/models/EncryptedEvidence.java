@@ -0,0 +1,51 @@
+package com.hfs.security.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * Glide model for an encrypted evidence file.
+ * Identifies the file and which section to decode: the small thumbnail
+ * used by list rows, or the full-size image.
+ */
+public class EncryptedEvidence {
+
+    private final String filePath;
+    private final boolean thumbnail;
+
+    public EncryptedEvidence(String filePath, boolean thumbnail) {
+        this.filePath = filePath;
+        this.thumbnail = thumbnail;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public boolean isThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * Equality doubles as Glide's memory cache key.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EncryptedEvidence)) return false;
+        EncryptedEvidence other = (EncryptedEvidence) o;
+        return thumbnail == other.thumbnail && Objects.equals(filePath, other.filePath);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, thumbnail);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "EncryptedEvidence{" + filePath + (thumbnail ? ", thumbnail}" : "}");
+    }
+}
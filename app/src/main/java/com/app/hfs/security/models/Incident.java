@@ -0,0 +1,161 @@
+package com.hfs.security.models;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Data model representing an intrusion incident.
+ * An incident groups everything that happened while an intruder tried to
+ * open one protected app: the lock sessions, the stored captures, the
+ * detection attempts, wrong PIN entries and the single alert sent for it.
+ */
+public class Incident {
+
+    private final long id;
+    private final String sessionId;
+    private final String packageName;
+    private final String appName;
+    private final long startedAt;
+    private final long lastEventAt;
+    private final int sessionCount;
+    private final int captureCount;
+    private final int attemptCount;
+    private final int wrongPinCount;
+    private final int alertStatus;
+    private final String coverPhotoPath;
+
+    // Display strings are computed once when the row is read, not on every bind
+    private final String formattedDate;
+    private final String targetLabel;
+    private final String summary;
+
+    // SimpleDateFormat is not thread-safe; rows may be read on any worker thread
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("MMM dd, yyyy hh:mm a", Locale.getDefault());
+        }
+    };
+
+    /**
+     * Constructor used by the intrusion index when reading a row.
+     *
+     * @param id Row ID in the incidents table.
+     * @param sessionId ID of the lock session that opened the incident.
+     * @param packageName Package of the protected app (may be null for legacy captures).
+     * @param appName Readable name of the protected app.
+     * @param startedAt Time of the first event in milliseconds.
+     * @param lastEventAt Time of the latest event in milliseconds.
+     * @param sessionCount Number of lock sessions that joined the incident.
+     * @param captureCount Number of stored captures.
+     * @param attemptCount Number of detections, including merged near-duplicates.
+     * @param wrongPinCount Number of wrong PIN entries on the lock screen.
+     * @param alertStatus Delivery status of the incident alert.
+     * @param coverPhotoPath Latest evidence photo of the incident, or null if none.
+     */
+    public Incident(long id, String sessionId, String packageName, String appName,
+                    long startedAt, long lastEventAt, int sessionCount, int captureCount,
+                    int attemptCount, int wrongPinCount, int alertStatus, String coverPhotoPath) {
+        this.id = id;
+        this.sessionId = sessionId;
+        this.packageName = packageName;
+        this.appName = appName != null ? appName : "Unknown App";
+        this.startedAt = startedAt;
+        this.lastEventAt = lastEventAt;
+        this.sessionCount = sessionCount;
+        this.captureCount = captureCount;
+        this.attemptCount = attemptCount;
+        this.wrongPinCount = wrongPinCount;
+        this.alertStatus = alertStatus;
+        this.coverPhotoPath = coverPhotoPath;
+        this.formattedDate = DATE_FORMAT.get().format(new Date(startedAt));
+        this.targetLabel = "Target: " + this.appName;
+        this.summary = buildSummary(attemptCount, captureCount, wrongPinCount);
+    }
+
+    private static String buildSummary(int attempts, int captures, int wrongPins) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(attempts).append(attempts == 1 ? " attempt" : " attempts");
+        sb.append(" · ").append(captures).append(captures == 1 ? " photo" : " photos");
+        if (wrongPins > 0) {
+            sb.append(" · ").append(wrongPins).append(wrongPins == 1 ? " wrong PIN" : " wrong PINs");
+        }
+        return sb.toString();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getLastEventAt() {
+        return lastEventAt;
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    public int getCaptureCount() {
+        return captureCount;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public int getWrongPinCount() {
+        return wrongPinCount;
+    }
+
+    public int getAlertStatus() {
+        return alertStatus;
+    }
+
+    public String getCoverPhotoPath() {
+        return coverPhotoPath;
+    }
+
+    public boolean hasPhoto() {
+        return coverPhotoPath != null;
+    }
+
+    /**
+     * Human-readable start date and time, precomputed at construction.
+     * Example: Feb 09, 2026 05:18 AM
+     */
+    public String getFormattedDate() {
+        return formattedDate;
+    }
+
+    /**
+     * Card label for the protected app, precomputed at construction.
+     */
+    public String getTargetLabel() {
+        return targetLabel;
+    }
+
+    /**
+     * Card summary of the incident counters, precomputed at construction.
+     * Example: 3 attempts · 2 photos · 1 wrong PIN
+     */
+    public String getSummary() {
+        return summary;
+    }
+}
@@ -7,56 +7,85 @@ import java.util.Locale;
 
 /**
  * Data model representing a captured intrusion event.
- * This class wraps the photo file saved during a face mismatch 
- * and extracts metadata for display in the History screen.
+ * Each instance mirrors one row of the intrusion index, which is written
+ * at capture time with the target app, timestamp, evidence path,
+ * face verdict score and alert status.
  */
 public class IntruderLog {
 
-    private final String fileName;
-    private final String filePath;
+    private final long id;
+    private final String packageName;
     private final String appName;
     private final long timestamp;
+    private final String filePath;
     private final long fileSize;
+    private final float verdictScore;
+    private final int smsStatus;
+    private final int occurrences;
+
+    // Display strings are computed once when the row is read, not on every bind
+    private final String formattedDate;
+    private final String targetLabel;
+
+    // SimpleDateFormat is not thread-safe; rows may be read on any worker thread
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("MMM dd, yyyy hh:mm a", Locale.getDefault());
+        }
+    };
 
     /**
-     * Constructor that initializes log data from a physical file.
-     * Expected filename format: AppName-PackageName-Timestamp.jpg
-     * 
-     * @param file The image file captured by the background camera service.
+     * Constructor used by the intrusion index when reading a row.
+     *
+     * @param id Row ID in the intrusion index.
+     * @param packageName Package of the protected app (may be null for legacy captures).
+     * @param appName Readable name of the protected app.
+     * @param timestamp Capture time in milliseconds.
+     * @param filePath Absolute path of the evidence photo, or null if none was captured.
+     * @param fileSize Size of the evidence photo in bytes.
+     * @param verdictScore Face ratio difference reported by the verifier (-1 if unknown).
+     * @param smsStatus Alert delivery status.
+     * @param occurrences Number of near-identical captures merged into this record.
      */
-    public IntruderLog(File file) {
-        this.fileName = file.getName();
-        this.filePath = file.getAbsolutePath();
-        this.fileSize = file.length();
-        this.timestamp = file.lastModified();
-        
-        // Extract the app name from the structured filename
-        this.appName = parseAppNameFromFileName(fileName);
+    public IntruderLog(long id, String packageName, String appName, long timestamp,
+                       String filePath, long fileSize, float verdictScore, int smsStatus,
+                       int occurrences) {
+        this.id = id;
+        this.packageName = packageName;
+        this.appName = appName != null ? appName : "Unknown App";
+        this.timestamp = timestamp;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.verdictScore = verdictScore;
+        this.smsStatus = smsStatus;
+        this.occurrences = occurrences;
+        this.formattedDate = DATE_FORMAT.get().format(new Date(timestamp));
+        this.targetLabel = occurrences > 1
+                ? "Target: " + this.appName + " (" + occurrences + " attempts)"
+                : "Target: " + this.appName;
     }
 
-    /**
-     * Helper to extract the readable app name from the saved filename.
-     */
-    private String parseAppNameFromFileName(String name) {
-        try {
-            if (name.contains("-")) {
-                // Returns the first part of the name before the first hyphen
-                return name.split("-")[0];
-            }
-        } catch (Exception e) {
-            return "Unknown App";
-        }
-        return "Unknown";
+    public long getId() {
+        return id;
+    }
+
+    public String getPackageName() {
+        return packageName;
     }
 
     public String getFileName() {
-        return fileName;
+        return filePath != null ? new File(filePath).getName() : null;
     }
 
     public String getFilePath() {
         return filePath;
     }
 
+    public boolean hasPhoto() {
+        return filePath != null;
+    }
+
     public String getAppName() {
         return appName;
     }
@@ -69,13 +98,31 @@ public class IntruderLog {
         return fileSize;
     }
 
+    public float getVerdictScore() {
+        return verdictScore;
+    }
+
+    public int getSmsStatus() {
+        return smsStatus;
+    }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
     /**
-     * Converts the raw file timestamp into a human-readable date and time.
+     * Human-readable capture date and time, precomputed at construction.
      * Example: Feb 09, 2026 05:18 AM
      */
     public String getFormattedDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm a", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return formattedDate;
+    }
+
+    /**
+     * Card label for the protected app, precomputed at construction.
+     */
+    public String getTargetLabel() {
+        return targetLabel;
     }
 
     /**
@@ -88,4 +135,4 @@ public class IntruderLog {
         return new java.text.DecimalFormat("#,##0.#")
                 .format(fileSize / Math.pow(1024, digitGroups)) + " " + units[digitGroups];
     }
-}
\ No newline at end of file
+}
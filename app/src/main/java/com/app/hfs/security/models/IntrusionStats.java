@@ -0,0 +1,130 @@
+package com.hfs.security.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the intrusion statistics shown on the dashboard.
+ * Built from the incrementally maintained counter tables of the intrusion
+ * index, so reading it costs the same however much history exists.
+ */
+public class IntrusionStats {
+
+    // Length of the per-day window, in days (the last entry is today)
+    public static final int DAYS = 30;
+    public static final int HOURS = 24;
+
+    /**
+     * All-time counters of one protected app.
+     */
+    public static class AppCount {
+        private final String packageName;
+        private final String appName;
+        private final int incidents;
+        private final int attempts;
+        private final long lastIncidentAt;
+
+        public AppCount(String packageName, String appName, int incidents, int attempts, long lastIncidentAt) {
+            this.packageName = packageName;
+            this.appName = appName != null ? appName : "Unknown App";
+            this.incidents = incidents;
+            this.attempts = attempts;
+            this.lastIncidentAt = lastIncidentAt;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public String getAppName() {
+            return appName;
+        }
+
+        public int getIncidents() {
+            return incidents;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getLastIncidentAt() {
+            return lastIncidentAt;
+        }
+    }
+
+    private final int totalIncidents;
+    private final int totalAttempts;
+    private final List<AppCount> topApps;
+    private final int[] incidentsPerDay;
+    private final int[] incidentsPerHour;
+    private final int recentIncidents;
+    private final int recentAttempts;
+
+    /**
+     * @param totalIncidents All-time number of incidents.
+     * @param totalAttempts All-time number of detection attempts.
+     * @param topApps Most targeted apps, most incidents first.
+     * @param incidentsPerDay Incidents per day over the last DAYS days, oldest first.
+     * @param incidentsPerHour Incidents per hour of day (local time) over the same window.
+     * @param recentAttempts Detection attempts over the same window.
+     */
+    public IntrusionStats(int totalIncidents, int totalAttempts, List<AppCount> topApps,
+                          int[] incidentsPerDay, int[] incidentsPerHour, int recentAttempts) {
+        this.totalIncidents = totalIncidents;
+        this.totalAttempts = totalAttempts;
+        this.topApps = Collections.unmodifiableList(topApps);
+        this.incidentsPerDay = incidentsPerDay;
+        this.incidentsPerHour = incidentsPerHour;
+        this.recentAttempts = recentAttempts;
+
+        int recent = 0;
+        for (int count : incidentsPerDay) {
+            recent += count;
+        }
+        this.recentIncidents = recent;
+    }
+
+    public int getTotalIncidents() {
+        return totalIncidents;
+    }
+
+    public int getTotalAttempts() {
+        return totalAttempts;
+    }
+
+    public List<AppCount> getTopApps() {
+        return topApps;
+    }
+
+    public int[] getIncidentsPerDay() {
+        return incidentsPerDay;
+    }
+
+    public int[] getIncidentsPerHour() {
+        return incidentsPerHour;
+    }
+
+    public int getRecentIncidents() {
+        return recentIncidents;
+    }
+
+    public int getRecentAttempts() {
+        return recentAttempts;
+    }
+
+    /**
+     * Hour of day (0-23) with the most incidents in the window, or -1 if there were none.
+     */
+    public int getBusiestHour() {
+        int busiest = -1;
+        int max = 0;
+        for (int hour = 0; hour < incidentsPerHour.length; hour++) {
+            if (incidentsPerHour[hour] > max) {
+                max = incidentsPerHour[hour];
+                busiest = hour;
+            }
+        }
+        return busiest;
+    }
+}
@@ -0,0 +1,96 @@
+package com.hfs.security.receivers;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.telephony.SmsMessage;
+import android.util.Log;
+
+import com.hfs.security.utils.AlertDispatcher;
+
+/**
+ * Receives the sent and delivery reports of alert SMS.
+ * Each report carries the alert and attempt it belongs to, so late reports
+ * of an earlier attempt cannot change the outcome of a newer one.
+ */
+public class AlertStatusReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "HFS_AlertStatus";
+
+    private static final String ACTION_SENT = "com.hfs.security.ALERT_SENT";
+    private static final String ACTION_DELIVERED = "com.hfs.security.ALERT_DELIVERED";
+    private static final String EXTRA_ALERT_ID = "ALERT_ID";
+    private static final String EXTRA_ATTEMPT = "ATTEMPT";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long alertId = intent.getLongExtra(EXTRA_ALERT_ID, -1);
+        int attempt = intent.getIntExtra(EXTRA_ATTEMPT, 0);
+        if (alertId < 0) return;
+
+        // The report is recorded on the dispatcher thread
+        PendingResult result = goAsync();
+        AlertDispatcher dispatcher = AlertDispatcher.getInstance(context);
+        if (ACTION_SENT.equals(intent.getAction())) {
+            dispatcher.onPartSent(alertId, attempt, getResultCode(), result::finish);
+        } else if (ACTION_DELIVERED.equals(intent.getAction())) {
+            dispatcher.onDeliveryReport(alertId, attempt, isDelivered(intent), result::finish);
+        } else {
+            result.finish();
+        }
+    }
+
+    /**
+     * Reads the status report PDU the system attaches to the delivery intent.
+     * A missing or unreadable report is treated as delivered, since the
+     * network did accept the message.
+     */
+    private static boolean isDelivered(Intent intent) {
+        byte[] pdu = intent.getByteArrayExtra("pdu");
+        if (pdu == null) return true;
+        try {
+            SmsMessage report = SmsMessage.createFromPdu(pdu, intent.getStringExtra("format"));
+            if (report == null) return true;
+            int status = report.getStatus();
+            if ("3gpp2".equals(intent.getStringExtra("format"))) {
+                // CDMA: the error class is reported in the upper bits, 0 means delivered
+                return status == 0;
+            }
+            // GSM TP-Status: 0x00-0x3F completed or still being retried by the network
+            return status < 0x40;
+        } catch (Exception e) {
+            Log.w(TAG, "Unreadable delivery report: " + e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Sent report for one part of an alert attempt.
+     */
+    public static PendingIntent sentIntent(Context context, long alertId, int attempt, int part) {
+        return PendingIntent.getBroadcast(context, 0,
+                reportIntent(context, ACTION_SENT, alertId, attempt, part),
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_ONE_SHOT);
+    }
+
+    /**
+     * Delivery report of an alert attempt. Must be mutable, the system fills in the report PDU.
+     */
+    public static PendingIntent deliveredIntent(Context context, long alertId, int attempt) {
+        int mutable = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0;
+        return PendingIntent.getBroadcast(context, 0,
+                reportIntent(context, ACTION_DELIVERED, alertId, attempt, -1),
+                mutable | PendingIntent.FLAG_ONE_SHOT);
+    }
+
+    private static Intent reportIntent(Context context, String action, long alertId, int attempt, int part) {
+        // A distinct data URI per part keeps the PendingIntents from replacing each other
+        return new Intent(action, Uri.parse("hfs-alert://" + alertId + "/" + attempt + "/" + part),
+                context, AlertStatusReceiver.class)
+                .putExtra(EXTRA_ALERT_ID, alertId)
+                .putExtra(EXTRA_ATTEMPT, attempt);
+    }
+}
@@ -0,0 +1,46 @@
+package com.hfs.security.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.util.Log;
+
+import com.hfs.security.utils.AppCatalog;
+
+/**
+ * Keeps the AppCatalog current while the monitor service runs.
+ * Package broadcasts cannot be received through the manifest since
+ * Android 8, so AppMonitorService registers this receiver at runtime.
+ * Changes made while it is not registered are picked up by
+ * AppCatalog.refresh() through PackageManager.getChangedPackages().
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "HFS_PackageReceiver";
+
+    /**
+     * Filter for the package broadcasts this receiver handles.
+     */
+    public static IntentFilter createFilter() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        return filter;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Uri data = intent.getData();
+        String packageName = data != null ? data.getSchemeSpecificPart() : null;
+        if (packageName == null) return;
+
+        // A replace is also sent as REMOVED + ADDED; the catalog re-reads the package either way
+        Log.d(TAG, intent.getAction() + ": " + packageName);
+        AppCatalog.getInstance(context).onPackageChanged(packageName);
+    }
+}
@@ -3,46 +3,86 @@ package com.hfs.security.receivers;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Telephony;
 import android.telephony.SmsMessage;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.hfs.security.models.IntrusionStats;
 import com.hfs.security.services.AppMonitorService;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.IntrusionIndexHelper;
+import com.hfs.security.utils.SmsCommandParser;
+import com.hfs.security.utils.SmsHelper;
+import com.hfs.security.workers.RemoteCommandWorker;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Remote Command Processor (Phase 5).
  * Listens for SMS commands specifically from the Trusted Number.
- * Format: 
- *   HFS LOCK [PIN]   -> Activates full app protection.
- *   HFS UNLOCK [PIN] -> Temporarily disables protection.
+ * Format (see SmsCommandParser):
+ *   HFS LOCK [PIN]                -> Activates full app protection.
+ *   HFS UNLOCK [PIN]              -> Temporarily disables protection.
+ *   HFS STATUS [PIN]              -> Replies with service health and intrusion counters.
+ *   HFS WIPE-EVIDENCE [PIN]       -> Deletes all intruder evidence.
+ *   HFS ARM [PIN] [package,...]   -> Adds apps to the protected list.
+ *
+ * Messages are reassembled from their PDUs and processed off the main
+ * thread with goAsync(), so database access never blocks the UI. Bulk
+ * commands are handed to RemoteCommandWorker, which replies when done.
  */
 public class SmsCommandReceiver extends BroadcastReceiver {
 
     private static final String TAG = "HFS_SmsReceiver";
-    private static final String SMS_RECEIVED = "android.provider.Telephony.SMS_RECEIVED";
+
+    // Shortest national number accepted as the trusted sender
+    private static final int MIN_NUMBER_DIGITS = 7;
+
+    // Commands run one after another, in the order they arrived
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (intent.getAction() != null && intent.getAction().equals(SMS_RECEIVED)) {
-            Bundle bundle = intent.getExtras();
-            if (bundle != null) {
-                // Parse the SMS PDU (Protocol Data Unit)
-                Object[] pdus = (Object[]) bundle.get("pdus");
-                if (pdus != null) {
-                    for (Object pdu : pdus) {
-                        SmsMessage smsMessage = SmsMessage.createFromPdu((byte[]) pdu);
-                        String sender = smsMessage.getOriginatingAddress();
-                        String messageBody = smsMessage.getMessageBody();
-
-                        if (sender != null && messageBody != null) {
-                            processIncomingSms(context, sender, messageBody);
-                        }
-                    }
-                }
+        if (!Telephony.Sms.Intents.SMS_RECEIVED_ACTION.equals(intent.getAction())) return;
+
+        // 1. Reassemble multipart messages: the parts of one message share the sender
+        SmsMessage[] parts = Telephony.Sms.Intents.getMessagesFromIntent(intent);
+        if (parts == null || parts.length == 0) return;
+        Map<String, StringBuilder> messages = new LinkedHashMap<>();
+        for (SmsMessage part : parts) {
+            if (part == null || part.getOriginatingAddress() == null || part.getMessageBody() == null) continue;
+            StringBuilder body = messages.get(part.getOriginatingAddress());
+            if (body == null) {
+                body = new StringBuilder();
+                messages.put(part.getOriginatingAddress(), body);
             }
+            body.append(part.getMessageBody());
         }
+        if (messages.isEmpty()) return;
+
+        // 2. Process in the background, keeping the broadcast alive until done
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        executor.execute(() -> {
+            try {
+                for (Map.Entry<String, StringBuilder> message : messages.entrySet()) {
+                    processIncomingSms(appContext, message.getKey(), message.getValue().toString());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to process SMS command: " + e.getMessage());
+            } finally {
+                result.finish();
+            }
+        });
     }
 
     /**
@@ -50,31 +90,34 @@ public class SmsCommandReceiver extends BroadcastReceiver {
      */
     private void processIncomingSms(Context context, String sender, String message) {
         HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
-        String trustedNumber = db.getTrustedNumber();
-        String masterPin = db.getMasterPin();
 
         // 1. SECURITY CHECK: Only allow commands from the registered Trusted Number
-        // We use .contains to handle variations in country codes (+1, 00, etc.)
-        if (TextUtils_isNumberMatch(sender, trustedNumber)) {
-            
-            String upperMessage = message.toUpperCase().trim();
-
-            // 2. COMMAND PARSING: HFS LOCK [PIN]
-            if (upperMessage.startsWith("HFS LOCK")) {
-                if (upperMessage.contains(masterPin)) {
-                    executeRemoteLock(context);
-                } else {
-                    Log.w(TAG, "Remote Lock failed: Incorrect PIN from trusted sender.");
-                }
-            } 
-            // 3. COMMAND PARSING: HFS UNLOCK [PIN]
-            else if (upperMessage.startsWith("HFS UNLOCK")) {
-                if (upperMessage.contains(masterPin)) {
-                    executeRemoteUnlock(context);
-                } else {
-                    Log.w(TAG, "Remote Unlock failed: Incorrect PIN from trusted sender.");
-                }
-            }
+        if (!TextUtils_isNumberMatch(sender, db.getTrustedNumber())) return;
+
+        // 2. COMMAND PARSING: The whole message must be one well-formed command
+        SmsCommandParser.Command command = SmsCommandParser.parse(message);
+        if (command == null) return;
+        if (!db.verifyMasterPin(command.pin)) {
+            Log.w(TAG, "Remote " + command.type + " failed: Incorrect PIN from trusted sender.");
+            return;
+        }
+
+        // 3. EXECUTION
+        switch (command.type) {
+            case LOCK:
+                executeRemoteLock(context);
+                break;
+            case UNLOCK:
+                executeRemoteUnlock(context);
+                break;
+            case STATUS:
+                SmsHelper.sendCommandReply(context, sender, buildStatusReply(context));
+                break;
+            case WIPE_EVIDENCE:
+            case ARM:
+                Log.i(TAG, "REMOTE COMMAND: " + command.type.keyword + " QUEUED");
+                RemoteCommandWorker.enqueue(context, command.type, sender, command.argument);
+                break;
         }
     }
 
@@ -85,7 +128,7 @@ public class SmsCommandReceiver extends BroadcastReceiver {
         Log.i(TAG, "REMOTE COMMAND: LOCK INITIATED");
         Intent serviceIntent = new Intent(context, AppMonitorService.class);
         context.startForegroundService(serviceIntent);
-        Toast.makeText(context, "HFS: System Locked Remotely", Toast.LENGTH_SHORT).show();
+        showToast(context, "HFS: System Locked Remotely");
     }
 
     /**
@@ -95,7 +138,41 @@ public class SmsCommandReceiver extends BroadcastReceiver {
         Log.i(TAG, "REMOTE COMMAND: UNLOCK INITIATED");
         Intent serviceIntent = new Intent(context, AppMonitorService.class);
         context.stopService(serviceIntent);
-        Toast.makeText(context, "HFS: System Unlocked Remotely", Toast.LENGTH_SHORT).show();
+        showToast(context, "HFS: System Unlocked Remotely");
+    }
+
+    /**
+     * Builds the single-SMS STATUS reply from values that are already maintained:
+     * the monitor's tick time and the incremental intrusion counter tables.
+     * Kept to plain ASCII so it fits one 160-character part.
+     */
+    private String buildStatusReply(Context context) {
+        long now = System.currentTimeMillis();
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        IntrusionIndexHelper index = IntrusionIndexHelper.getInstance(context);
+        IntrusionStats stats = index.getStats(now);
+
+        String guard = AppMonitorService.isGuardActive(now) ? "ON" : "OFF";
+
+        StringBuilder reply = new StringBuilder("HFS STATUS: guard ").append(guard)
+                .append(", ").append(db.getProtectedAppsCount()).append(" apps protected. ")
+                .append("Incidents: ").append(stats.getIncidentsPerDay()[IntrusionStats.DAYS - 1])
+                .append(" today, ").append(stats.getTotalIncidents()).append(" total, ")
+                .append(stats.getTotalAttempts()).append(" attempts.");
+        long lastAt = index.getLastIncidentAt();
+        if (lastAt > 0) {
+            reply.append(" Last: ").append(new SimpleDateFormat("dd-MMM HH:mm", Locale.US).format(new Date(lastAt)));
+        }
+        int openAlerts = index.getOpenAlertCount();
+        if (openAlerts > 0) {
+            reply.append(" Alerts queued: ").append(openAlerts);
+        }
+        return reply.toString();
+    }
+
+    private void showToast(Context context, String text) {
+        new Handler(Looper.getMainLooper()).post(() ->
+                Toast.makeText(context, text, Toast.LENGTH_SHORT).show());
     }
 
     /**
@@ -103,12 +180,15 @@ public class SmsCommandReceiver extends BroadcastReceiver {
      */
     private boolean TextUtils_isNumberMatch(String sender, String saved) {
         if (sender == null || saved == null || saved.isEmpty()) return false;
-        
+
         // Strip everything except digits
         String cleanSender = sender.replaceAll("[^\\d]", "");
         String cleanSaved = saved.replaceAll("[^\\d]", "");
-        
+
+        // Alphanumeric senders and short codes never match
+        if (cleanSender.length() < MIN_NUMBER_DIGITS || cleanSaved.length() < MIN_NUMBER_DIGITS) return false;
+
         // Check if the end of the numbers match (standard for international/local overlap)
         return cleanSender.endsWith(cleanSaved) || cleanSaved.endsWith(cleanSender);
     }
-}
\ No newline at end of file
+}
@@ -3,23 +3,34 @@ package com.hfs.security.receivers;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.hfs.security.ui.SplashActivity;
 import com.hfs.security.utils.HFSDatabaseHelper;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Advanced Stealth Mode Trigger for Oppo/Realme.
  * FIXED: 
  * 1. Added a Toast message that appears immediately when dialing.
  * 2. Uses 'abortBroadcast' to force-stop the call dialer.
  * 3. Pulls the Custom PIN from the database to avoid hardcoding.
+ * 4. Checks the dialed digits against the PIN hash on a background thread.
  */
 public class StealthLaunchReceiver extends BroadcastReceiver {
 
     private static final String TAG = "HFS_StealthReceiver";
 
+    // Shortest PIN accepted by the settings screen
+    private static final int MIN_PIN_DIGITS = 4;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
     @Override
     public void onReceive(Context context, Intent intent) {
         // We listen for the event where the user presses the 'CALL' button
@@ -34,50 +45,59 @@ public class StealthLaunchReceiver extends BroadcastReceiver {
                 return;
             }
 
-            // 2. Fetch your CUSTOM PIN from the database settings
-            HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
-            String savedSecretPin = db.getMasterPin(); 
-
-            // 3. Normalize strings (Remove *, #, or spaces)
+            // 2. Normalize the dialed string (Remove *, #, or spaces)
             String cleanDialed = dialedNumber.replaceAll("[^\\d]", "");
-            String cleanSaved = savedSecretPin.replaceAll("[^\\d]", "");
+            HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+            if (cleanDialed.length() < MIN_PIN_DIGITS || !db.hasMasterPin()) return;
 
-            // 4. Verification Check
-            if (!cleanSaved.isEmpty() && cleanDialed.equals(cleanSaved)) {
-                
-                Log.i(TAG, "Dialer Match: Intercepting call for PIN " + cleanDialed);
+            // 3. Verification Check against the PIN hash, which is too slow for the main thread.
+            // The call is held until the check is done.
+            final Context appContext = context.getApplicationContext();
+            final PendingResult result = goAsync();
+            executor.execute(() -> {
+                try {
+                    if (db.verifyMasterPin(cleanDialed)) {
+                        Log.i(TAG, "Dialer Match: Intercepting call for the secret PIN");
 
-                // 5. USER REQUEST: Show Toast message immediately to confirm detection
-                Toast.makeText(context, "HFS: Security PIN Detected. Opening App...", Toast.LENGTH_LONG).show();
+                        /*
+                         * 4. ABORT THE CALL
+                         * setResultData(null) prevents the phone from connecting the call.
+                         * abortBroadcast() stops the system from recording this number in Call Logs.
+                         */
+                        result.setResultData(null);
+                        result.abortBroadcast();
+                        launchApp(appContext);
+                    }
+                } finally {
+                    result.finish();
+                }
+            });
+        }
+    }
 
-                /* 
-                 * 6. ABORT THE CALL 
-                 * setResultData(null) prevents the phone from connecting the call.
-                 * abortBroadcast() stops the system from recording this number in Call Logs.
-                 */
-                setResultData(null);
-                abortBroadcast();
+    private void launchApp(Context context) {
+        // 5. USER REQUEST: Show Toast message immediately to confirm detection
+        new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(context,
+                "HFS: Security PIN Detected. Opening App...", Toast.LENGTH_LONG).show());
 
-                // 7. LAUNCH THE APP WITH OVERLAY-LEVEL PRIORITY
-                // We use SplashActivity as the clean entry point
-                Intent launchIntent = new Intent(context, SplashActivity.class);
-                
-                /*
-                 * FLAG_ACTIVITY_NEW_TASK: Required when starting from a receiver.
-                 * FLAG_ACTIVITY_CLEAR_TOP: Ensures a fresh instance of the app.
-                 * FLAG_ACTIVITY_SINGLE_TOP: Prevents duplicate screens.
-                 */
-                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK 
-                                    | Intent.FLAG_ACTIVITY_CLEAR_TOP 
-                                    | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                
-                try {
-                    // Start the app in the foreground
-                    context.startActivity(launchIntent);
-                } catch (Exception e) {
-                    Log.e(TAG, "Oppo Restriction Error: Could not launch activity: " + e.getMessage());
-                }
-            }
+        // 6. LAUNCH THE APP WITH OVERLAY-LEVEL PRIORITY
+        // We use SplashActivity as the clean entry point
+        Intent launchIntent = new Intent(context, SplashActivity.class);
+        
+        /*
+         * FLAG_ACTIVITY_NEW_TASK: Required when starting from a receiver.
+         * FLAG_ACTIVITY_CLEAR_TOP: Ensures a fresh instance of the app.
+         * FLAG_ACTIVITY_SINGLE_TOP: Prevents duplicate screens.
+         */
+        launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK 
+                            | Intent.FLAG_ACTIVITY_CLEAR_TOP 
+                            | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        
+        try {
+            // Start the app in the foreground
+            context.startActivity(launchIntent);
+        } catch (Exception e) {
+            Log.e(TAG, "Oppo Restriction Error: Could not launch activity: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
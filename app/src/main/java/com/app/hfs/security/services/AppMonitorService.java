@@ -16,15 +16,18 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import com.hfs.security.HFSApplication;
 import com.hfs.security.R;
+import com.hfs.security.receivers.PackageChangeReceiver;
 import com.hfs.security.ui.LockScreenActivity;
 import com.hfs.security.ui.MainActivity;
 import com.hfs.security.utils.HFSDatabaseHelper;
 
 import java.util.Set;
 
+
 /**
  * The core Background Service for HFS.
  * FIXED: Increased detection frequency and improved overlay trigger 
@@ -43,12 +46,25 @@ public class AppMonitorService extends Service {
     private Runnable monitorRunnable;
     private HFSDatabaseHelper db;
     private String lastPackageInForeground = "";
+    private final HFSDatabaseHelper.ProtectedAppsListener protectedAppsListener = this::onProtectedAppsChanged;
+    private final PackageChangeReceiver packageChangeReceiver = new PackageChangeReceiver();
+
+    // Time of the last monitoring tick, read by the remote STATUS command
+    private static volatile long lastTickAt;
+
+    // The loop ticks every 500 ms; a longer silence means it is not running
+    public static final long HEALTHY_TICK_MS = 10 * 1000L;
 
     @Override
     public void onCreate() {
         super.onCreate();
         db = HFSDatabaseHelper.getInstance(this);
         monitorHandler = new Handler(Looper.getMainLooper());
+        db.addProtectedAppsListener(protectedAppsListener);
+
+        // Keep the installed-app catalog current while the guard runs
+        ContextCompat.registerReceiver(this, packageChangeReceiver,
+                PackageChangeReceiver.createFilter(), ContextCompat.RECEIVER_EXPORTED);
         Log.d(TAG, "Security Monitor Service Created");
     }
 
@@ -91,6 +107,7 @@ public class AppMonitorService extends Service {
         monitorRunnable = new Runnable() {
             @Override
             public void run() {
+                lastTickAt = System.currentTimeMillis();
                 String currentApp = getForegroundPackageName();
 
                 // 1. Only act if the foreground app is different from the last check
@@ -101,10 +118,8 @@ public class AppMonitorService extends Service {
                         
                         lastPackageInForeground = currentApp;
                         
-                        // 3. Check if the app is in the user's protected list
-                        Set<String> protectedApps = db.getProtectedPackages();
-                        
-                        if (protectedApps.contains(currentApp)) {
+                        // 3. Check if the app is in the user's protected list (lock-free, no copy)
+                        if (db.isPackageProtected(currentApp)) {
                             Log.i(TAG, "PROTECTED APP DETECTED: " + currentApp);
                             triggerLockOverlay(currentApp);
                         }
@@ -118,6 +133,21 @@ public class AppMonitorService extends Service {
         monitorHandler.post(monitorRunnable);
     }
 
+    /**
+     * Locks an app that was protected while it is on screen (e.g. by a remote
+     * ARM) right away, instead of at its next launch. Runs on the main thread,
+     * like the monitoring loop.
+     */
+    private void onProtectedAppsChanged(Set<String> added, Set<String> removed) {
+        if (added.isEmpty()) return;
+        // Not lastPackageInForeground: while HFS itself is open that still names the previous app
+        String currentApp = getForegroundPackageName();
+        if (added.contains(currentApp)) {
+            Log.i(TAG, "FOREGROUND APP NOW PROTECTED: " + currentApp);
+            triggerLockOverlay(currentApp);
+        }
+    }
+
     /**
      * Uses UsageStatsManager to identify the app currently visible on screen.
      */
@@ -175,11 +205,27 @@ public class AppMonitorService extends Service {
         }
     }
 
+    /**
+     * Returns when the monitoring loop last ran, or 0 if it has not run in this process.
+     */
+    public static long getLastTickAt() {
+        return lastTickAt;
+    }
+
+    /**
+     * True if the monitoring loop has ticked within the last {@link #HEALTHY_TICK_MS}.
+     */
+    public static boolean isGuardActive(long now) {
+        return now - lastTickAt <= HEALTHY_TICK_MS;
+    }
+
     @Override
     public void onDestroy() {
         if (monitorHandler != null && monitorRunnable != null) {
             monitorHandler.removeCallbacks(monitorRunnable);
         }
+        db.removeProtectedAppsListener(protectedAppsListener);
+        unregisterReceiver(packageChangeReceiver);
         super.onDestroy();
         Log.d(TAG, "Security Monitor Service Destroyed");
     }
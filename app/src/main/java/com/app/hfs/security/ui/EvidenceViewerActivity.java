@@ -0,0 +1,144 @@
+package com.hfs.security.ui;
+
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.viewpager2.widget.ViewPager2;
+
+import com.hfs.security.adapters.EvidencePagerAdapter;
+import com.hfs.security.databinding.ActivityEvidenceViewerBinding;
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.IntrusionIndexHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Full-screen in-app viewer for intruder evidence.
+ * Shows every capture of the given incidents in one swipeable pager,
+ * starting at the newest capture of the incident that was tapped.
+ * Photos are decrypted in memory and shown at full resolution when zoomed;
+ * they are never handed to another app.
+ */
+public class EvidenceViewerActivity extends AppCompatActivity {
+
+    public static final String EXTRA_INCIDENT_IDS = "INCIDENT_IDS";
+    public static final String EXTRA_START_INCIDENT_ID = "START_INCIDENT_ID";
+
+    private ActivityEvidenceViewerBinding binding;
+    private EvidencePagerAdapter adapter;
+
+    // Index queries
+    private ExecutorService indexExecutor;
+    // Decryption, preview and tile decoding; two threads so a neighbour can load while tiles decode
+    private ExecutorService decodeExecutor;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // Evidence must not show up in screenshots or the recent apps preview
+        getWindow().setFlags(WindowManager.LayoutParams.FLAG_SECURE,
+                WindowManager.LayoutParams.FLAG_SECURE);
+
+        binding = ActivityEvidenceViewerBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        indexExecutor = Executors.newSingleThreadExecutor();
+        decodeExecutor = Executors.newFixedThreadPool(2);
+
+        long[] incidentIds = getIntent().getLongArrayExtra(EXTRA_INCIDENT_IDS);
+        long startIncidentId = getIntent().getLongExtra(EXTRA_START_INCIDENT_ID, -1);
+        if (incidentIds == null || incidentIds.length == 0) {
+            finish();
+            return;
+        }
+
+        loadPages(incidentIds, startIncidentId);
+    }
+
+    /**
+     * Reads the captures of every incident (newest first within each incident)
+     * and builds one page per stored photo.
+     */
+    private void loadPages(long[] incidentIds, long startIncidentId) {
+        IntrusionIndexHelper index = IntrusionIndexHelper.getInstance(this);
+
+        indexExecutor.execute(() -> {
+            List<EvidencePagerAdapter.Page> pages = new ArrayList<>();
+            int startPosition = 0;
+
+            for (long incidentId : incidentIds) {
+                List<IntruderLog> captures = new ArrayList<>();
+                for (IntruderLog log : index.getIncidentCaptures(incidentId)) {
+                    if (log.hasPhoto()) captures.add(log);
+                }
+                if (incidentId == startIncidentId) {
+                    startPosition = pages.size();
+                }
+                for (int i = 0; i < captures.size(); i++) {
+                    IntruderLog log = captures.get(i);
+                    StringBuilder subtitle = new StringBuilder(log.getFormattedDate());
+                    subtitle.append(" · Photo ").append(i + 1).append(" of ").append(captures.size());
+                    if (log.getOccurrences() > 1) {
+                        subtitle.append(" · ").append(log.getOccurrences()).append(" attempts");
+                    }
+                    pages.add(new EvidencePagerAdapter.Page(log, log.getTargetLabel(), subtitle.toString()));
+                }
+            }
+
+            final int initialPosition = startPosition;
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                showPages(pages, initialPosition);
+            });
+        });
+    }
+
+    private void showPages(List<EvidencePagerAdapter.Page> pages, int startPosition) {
+        binding.viewerProgress.setVisibility(View.GONE);
+        if (pages.isEmpty()) {
+            Toast.makeText(this, "No photos were captured for these incidents", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        // Previews only need to cover the screen; zooming in decodes full-resolution tiles
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        adapter = new EvidencePagerAdapter(pages, decodeExecutor, metrics.widthPixels, metrics.heightPixels);
+
+        // Keep one page bound on each side, so neighbours decode before they are swiped in
+        binding.evidencePager.setOffscreenPageLimit(1);
+        binding.evidencePager.setAdapter(adapter);
+        binding.evidencePager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                showCaption(position);
+            }
+        });
+        binding.evidencePager.setCurrentItem(startPosition, false);
+        showCaption(startPosition);
+    }
+
+    private void showCaption(int position) {
+        EvidencePagerAdapter.Page page = adapter.getPage(position);
+        binding.tvViewerTitle.setText(page.getTitle());
+        binding.tvViewerSubtitle.setText(page.getSubtitle());
+    }
+
+    @Override
+    protected void onDestroy() {
+        indexExecutor.shutdownNow();
+        decodeExecutor.shutdownNow();
+        if (adapter != null) {
+            adapter.release();
+        }
+        super.onDestroy();
+    }
+}
@@ -1,5 +1,7 @@
 package com.hfs.security.ui;
 
+import android.content.Context;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -20,11 +22,16 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.hfs.security.databinding.ActivityLockScreenBinding;
+import com.hfs.security.utils.AlertDispatcher;
+import com.hfs.security.utils.CapturedFrame;
 import com.hfs.security.utils.FaceAuthHelper;
 import com.hfs.security.utils.FileSecureHelper;
 import com.hfs.security.utils.HFSDatabaseHelper;
-import com.hfs.security.utils.SmsHelper;
+import com.hfs.security.utils.IntrusionIndexHelper;
+import com.hfs.security.utils.LocationCache;
+import com.hfs.security.workers.EvidenceUploadWorker;
 
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -45,6 +52,12 @@ public class LockScreenActivity extends AppCompatActivity {
     
     private boolean isProcessing = false;
     private boolean isActionTaken = false;
+    private boolean isPinChecking = false;
+
+    // Every lock session records its events in one incident, opened on the first event.
+    // incidentId is only touched on the index's background thread.
+    private final String sessionId = UUID.randomUUID().toString();
+    private long incidentId = -1;
     private final Handler watchdogHandler = new Handler(Looper.getMainLooper());
 
     // Biometric (Fingerprint) Variables
@@ -83,7 +96,7 @@ public class LockScreenActivity extends AppCompatActivity {
         watchdogHandler.postDelayed(() -> {
             if (!isActionTaken && !isFinishing()) {
                 Log.w(TAG, "Watchdog: Identity verification timed out. Triggering Lockdown.");
-                handleIntrusionDetection(null); 
+                handleIntrusionDetection(null, IntrusionIndexHelper.SCORE_UNKNOWN, null);
             }
         }, 2000);
 
@@ -138,7 +151,7 @@ public class LockScreenActivity extends AppCompatActivity {
             } catch (ExecutionException | InterruptedException e) {
                 Log.e(TAG, "CameraX Initialization failed: " + e.getMessage());
                 // If camera hardware fails, trigger lock for safety
-                handleIntrusionDetection(null);
+                handleIntrusionDetection(null, IntrusionIndexHelper.SCORE_UNKNOWN, null);
             }
         }, ContextCompat.getMainExecutor(this));
     }
@@ -160,9 +173,9 @@ public class LockScreenActivity extends AppCompatActivity {
             }
 
             @Override
-            public void onMismatchFound() {
+            public void onMismatchFound(float score, Rect faceBounds) {
                 // FAILURE: Unknown face (Mom/Intruder). Lock immediately.
-                handleIntrusionDetection(imageProxy);
+                handleIntrusionDetection(imageProxy, score, faceBounds);
             }
 
             @Override
@@ -176,43 +189,104 @@ public class LockScreenActivity extends AppCompatActivity {
     /**
      * Phase 3 Logic: Triggers the intruder UI, saves photo, and sends SMS.
      */
-    private void handleIntrusionDetection(ImageProxy imageProxy) {
+    private void handleIntrusionDetection(ImageProxy imageProxy, float verdictScore, Rect faceBounds) {
         if (isActionTaken) return;
         isActionTaken = true;
 
         // Clear the 2s timer as we are taking action now
         watchdogHandler.removeCallbacksAndMessages(null);
 
+        // A fix for the alert; only the foreground gets one without background location access
+        LocationCache.getInstance(this).requestFreshFix();
+
+        // The camera reuses the frame once this callback returns, so the capture works on a copy
+        CapturedFrame frame = imageProxy != null ? CapturedFrame.copyOf(imageProxy) : null;
+
+        // 1. Update UI to Forbidden State
         runOnUiThread(() -> {
-            // 1. Update UI to Forbidden State
             binding.scanningIndicator.setVisibility(View.GONE);
             binding.lockContainer.setVisibility(View.VISIBLE);
-            
-            // 2. Secretly save the intruder's photo if available
-            if (imageProxy != null) {
-                FileSecureHelper.saveIntruderCapture(LockScreenActivity.this, imageProxy);
+        });
+
+        // 2. Secretly save the intruder's photo (if available) and index the intrusion.
+        // Hashing, encoding, encryption and SQLite run on the index's background thread.
+        String packageName = getIntent().getStringExtra("TARGET_APP_PACKAGE");
+        String appName = getTargetAppName();
+        Context appContext = getApplicationContext();
+        IntrusionIndexHelper.getInstance(this).execute(() -> {
+            long incident = getIncidentId();
+            FileSecureHelper.CaptureResult capture = FileSecureHelper.saveIntruderCapture(
+                    appContext, incident, frame, faceBounds, packageName, appName, verdictScore);
+            if (!capture.duplicate) {
+                // Get the new evidence off the device as soon as the network allows
+                EvidenceUploadWorker.requestUpload(appContext);
             }
 
-            // 3. Send the Alert SMS to the Trusted Number
-            String appName = getIntent().getStringExtra("TARGET_APP_NAME");
-            if (appName == null) appName = "Protected App";
-            SmsHelper.sendAlertSms(LockScreenActivity.this, appName);
+            // 3. Queue one Alert SMS per incident for the Trusted Number; sending, retries
+            // and delivery tracking happen in the AlertDispatcher.
+            AlertDispatcher.getInstance(appContext).enqueue(incident, appName, System.currentTimeMillis());
+
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(this, "⚠ Unauthorized Access Detected", Toast.LENGTH_LONG).show();
 
-            Toast.makeText(this, "⚠ Unauthorized Access Detected", Toast.LENGTH_LONG).show();
-            
-            // 4. Force biometric prompt for the owner to regain control
-            biometricPrompt.authenticate(promptInfo);
+                // 4. Force biometric prompt for the owner to regain control
+                biometricPrompt.authenticate(promptInfo);
+            });
         });
     }
 
     private void checkPinAndUnlock() {
         String input = binding.etPinInput.getText().toString();
-        if (input.equals(db.getMasterPin())) {
-            finish();
-        } else {
-            binding.tvErrorMsg.setText("Invalid PIN. Access Denied.");
-            binding.etPinInput.setText("");
+        if (isPinChecking || input.isEmpty()) return;
+
+        // The PIN hash is deliberately slow, so it is checked off the UI thread
+        isPinChecking = true;
+        db.verifyMasterPinAsync(input, valid -> {
+            isPinChecking = false;
+            if (isFinishing() || isDestroyed()) return;
+            if (valid) {
+                finish();
+            } else {
+                binding.tvErrorMsg.setText(db.hasMasterPin()
+                        ? "Invalid PIN. Access Denied." : "No PIN set. Use your fingerprint.");
+                binding.etPinInput.setText("");
+                long now = System.currentTimeMillis();
+                IntrusionIndexHelper index = IntrusionIndexHelper.getInstance(this);
+                index.execute(() -> index.recordWrongPin(getIncidentId(), now));
+            }
+        });
+    }
+
+    private String getTargetAppName() {
+        String appName = getIntent().getStringExtra("TARGET_APP_NAME");
+        return appName != null ? appName : "Protected App";
+    }
+
+    /**
+     * Returns the incident of this lock session, opening (or joining) it on first use.
+     * Runs a SQLite transaction, so it is only called on the index's background thread.
+     */
+    private long getIncidentId() {
+        if (incidentId == -1) {
+            incidentId = IntrusionIndexHelper.getInstance(this).openIncident(sessionId,
+                    getIntent().getStringExtra("TARGET_APP_PACKAGE"), getTargetAppName(),
+                    System.currentTimeMillis());
         }
+        return incidentId;
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Location updates are only delivered while the app is in the foreground
+        LocationCache.getInstance(this).start();
+    }
+
+    @Override
+    protected void onStop() {
+        LocationCache.getInstance(this).stop();
+        super.onStop();
     }
 
     @Override
@@ -83,6 +83,7 @@ public class MainActivity extends AppCompatActivity {
 
         // 4. Check for and request all high-security permissions
         checkAllSecurityPermissions();
+        checkSettingsState();
 
         // 5. Handle Setup redirection if necessary
         if (getIntent().getBooleanExtra("SHOW_SETUP", false)) {
@@ -138,7 +139,9 @@ public class MainActivity extends AppCompatActivity {
                 Manifest.permission.SEND_SMS,
                 Manifest.permission.RECEIVE_SMS,
                 Manifest.permission.READ_PHONE_STATE,
-                Manifest.permission.PROCESS_OUTGOING_CALLS
+                Manifest.permission.PROCESS_OUTGOING_CALLS,
+                Manifest.permission.ACCESS_FINE_LOCATION,
+                Manifest.permission.ACCESS_COARSE_LOCATION
         };
 
         // Handle Android 13+ Notification permission
@@ -202,6 +205,40 @@ public class MainActivity extends AppCompatActivity {
                 .show();
     }
 
+    /**
+     * Tells the user if the settings could not be read or had to be reset,
+     * since protection is off in both cases until they act.
+     */
+    private void checkSettingsState() {
+        if (!db.isSettingsAvailable()) {
+            new AlertDialog.Builder(this)
+                    .setTitle("Settings Unavailable")
+                    .setMessage("HFS could not read its settings (PIN, trusted number, protected apps), "
+                            + "so protection is off. Nothing was deleted. Retry now, or restart the phone and open HFS again.")
+                    .setCancelable(false)
+                    .setPositiveButton("Retry", (dialog, which) -> {
+                        if (db.retrySettingsLoad()) {
+                            recreate();
+                        } else {
+                            checkSettingsState();
+                        }
+                    })
+                    .setNegativeButton("Close", null)
+                    .show();
+        } else if (db.consumeSettingsResetNotice()) {
+            new AlertDialog.Builder(this)
+                    .setTitle("Settings Reset")
+                    .setMessage("The key protecting your HFS settings is no longer on this device "
+                            + "(for example after restoring a backup), so your PIN, trusted number and "
+                            + "protected apps could not be recovered. Please set them up again.")
+                    .setCancelable(false)
+                    .setPositiveButton("Open Settings", (dialog, which) -> {
+                        if (navController != null) navController.navigate(R.id.nav_settings);
+                    })
+                    .show();
+        }
+    }
+
     private void showHelpDialog() {
         new AlertDialog.Builder(this)
                 .setTitle("HFS Security Help")
@@ -16,18 +16,33 @@ import androidx.navigation.Navigation;
 
 import com.hfs.security.R;
 import com.hfs.security.databinding.FragmentHomeBinding;
+import com.hfs.security.models.IntrusionStats;
 import com.hfs.security.services.AppMonitorService;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.IntrusionIndexHelper;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The Main Dashboard of the HFS App.
  * Provides the user with a master toggle to activate/deactivate 
  * the Silent Intruder Detection Service.
+ * Also shows intrusion statistics, read from the counter tables of the
+ * intrusion index and refreshed whenever an incident changes.
  */
-public class HomeFragment extends Fragment {
+public class HomeFragment extends Fragment implements IntrusionIndexHelper.ChangeListener {
 
     private FragmentHomeBinding binding;
     private HFSDatabaseHelper db;
+    private IntrusionIndexHelper index;
+
+    // Executor for the statistics query; keeps database access off the UI thread
+    private ExecutorService executor;
+    // Set while a statistics load is queued, so bursts of changes trigger one reload
+    private boolean isStatsLoadPending = false;
 
     @Nullable
     @Override
@@ -41,9 +56,15 @@ public class HomeFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         db = HFSDatabaseHelper.getInstance(requireContext());
+        index = IntrusionIndexHelper.getInstance(requireContext());
+        executor = Executors.newSingleThreadExecutor();
+        isStatsLoadPending = false;
 
         setupClickListeners();
         refreshUI();
+
+        // Keep the statistics current while the dashboard is visible
+        index.addChangeListener(this);
     }
 
     /**
@@ -92,6 +113,68 @@ public class HomeFragment extends Fragment {
         // Display summary counts from the database
         int protectedCount = db.getProtectedAppsCount();
         binding.tvProtectedAppsSummary.setText(protectedCount + " Apps currently protected");
+
+        loadStats();
+    }
+
+    /**
+     * Reads the intrusion statistics in the background. The query only touches
+     * the bounded counter tables, so it is cheap however long the history is.
+     */
+    private void loadStats() {
+        if (isStatsLoadPending) return;
+        isStatsLoadPending = true;
+
+        executor.execute(() -> {
+            IntrusionStats stats = index.getStats(System.currentTimeMillis());
+
+            if (getActivity() != null && isAdded()) {
+                getActivity().runOnUiThread(() -> {
+                    isStatsLoadPending = false;
+                    if (binding != null) showStats(stats);
+                });
+            }
+        });
+    }
+
+    private void showStats(IntrusionStats stats) {
+        binding.tvIntruderCount.setText(stats.getTotalIncidents() + " Caught");
+
+        if (stats.getRecentIncidents() == 0) {
+            binding.tvActivitySummary.setText("No intrusions recorded");
+        } else {
+            binding.tvActivitySummary.setText(stats.getRecentIncidents() + " incidents · "
+                    + stats.getRecentAttempts() + " attempts");
+        }
+        binding.chartDaily.setValues(stats.getIncidentsPerDay());
+        binding.chartHourly.setValues(stats.getIncidentsPerHour());
+
+        int busiestHour = stats.getBusiestHour();
+        binding.tvHourlyLabel.setText(busiestHour < 0 ? "By hour of day"
+                : String.format(Locale.getDefault(), "By hour of day (peak %02d:00)", busiestHour));
+
+        List<IntrusionStats.AppCount> topApps = stats.getTopApps();
+        if (topApps.isEmpty()) {
+            binding.tvTopApps.setText("None");
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (IntrusionStats.AppCount app : topApps) {
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(app.getAppName()).append(" — ").append(app.getIncidents())
+                        .append(app.getIncidents() == 1 ? " incident" : " incidents");
+            }
+            binding.tvTopApps.setText(sb.toString());
+        }
+    }
+
+    @Override
+    public void onIncidentChanged(long incidentId) {
+        loadStats();
+    }
+
+    @Override
+    public void onIncidentsRemoved(List<Long> incidentIds) {
+        // Statistics describe past intrusions and are kept when evidence is deleted
     }
 
     /**
@@ -138,6 +221,8 @@ public class HomeFragment extends Fragment {
 
     @Override
     public void onDestroyView() {
+        index.removeChangeListener(this);
+        executor.shutdownNow();
         super.onDestroyView();
         binding = null;
     }
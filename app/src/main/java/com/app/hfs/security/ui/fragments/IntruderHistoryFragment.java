@@ -3,40 +3,108 @@ package com.hfs.security.ui.fragments;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
-import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
-import com.hfs.security.R;
-import com.hfs.security.adapters.IntruderLogAdapter;
+import com.hfs.security.adapters.IncidentAdapter;
 // CORRECTED IMPORT: Matches fragment_history.xml
 import com.hfs.security.databinding.FragmentHistoryBinding; 
-import com.hfs.security.models.IntruderLog;
+import com.hfs.security.models.Incident;
+import com.hfs.security.ui.EvidenceViewerActivity;
+import com.hfs.security.utils.EvidenceManager;
+import com.hfs.security.utils.IntrusionIndexHelper;
+import com.hfs.security.workers.EvidenceExportWorker;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Screen for viewing Intruder Evidence (Phase 6).
- * Scans the hidden internal directory for captured photos and intrusion logs.
- * Displays data in a grid for easy identification of intruders.
+ * Reads incidents from the intrusion index (newest first) one page at a
+ * time as the user scrolls, instead of scanning the evidence directory.
+ * Displays one card per incident in a grid for easy identification of intruders.
+ * Changes written by the capture path, deletions and retention are pushed by
+ * the index as they are committed, and only the affected cards are inserted,
+ * updated or removed.
  */
-public class IntruderHistoryFragment extends Fragment implements IntruderLogAdapter.OnLogActionListener {
+public class IntruderHistoryFragment extends Fragment
+        implements IncidentAdapter.OnIncidentActionListener, IntrusionIndexHelper.ChangeListener {
+
+    private static final String TAG = "HFS_History";
 
     // CORRECTED BINDING CLASS NAME
     private FragmentHistoryBinding binding;
-    private IntruderLogAdapter adapter;
-    private List<IntruderLog> intruderLogList;
+    private IncidentAdapter adapter;
+    private IntrusionIndexHelper index;
+    private EvidenceManager evidenceManager;
+
+    // Incidents loaded so far (main thread only); the adapter receives immutable copies
+    private final List<Incident> incidentList = new ArrayList<>();
+
+    // Number of incidents fetched per page from the intrusion index
+    private static final int PAGE_SIZE = 40;
+    // Start fetching the next page when this many items remain below the viewport
+    private static final int PREFETCH_DISTANCE = 12;
+
+    private boolean isLoadingPage = false;
+    private boolean hasMorePages = true;
+    // Incremented on every reset so results of stale page queries are dropped
+    private int loadGeneration = 0;
+
+    // Executor for index queries and file deletion to keep the UI responsive
+    private ExecutorService executor;
+
+    // What to export while the user picks the export file: the selected incident IDs, or
+    // everything if pendingExportAll. Both survive recreation; if neither is set, the export is cancelled.
+    private long[] pendingExportIds;
+    private boolean pendingExportAll;
+    private static final String STATE_EXPORT_IDS = "export_ids";
+    private static final String STATE_EXPORT_ALL = "export_all";
+    // Shown while an export job runs; null otherwise
+    private AlertDialog exportDialog;
+    // WorkManager Data is limited to 10 KB, which bounds the size of an explicit selection
+    private static final int MAX_EXPORT_SELECTION = 1000;
+
+    private final ActivityResultLauncher<String> createExportDocument = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/zip"), this::onExportTargetChosen);
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // The document picker may return after rotation or process death
+        if (savedInstanceState != null) {
+            pendingExportIds = savedInstanceState.getLongArray(STATE_EXPORT_IDS);
+            pendingExportAll = savedInstanceState.getBoolean(STATE_EXPORT_ALL, false);
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLongArray(STATE_EXPORT_IDS, pendingExportIds);
+        outState.putBoolean(STATE_EXPORT_ALL, pendingExportAll);
+    }
 
     @Nullable
     @Override
@@ -50,100 +118,221 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         
-        intruderLogList = new ArrayList<>();
+        index = IntrusionIndexHelper.getInstance(requireContext());
+        evidenceManager = EvidenceManager.getInstance(requireContext());
+        executor = Executors.newSingleThreadExecutor();
         setupRecyclerView();
         loadIntrusionLogs();
 
-        // Manual refresh button logic
+        // Live updates: apply incident changes as the index commits them
+        index.addChangeListener(this);
+
+        // Manual refresh button logic (live updates normally keep the list current)
         binding.btnRefreshLogs.setOnClickListener(v -> loadIntrusionLogs());
 
         // Clear All button logic
         binding.btnClearAll.setOnClickListener(v -> showClearAllConfirmation());
+
+        // Export: pick incidents, then the target document; the job reports progress here
+        binding.btnExport.setOnClickListener(v -> showExportSelection());
+        WorkManager.getInstance(requireContext())
+                .getWorkInfosForUniqueWorkLiveData(EvidenceExportWorker.UNIQUE_WORK_NAME)
+                .observe(getViewLifecycleOwner(), this::onExportStateChanged);
     }
 
     private void setupRecyclerView() {
         // Use a Grid Layout (2 columns) to show intruder photos clearly
-        binding.rvIntruderLogs.setLayoutManager(new GridLayoutManager(requireContext(), 2));
-        adapter = new IntruderLogAdapter(intruderLogList, this);
+        GridLayoutManager layoutManager = new GridLayoutManager(requireContext(), 2);
+        binding.rvIntruderLogs.setLayoutManager(layoutManager);
+        adapter = new IncidentAdapter(this);
         binding.rvIntruderLogs.setAdapter(adapter);
+
+        // Incremental loading: request the next page shortly before the end is reached
+        binding.rvIntruderLogs.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= incidentList.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     /**
-     * Scans the HFS internal storage directory for .jpg files.
-     * Path: /Android/data/com.hfs.security/files/intruders/
+     * Resets the list and loads the first page from the intrusion index.
      */
     private void loadIntrusionLogs() {
+        loadGeneration++;
+        incidentList.clear();
+        hasMorePages = true;
+        isLoadingPage = false;
         binding.progressBar.setVisibility(View.VISIBLE);
-        intruderLogList.clear();
+        loadNextPage();
+    }
 
-        // Reference the secure intruders directory
-        File intrudersDir = new File(requireContext().getExternalFilesDir(null), "intruders");
-        
-        if (intrudersDir.exists() && intrudersDir.isDirectory()) {
-            File[] photoFiles = intrudersDir.listFiles((dir, name) -> 
-                    name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png"));
-            
-            if (photoFiles != null) {
-                for (File file : photoFiles) {
-                    intruderLogList.add(new IntruderLog(file));
-                }
+    /**
+     * Fetches the page following the last loaded incident (keyset paging),
+     * so each page costs the same regardless of history size.
+     */
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMorePages) return;
+        isLoadingPage = true;
+
+        final int generation = loadGeneration;
+        Incident last = incidentList.isEmpty() ? null : incidentList.get(incidentList.size() - 1);
+        final long beforeStartedAt = last != null ? last.getStartedAt() : Long.MAX_VALUE;
+        final long beforeId = last != null ? last.getId() : Long.MAX_VALUE;
+
+        executor.execute(() -> {
+            List<Incident> page = index.getIncidentsPage(beforeStartedAt, beforeId, PAGE_SIZE);
+
+            if (getActivity() != null && isAdded()) {
+                getActivity().runOnUiThread(() -> {
+                    if (binding == null || generation != loadGeneration) return;
+                    isLoadingPage = false;
+                    hasMorePages = page.size() == PAGE_SIZE;
+                    incidentList.addAll(page);
+                    showLogs();
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads a changed incident and inserts or updates just its card.
+     * Incidents older than the loaded pages are left for paging to pick up.
+     */
+    @Override
+    public void onIncidentChanged(long incidentId) {
+        final int generation = loadGeneration;
+        executor.execute(() -> {
+            Incident incident = index.getIncident(incidentId);
+
+            if (getActivity() != null && isAdded()) {
+                getActivity().runOnUiThread(() -> {
+                    if (binding == null || generation != loadGeneration) return;
+                    applyIncident(incidentId, incident);
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onIncidentsRemoved(List<Long> incidentIds) {
+        Set<Long> removed = new HashSet<>(incidentIds);
+        boolean changed = false;
+        for (Iterator<Incident> it = incidentList.iterator(); it.hasNext(); ) {
+            if (removed.contains(it.next().getId())) {
+                it.remove();
+                changed = true;
             }
         }
+        if (changed) showLogs();
+    }
+
+    private void applyIncident(long incidentId, Incident incident) {
+        int existing = indexOfIncident(incidentId);
+        if (incident == null) {
+            // Deleted while the query ran
+            if (existing != -1) {
+                incidentList.remove(existing);
+                showLogs();
+            }
+            return;
+        }
+        if (existing != -1) {
+            incidentList.set(existing, incident);
+            showLogs();
+            return;
+        }
+
+        // Insert at its sorted position (newest first), if it falls inside the loaded range
+        int position = 0;
+        while (position < incidentList.size() && isNewer(incidentList.get(position), incident)) {
+            position++;
+        }
+        if (position == incidentList.size() && hasMorePages) return;
+        incidentList.add(position, incident);
+        showLogs();
+    }
 
-        // Sort by timestamp: Newest intrusion attempts at the top
-        Collections.sort(intruderLogList, (log1, log2) -> 
-                Long.compare(log2.getTimestamp(), log1.getTimestamp()));
+    private int indexOfIncident(long incidentId) {
+        for (int i = 0; i < incidentList.size(); i++) {
+            if (incidentList.get(i).getId() == incidentId) return i;
+        }
+        return -1;
+    }
 
+    /**
+     * Returns true if a sorts before b in the newest-first order of the index.
+     */
+    private static boolean isNewer(Incident a, Incident b) {
+        return a.getStartedAt() > b.getStartedAt()
+                || (a.getStartedAt() == b.getStartedAt() && a.getId() > b.getId());
+    }
+
+    /**
+     * Publishes the current incidents; DiffUtil runs in the background and only
+     * the changed items are inserted, removed or rebound.
+     */
+    private void showLogs() {
         binding.progressBar.setVisibility(View.GONE);
-        adapter.notifyDataSetChanged();
+        adapter.submitList(new ArrayList<>(incidentList));
 
         // Toggle Empty State UI
-        if (intruderLogList.isEmpty()) {
+        if (incidentList.isEmpty()) {
             binding.tvNoIntruders.setVisibility(View.VISIBLE);
             binding.rvIntruderLogs.setVisibility(View.GONE);
             binding.btnClearAll.setVisibility(View.GONE);
+            binding.btnExport.setVisibility(View.GONE);
         } else {
             binding.tvNoIntruders.setVisibility(View.GONE);
             binding.rvIntruderLogs.setVisibility(View.VISIBLE);
             binding.btnClearAll.setVisibility(View.VISIBLE);
+            binding.btnExport.setVisibility(View.VISIBLE);
         }
     }
 
     /**
-     * Implementation of the Adapter Listener for clicking a log entry.
-     * Opens the intruder photo in full screen using the system viewer.
+     * Implementation of the Adapter Listener for clicking an incident.
+     * Opens the in-app viewer at this incident; the user can swipe on through
+     * the captures of every incident loaded in the list.
      */
     @Override
-    public void onLogClicked(IntruderLog log) {
-        File file = new File(log.getFilePath());
-        Uri uri = FileProvider.getUriForFile(requireContext(), 
-                requireContext().getPackageName() + ".fileprovider", file);
-
-        Intent intent = new Intent(Intent.ACTION_VIEW);
-        intent.setDataAndType(uri, "image/*");
-        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        
-        try {
-            startActivity(intent);
-        } catch (Exception e) {
-            Toast.makeText(requireContext(), "No image viewer found", Toast.LENGTH_SHORT).show();
+    public void onIncidentClicked(Incident incident) {
+        if (!incident.hasPhoto()) {
+            Toast.makeText(requireContext(), "No photo was captured for this incident", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        long[] incidentIds = new long[incidentList.size()];
+        for (int i = 0; i < incidentIds.length; i++) {
+            incidentIds[i] = incidentList.get(i).getId();
         }
+
+        Intent intent = new Intent(requireContext(), EvidenceViewerActivity.class);
+        intent.putExtra(EvidenceViewerActivity.EXTRA_INCIDENT_IDS, incidentIds);
+        intent.putExtra(EvidenceViewerActivity.EXTRA_START_INCIDENT_ID, incident.getId());
+        startActivity(intent);
     }
 
     /**
-     * Handles the deletion of a specific intrusion record.
+     * Handles the deletion of a specific incident and all of its captures.
      */
     @Override
-    public void onDeleteClicked(IntruderLog log) {
+    public void onDeleteClicked(Incident incident) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Delete Evidence?")
-                .setMessage("This will permanently remove this intruder photo.")
+                .setMessage("This will permanently remove this incident and its intruder photos.")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    File file = new File(log.getFilePath());
-                    if (file.delete()) {
-                        Toast.makeText(requireContext(), "Log deleted", Toast.LENGTH_SHORT).show();
-                        loadIntrusionLogs();
-                    }
+                    // Remove the single item from the list; the adapter animates just that card
+                    incidentList.remove(incident);
+                    showLogs();
+                    Toast.makeText(requireContext(), "Log deleted", Toast.LENGTH_SHORT).show();
+
+                    evidenceManager.deleteIncidents(Collections.singletonList(incident), null);
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -153,18 +342,148 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         new AlertDialog.Builder(requireContext())
                 .setTitle("Clear All Logs?")
                 .setMessage("Are you sure you want to delete ALL intruder history?")
-                .setPositiveButton("Clear All", (dialog, which) -> {
-                    for (IntruderLog log : intruderLogList) {
-                        new File(log.getFilePath()).delete();
+                .setPositiveButton("Clear All", (dialog, which) -> clearAllEvidence())
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Runs the bulk delete in the background and reports progress in a dialog.
+     */
+    private void clearAllEvidence() {
+        AlertDialog progressDialog = new AlertDialog.Builder(requireContext())
+                .setTitle("Clearing Evidence")
+                .setMessage("Preparing...")
+                .setCancelable(false)
+                .show();
+
+        evidenceManager.deleteAllEvidence(new EvidenceManager.ProgressListener() {
+            @Override
+            public void onProgress(int deleted, int total) {
+                progressDialog.setMessage("Deleted " + deleted + " of " + total + " records");
+            }
+
+            @Override
+            public void onComplete(int deleted) {
+                progressDialog.dismiss();
+                // Removed incidents were already taken off the list by the index notifications
+                if (binding != null) {
+                    Toast.makeText(requireContext(), deleted + " records deleted", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+
+    /**
+     * Lets the user choose which of the loaded incidents to export, or the whole history.
+     */
+    private void showExportSelection() {
+        String[] labels = new String[incidentList.size()];
+        boolean[] checked = new boolean[incidentList.size()];
+        for (int i = 0; i < labels.length; i++) {
+            Incident incident = incidentList.get(i);
+            labels[i] = incident.getAppName() + " · " + incident.getFormattedDate();
+            checked[i] = true;
+        }
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Export Evidence")
+                .setMultiChoiceItems(labels, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton("Export Selected", (dialog, which) -> {
+                    List<Long> selected = new ArrayList<>();
+                    for (int i = 0; i < checked.length; i++) {
+                        if (checked[i]) selected.add(incidentList.get(i).getId());
+                    }
+                    if (selected.isEmpty()) return;
+                    if (selected.size() > MAX_EXPORT_SELECTION) {
+                        Toast.makeText(requireContext(), "Too many incidents selected; use Export All", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    pendingExportIds = new long[selected.size()];
+                    for (int i = 0; i < pendingExportIds.length; i++) {
+                        pendingExportIds[i] = selected.get(i);
                     }
-                    loadIntrusionLogs();
+                    pendingExportAll = false;
+                    createExportDocument.launch("hfs_evidence_" + System.currentTimeMillis() + ".zip");
+                })
+                .setNeutralButton("Export All", (dialog, which) -> {
+                    pendingExportIds = null;
+                    pendingExportAll = true;
+                    createExportDocument.launch("hfs_evidence_" + System.currentTimeMillis() + ".zip");
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    private void onExportTargetChosen(Uri target) {
+        long[] ids = pendingExportIds;
+        boolean all = pendingExportAll;
+        pendingExportIds = null;
+        pendingExportAll = false;
+        if (target == null) return; // Picker dismissed
+
+        if (ids == null && !all) {
+            // The selection was lost: never widen it to the whole history
+            try {
+                DocumentsContract.deleteDocument(requireContext().getContentResolver(), target);
+            } catch (Exception e) {
+                Log.w(TAG, "Could not delete the empty export file: " + e.getMessage());
+            }
+            Toast.makeText(requireContext(), "Export cancelled: the selection was lost. Please try again.",
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+        EvidenceExportWorker.enqueue(requireContext(), target, all ? null : ids);
+    }
+
+    /**
+     * Mirrors the export job in a progress dialog; closing it cancels the job.
+     */
+    private void onExportStateChanged(List<WorkInfo> infos) {
+        if (infos == null || infos.isEmpty()) return;
+        WorkInfo info = infos.get(0);
+
+        if (!info.getState().isFinished()) {
+            if (exportDialog == null) {
+                exportDialog = new AlertDialog.Builder(requireContext())
+                        .setTitle("Exporting Evidence")
+                        .setMessage("Preparing...")
+                        .setCancelable(false)
+                        .setNegativeButton("Cancel", (dialog, which) ->
+                                EvidenceExportWorker.cancel(requireContext()))
+                        .show();
+            }
+            int total = info.getProgress().getInt(EvidenceExportWorker.KEY_TOTAL, 0);
+            if (total > 0) {
+                int done = info.getProgress().getInt(EvidenceExportWorker.KEY_DONE, 0);
+                exportDialog.setMessage("Exported " + done + " of " + total + " incidents");
+            }
+            return;
+        }
+
+        // Only report jobs this screen watched running, not the last result kept by WorkManager
+        if (exportDialog == null) return;
+        exportDialog.dismiss();
+        exportDialog = null;
+        if (info.getState() == WorkInfo.State.SUCCEEDED) {
+            int photos = info.getOutputData().getInt(EvidenceExportWorker.KEY_PHOTOS, 0);
+            Toast.makeText(requireContext(), "Export complete: " + photos + " photos", Toast.LENGTH_SHORT).show();
+        } else if (info.getState() == WorkInfo.State.CANCELLED) {
+            Toast.makeText(requireContext(), "Export cancelled", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(requireContext(), "Export failed", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     @Override
     public void onDestroyView() {
+        index.removeChangeListener(this);
+        executor.shutdownNow();
+        if (exportDialog != null) {
+            // The job keeps running; the dialog is shown again when the screen is reopened
+            exportDialog.dismiss();
+            exportDialog = null;
+        }
         super.onDestroyView();
         binding = null;
     }
@@ -1,8 +1,5 @@
 package com.hfs.security.ui.fragments;
 
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -18,30 +15,27 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.hfs.security.adapters.AppSelectionAdapter;
 import com.hfs.security.databinding.FragmentProtectedAppsBinding;
 import com.hfs.security.models.AppInfo;
+import com.hfs.security.utils.AppCatalog;
 import com.hfs.security.utils.HFSDatabaseHelper;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Screen for Protected App Selection.
  * UPDATED: Removed the system-app filter to ensure Gallery, Photos, and Files 
  * are visible and protectable. Added fragment attachment checks to prevent crashes.
+ * The list comes from the persistent AppCatalog, so it renders immediately.
  */
-public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapter.OnAppSelectionListener {
+public class ProtectedAppsFragment extends Fragment
+        implements AppSelectionAdapter.OnAppSelectionListener, AppCatalog.CatalogListener {
 
     private FragmentProtectedAppsBinding binding;
     private AppSelectionAdapter adapter;
     private List<AppInfo> fullAppList;
     private HFSDatabaseHelper db;
-    
-    // Executor for background processing to keep the UI responsive
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private AppCatalog catalog;
 
     @Nullable
     @Override
@@ -56,12 +50,14 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         super.onViewCreated(view, savedInstanceState);
         
         db = HFSDatabaseHelper.getInstance(requireContext());
+        catalog = AppCatalog.getInstance(requireContext());
         fullAppList = new ArrayList<>();
         
         setupRecyclerView();
         setupSearch();
         
-        // Load all apps (including system apps) in a background thread
+        // Show the cached apps (including system apps) and refresh them in the background
+        catalog.addListener(this);
         loadInstalledApps();
     }
 
@@ -87,66 +83,48 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
     }
 
     /**
-     * Logic: Scans the device for apps.
-     * UPDATED: Now includes System Apps (Gallery/Files) by checking for 
-     * Launch Intents instead of filtering by System Flags.
+     * Renders the apps from the AppCatalog at once and lets the catalog
+     * reconcile with the PackageManager in the background; any change it
+     * finds re-renders the list through onCatalogChanged().
+     * System apps (Gallery/Files) are included: the catalog marks every app
+     * with a launcher activity as launchable, whatever its System Flags.
+     * On a first run the catalog publishes apps as their labels load, so
+     * this is called repeatedly while the list fills in.
      */
     private void loadInstalledApps() {
-        if (binding != null) {
-            binding.progressBar.setVisibility(View.VISIBLE);
+        renderCatalog();
+        catalog.refresh();
+    }
+
+    @Override
+    public void onCatalogChanged() {
+        renderCatalog();
+    }
+
+    /**
+     * Builds the list from the cached catalog entries. Cheap: no PackageManager calls.
+     */
+    private void renderCatalog() {
+        if (binding == null || !isAdded()) return;
+        String ownPackage = requireContext().getPackageName();
+        Set<String> savedProtectedPackages = db.getProtectedPackages();
+
+        List<AppInfo> apps = new ArrayList<>();
+        for (AppCatalog.Entry entry : catalog.getLaunchableApps()) {
+            // Do not show our own HFS app in the list to avoid locking yourself out
+            if (entry.packageName.equals(ownPackage)) continue;
+            // Icons are loaded by the adapter as rows bind
+            AppInfo app = new AppInfo(entry.label, entry.packageName, entry.versionCode,
+                    savedProtectedPackages.contains(entry.packageName));
+            apps.add(app);
         }
-        
-        executor.execute(() -> {
-            // Safety check: Is the fragment still attached?
-            if (!isAdded() || getContext() == null) return;
-
-            PackageManager pm = getContext().getPackageManager();
-            
-            // Get ALL installed applications
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            List<AppInfo> tempInfoList = new ArrayList<>();
-            
-            // Get currently protected packages from local database
-            Set<String> savedProtectedPackages = db.getProtectedPackages();
-
-            for (ApplicationInfo app : packages) {
-                /* 
-                 * FIX: Instead of skipping apps with FLAG_SYSTEM, we check if 
-                 * the app has a 'Launch Intent'. This correctly captures 
-                 * Gallery, File Manager, and Settings while ignoring 
-                 * hidden background system processes.
-                 */
-                if (pm.getLaunchIntentForPackage(app.packageName) != null) {
-                    
-                    // Do not show our own HFS app in the list to avoid locking yourself out
-                    if (app.packageName.equals(getContext().getPackageName())) continue;
-
-                    String name = app.loadLabel(pm).toString();
-                    Drawable icon = app.loadIcon(pm);
-                    boolean isAlreadyProtected = savedProtectedPackages.contains(app.packageName);
-                    
-                    tempInfoList.add(new AppInfo(name, app.packageName, icon, isAlreadyProtected));
-                }
-            }
+        fullAppList = apps;
+        filterApps(binding.etSearchApps.getText().toString());
 
-            // Sort the final list alphabetically
-            Collections.sort(tempInfoList, (a, b) -> a.getAppName().compareToIgnoreCase(b.getAppName()));
-
-            // Update the UI on the Main Thread
-            if (getActivity() != null && isAdded()) {
-                getActivity().runOnUiThread(() -> {
-                    if (binding != null) {
-                        fullAppList = tempInfoList;
-                        adapter.updateList(fullAppList);
-                        binding.progressBar.setVisibility(View.GONE);
-                        
-                        if (fullAppList.isEmpty()) {
-                            binding.tvNoAppsFound.setVisibility(View.VISIBLE);
-                        }
-                    }
-                });
-            }
-        });
+        // On a first run the catalog is still being built
+        boolean ready = catalog.isReady();
+        binding.progressBar.setVisibility(ready ? View.GONE : View.VISIBLE);
+        binding.tvNoAppsFound.setVisibility(ready && apps.isEmpty() ? View.VISIBLE : View.GONE);
     }
 
     private void filterApps(String query) {
@@ -167,22 +145,25 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
      */
     @Override
     public void onAppToggle(String packageName, boolean isSelected) {
-        Set<String> currentProtectedSet = new HashSet<>(db.getProtectedPackages());
-        
+        // Applied at once; rapid toggles are written to disk together
         if (isSelected) {
-            currentProtectedSet.add(packageName);
+            db.addProtectedPackage(packageName);
         } else {
-            currentProtectedSet.remove(packageName);
+            db.removeProtectedPackage(packageName);
         }
-        
-        // Update the database immediately
-        db.saveProtectedPackages(currentProtectedSet);
+    }
+
+    @Override
+    public void onPause() {
+        // Don't leave the last toggles only in memory when the screen goes away
+        db.flushProtectedChanges();
+        super.onPause();
     }
 
     @Override
     public void onDestroyView() {
-        // Shutdown the executor immediately to prevent background crashes
-        executor.shutdownNow();
+        // Stop catalog updates from touching the destroyed views
+        catalog.removeListener(this);
         super.onDestroyView();
         binding = null;
     }
@@ -10,6 +10,7 @@ import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -21,7 +22,13 @@ import com.hfs.security.databinding.FragmentSettingsBinding;
 import com.hfs.security.receivers.AdminReceiver;
 import com.hfs.security.ui.FaceSetupActivity;
 import com.hfs.security.ui.SplashActivity;
+import com.hfs.security.utils.EvidenceCrypto;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.PerfMetrics;
+import com.hfs.security.utils.SettingsStore;
+import com.hfs.security.workers.EvidenceUploadWorker;
+
+import java.security.GeneralSecurityException;
 
 /**
  * Advanced Settings Screen.
@@ -29,6 +36,9 @@ import com.hfs.security.utils.HFSDatabaseHelper;
  * 2. Manages Trusted Alert Number.
  * 3. Handles Face Re-scan logic.
  * 4. Manages Stealth Mode and Anti-Uninstall.
+ * 5. Configures how intruder evidence is encoded and how long it is kept.
+ * 6. Configures the optional off-device evidence upload.
+ * 7. Shows performance diagnostics and benchmarks.
  */
 public class SettingsFragment extends Fragment {
 
@@ -65,8 +75,11 @@ public class SettingsFragment extends Fragment {
         // Field 1: The phone number that receives alerts
         binding.etTrustedNumber.setText(db.getTrustedNumber());
         
-        // Field 2: The customizable PIN used for SMS commands AND the Dialer
-        binding.etSecretPin.setText(db.getMasterPin());
+        // Field 2: The customizable PIN used for SMS commands AND the Dialer.
+        // Only its hash is stored, so the field is for entering a new one.
+        if (db.hasMasterPin()) {
+            binding.layoutSecretPin.setHint("New PIN (leave empty to keep the current one)");
+        }
         
         // Anti-Uninstall Status
         boolean isAdminActive = devicePolicyManager.isAdminActive(adminComponent);
@@ -75,6 +88,24 @@ public class SettingsFragment extends Fragment {
         // Stealth and Fake Gallery Toggles
         binding.switchStealthMode.setChecked(db.isStealthModeEnabled());
         binding.switchFakeGallery.setChecked(db.isFakeGalleryEnabled());
+
+        // Evidence Encoding
+        binding.switchFaceCrop.setChecked(db.getEvidenceMode() == HFSDatabaseHelper.EVIDENCE_MODE_FACE_CROP);
+        binding.switchWebpEncoding.setChecked(db.getEvidenceFormat() == HFSDatabaseHelper.EVIDENCE_FORMAT_WEBP);
+        binding.etEvidenceBudget.setText(String.valueOf(db.getEvidenceBudgetKb()));
+        binding.etRetentionDays.setText(String.valueOf(db.getRetentionMaxAgeDays()));
+        binding.etRetentionCount.setText(String.valueOf(db.getRetentionMaxCount()));
+        binding.etRetentionMb.setText(String.valueOf(db.getRetentionMaxMegabytes()));
+
+        // Off-Device Upload
+        binding.switchUploadEnabled.setChecked(db.isUploadEnabled());
+        binding.switchUploadUnmetered.setChecked(db.isUploadUnmeteredOnly());
+        binding.etUploadEndpoint.setText(db.getUploadEndpoint());
+        binding.etUploadToken.setText(db.getUploadToken());
+        binding.etUploadRecoveryKey.setText(db.getUploadRecoveryKey());
+
+        // Diagnostics
+        binding.switchAlertLog.setChecked(db.isAlertLogEnabled());
     }
 
     private void setupClickListeners() {
@@ -83,15 +114,34 @@ public class SettingsFragment extends Fragment {
             String number = binding.etTrustedNumber.getText().toString().trim();
             String pin = binding.etSecretPin.getText().toString().trim();
 
-            if (TextUtils.isEmpty(number) || pin.length() < 4) {
+            boolean keepPin = pin.isEmpty() && db.hasMasterPin();
+            if (TextUtils.isEmpty(number) || (!keepPin && pin.length() < 4)) {
                 Toast.makeText(getContext(), "Please enter a valid Phone Number and 4-digit PIN", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            // Save values - The PIN saved here is what the Dialer will now look for
-            db.saveTrustedNumber(number);
-            db.saveMasterPin(pin);
-            Toast.makeText(getContext(), "Security Credentials Updated Successfully", Toast.LENGTH_SHORT).show();
+            if (keepPin) {
+                db.saveTrustedNumber(number);
+                Toast.makeText(getContext(), "Security Credentials Updated Successfully", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            // Save values in one write - The PIN saved here is what the Dialer will now look for.
+            // Hashing takes a moment (see PinHasher), so it runs in the background.
+            binding.btnSaveSettings.setEnabled(false);
+            new Thread(() -> {
+                boolean saved = db.saveSecurityCredentials(number, pin);
+                if (getActivity() != null && isAdded()) {
+                    getActivity().runOnUiThread(() -> {
+                        if (binding == null) return;
+                        binding.btnSaveSettings.setEnabled(true);
+                        binding.etSecretPin.setText("");
+                        binding.layoutSecretPin.setHint("New PIN (leave empty to keep the current one)");
+                        Toast.makeText(getContext(), saved ? "Security Credentials Updated Successfully"
+                                : "Could not save the PIN", Toast.LENGTH_SHORT).show();
+                    });
+                }
+            }, "HFS-SavePin").start();
         });
 
         // RESCAN BUTTON: Fixed to actually open the Face Registration screen
@@ -124,17 +174,144 @@ public class SettingsFragment extends Fragment {
         binding.switchFakeGallery.setOnCheckedChangeListener((buttonView, isChecked) -> {
             db.setFakeGalleryEnabled(isChecked);
         });
+
+        // EVIDENCE STORAGE: Face crop, encoding, per-capture size budget and retention
+        binding.btnSaveEvidenceSettings.setOnClickListener(v -> saveEvidenceSettings());
+
+        // OFF-DEVICE UPLOAD: Endpoint, token and network constraint
+        binding.btnSaveUploadSettings.setOnClickListener(v -> saveUploadSettings());
+
+        // DIAGNOSTICS: Recorded performance metrics and on-device benchmarks
+        binding.btnDiagnostics.setOnClickListener(v -> showDiagnosticsDialog());
+        binding.switchAlertLog.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            db.setAlertLogEnabled(isChecked);
+        });
+    }
+
+    private void saveEvidenceSettings() {
+        // Anything above the maximum budget is effectively unlimited; keep the encoder's buffer bounded
+        int budgetKb = parseLimit(binding.etEvidenceBudget, HFSDatabaseHelper.MAX_EVIDENCE_BUDGET_KB);
+        int maxAgeDays = parseLimit(binding.etRetentionDays, Integer.MAX_VALUE);
+        int maxCount = parseLimit(binding.etRetentionCount, Integer.MAX_VALUE);
+        int maxMegabytes = parseLimit(binding.etRetentionMb, Integer.MAX_VALUE);
+        if (budgetKb < 0 || maxAgeDays < 0 || maxCount < 0 || maxMegabytes < 0) {
+            Toast.makeText(getContext(), "Please enter whole numbers only", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        db.saveEvidenceEncoding(
+                binding.switchFaceCrop.isChecked()
+                        ? HFSDatabaseHelper.EVIDENCE_MODE_FACE_CROP : HFSDatabaseHelper.EVIDENCE_MODE_FULL_FRAME,
+                binding.switchWebpEncoding.isChecked()
+                        ? HFSDatabaseHelper.EVIDENCE_FORMAT_WEBP : HFSDatabaseHelper.EVIDENCE_FORMAT_JPEG,
+                budgetKb);
+        db.saveRetentionPolicy(maxAgeDays, maxCount, maxMegabytes);
+        Toast.makeText(getContext(), "Evidence Settings Saved", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Reads a whole-number limit (empty means 0), clamped to max and shown clamped.
+     * @return The limit, or -1 if the field does not hold a number.
+     */
+    private int parseLimit(EditText field, int max) {
+        String text = field.getText().toString().trim();
+        if (TextUtils.isEmpty(text)) return 0;
+        if (!text.matches("\\d+")) return -1;
+
+        long value;
+        try {
+            value = Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            // Too many digits for a long; clamped like any other oversized value
+            value = Long.MAX_VALUE;
+        }
+        if (value > max) {
+            value = max;
+            field.setText(String.valueOf(max));
+        }
+        return (int) value;
+    }
+
+    private void saveUploadSettings() {
+        String endpoint = binding.etUploadEndpoint.getText().toString().trim();
+        boolean enabled = binding.switchUploadEnabled.isChecked();
+
+        // Cleartext traffic is blocked on this target SDK and would expose the token
+        if (enabled && !endpoint.startsWith("https://")) {
+            Toast.makeText(getContext(), "Please enter an https:// endpoint URL", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // Uploads are only readable with this key's private half, so the phone itself is not needed
+        String recoveryKey = binding.etUploadRecoveryKey.getText().toString().trim();
+        if (enabled) {
+            try {
+                EvidenceCrypto.parseRecoveryKey(recoveryKey);
+            } catch (GeneralSecurityException e) {
+                Toast.makeText(getContext(), "Please enter an RSA public key (2048 bits or more)",
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+
+        db.saveUploadSettings(enabled, endpoint,
+                binding.etUploadToken.getText().toString().trim(), recoveryKey,
+                binding.switchUploadUnmetered.isChecked());
+
+        // Apply the new configuration to the scheduled uploads and send anything pending
+        EvidenceUploadWorker.schedule(requireContext());
+        EvidenceUploadWorker.requestUpload(requireContext());
+        Toast.makeText(getContext(), "Upload Settings Saved", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Shows the metrics recorded by the capture and alert paths in this process.
+     */
+    private void showDiagnosticsDialog() {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Performance Diagnostics")
+                .setMessage("Evidence integrity: " + db.getIntegritySummary()
+                        + "\nEvidence upload: " + db.getUploadSummary()
+                        + "\n\n" + PerfMetrics.report())
+                .setPositiveButton("Close", null)
+                .setNeutralButton("Run Benchmarks", (dialog, which) -> runBenchmarks())
+                .show();
+    }
+
+    /**
+     * Runs the storage benchmarks on a background thread and shows the results.
+     */
+    private void runBenchmarks() {
+        Context appContext = requireContext().getApplicationContext();
+        Toast.makeText(getContext(), "Running benchmarks...", Toast.LENGTH_SHORT).show();
+
+        new Thread(() -> {
+            String result;
+            try {
+                result = EvidenceCrypto.benchmarkThroughput(appContext)
+                        + "\n\n" + SettingsStore.benchmark(appContext);
+            } catch (Exception e) {
+                result = "Benchmark failed: " + e.getMessage();
+            }
+
+            final String message = result;
+            if (getActivity() != null && isAdded()) {
+                getActivity().runOnUiThread(() -> new AlertDialog.Builder(requireContext())
+                        .setTitle("Benchmark Results")
+                        .setMessage(message)
+                        .setPositiveButton("Close", null)
+                        .show());
+            }
+        }, "HFS-Benchmark").start();
     }
 
     /**
      * Fixed Dialog: The text is now visible thanks to the Theme fix.
      */
     private void showStealthWarningDialog() {
-        String currentCode = db.getMasterPin();
-        
         new AlertDialog.Builder(requireContext())
                 .setTitle("Stealth Mode Active")
-                .setMessage("The app icon will be hidden. To open HFS, dial your secret PIN (" + currentCode + ") and press the CALL button.")
+                .setMessage("The app icon will be hidden. To open HFS, dial your secret PIN and press the CALL button.")
                 .setPositiveButton("I UNDERSTAND", (dialog, which) -> toggleAppIconVisibility(false))
                 .setNegativeButton("CANCEL", (dialog, which) -> binding.switchStealthMode.setChecked(false))
                 .setCancelable(false)
@@ -0,0 +1,67 @@
+package com.hfs.security.ui.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.hfs.security.R;
+
+/**
+ * Minimal bar chart for the dashboard statistics.
+ * Draws one bar per value, scaled to the largest value, with a baseline
+ * so empty periods are still visible.
+ */
+public class BarChartView extends View {
+
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint baselinePaint = new Paint();
+    private int[] values = new int[0];
+
+    public BarChartView(Context context) {
+        this(context, null);
+    }
+
+    public BarChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        barPaint.setColor(ContextCompat.getColor(context, R.color.hfs_primary_blue));
+        baselinePaint.setColor(ContextCompat.getColor(context, R.color.divider_color));
+        baselinePaint.setStrokeWidth(getResources().getDisplayMetrics().density);
+    }
+
+    public void setValues(int[] values) {
+        this.values = values != null ? values : new int[0];
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float bottom = getHeight() - getPaddingBottom();
+        float height = bottom - getPaddingTop();
+        canvas.drawLine(getPaddingLeft(), bottom, getPaddingLeft() + width, bottom, baselinePaint);
+        if (values.length == 0 || width <= 0 || height <= 0) return;
+
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        if (max == 0) return;
+
+        // Bars take two thirds of each slot
+        float slot = width / values.length;
+        float barWidth = slot * 2f / 3f;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == 0) continue;
+            float left = getPaddingLeft() + i * slot + (slot - barWidth) / 2f;
+            float top = bottom - height * values[i] / max;
+            canvas.drawRect(left, top, left + barWidth, bottom, barPaint);
+        }
+    }
+}
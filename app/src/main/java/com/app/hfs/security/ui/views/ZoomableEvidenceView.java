@@ -0,0 +1,257 @@
+package com.hfs.security.ui.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hfs.security.utils.EvidenceImage;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Pinch-zoom view for evidence photos.
+ * Draws the subsampled preview of an EvidenceImage and, once the zoom level
+ * needs more detail than the preview has, overlays full-resolution tiles of
+ * the visible area, decoded on the given executor and kept in a small cache.
+ * While zoomed in, the view keeps touch events from the parent pager.
+ */
+public class ZoomableEvidenceView extends View {
+
+    // Tile edge in bitmap pixels, at whatever sample size the tile is decoded
+    private static final int TILE_SIZE = 512;
+    // Maximum zoom, relative to 1 image pixel per screen pixel
+    private static final float MAX_PIXEL_ZOOM = 2f;
+    private static final float DOUBLE_TAP_ZOOM = 3f;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final Rect imageRect = new Rect();
+    private final RectF visibleRect = new RectF();
+
+    // Tile cache bounded by bitmap bytes; keys include the sample size
+    private final LruCache<String, Bitmap> tiles = new LruCache<String, Bitmap>(24 * 1024 * 1024) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private final Set<String> pendingTiles = new HashSet<>();
+
+    private EvidenceImage image;
+    private Executor tileExecutor;
+    // Incremented whenever the image changes, so late tiles of the previous image are dropped
+    private volatile int generation = 0;
+
+    // View pixels = image pixels * scale + translation
+    private float scale = 1f;
+    private float minScale = 1f;
+    private float maxScale = 1f;
+    private float translateX = 0f;
+    private float translateY = 0f;
+
+    public ZoomableEvidenceView(Context context) {
+        this(context, null);
+    }
+
+    public ZoomableEvidenceView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                zoomTo(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float dx, float dy) {
+                translateX -= dx;
+                translateY -= dy;
+                clampTranslation();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(@NonNull MotionEvent e) {
+                float target = isZoomed() ? minScale : Math.min(maxScale, minScale * DOUBLE_TAP_ZOOM);
+                zoomTo(target, e.getX(), e.getY());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Shows a new image, reset to fit the view.
+     *
+     * @param image The decoded evidence, or null to clear the view.
+     * @param tileExecutor Background executor for full-resolution tile decoding.
+     */
+    public void setImage(@Nullable EvidenceImage image, Executor tileExecutor) {
+        this.image = image;
+        this.tileExecutor = tileExecutor;
+        generation++;
+        tiles.evictAll();
+        pendingTiles.clear();
+        resetZoom();
+        invalidate();
+    }
+
+    public boolean isZoomed() {
+        return scale > minScale * 1.01f;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        resetZoom();
+    }
+
+    private void resetZoom() {
+        if (image == null || getWidth() == 0 || getHeight() == 0) return;
+        minScale = Math.min((float) getWidth() / image.getWidth(), (float) getHeight() / image.getHeight());
+        maxScale = Math.max(minScale, MAX_PIXEL_ZOOM);
+        scale = minScale;
+        clampTranslation();
+    }
+
+    private void zoomTo(float newScale, float focusX, float focusY) {
+        newScale = Math.max(minScale, Math.min(maxScale, newScale));
+        // Keep the image point under the focus fixed
+        translateX = focusX - (focusX - translateX) * (newScale / scale);
+        translateY = focusY - (focusY - translateY) * (newScale / scale);
+        scale = newScale;
+        clampTranslation();
+        invalidate();
+    }
+
+    /**
+     * Centers the image along an axis where it is smaller than the view,
+     * otherwise keeps its edges from moving inside the view.
+     */
+    private void clampTranslation() {
+        if (image == null) return;
+        float scaledWidth = image.getWidth() * scale;
+        float scaledHeight = image.getHeight() * scale;
+        translateX = scaledWidth <= getWidth()
+                ? (getWidth() - scaledWidth) / 2f
+                : Math.max(getWidth() - scaledWidth, Math.min(0f, translateX));
+        translateY = scaledHeight <= getHeight()
+                ? (getHeight() - scaledHeight) / 2f
+                : Math.max(getHeight() - scaledHeight, Math.min(0f, translateY));
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (image == null) return false;
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+
+        // Pan inside the image while zoomed; swipe between pages otherwise
+        boolean ownsGesture = isZoomed() || event.getPointerCount() > 1;
+        getParent().requestDisallowInterceptTouchEvent(ownsGesture);
+        return true;
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (image == null) return;
+
+        canvas.save();
+        canvas.translate(translateX, translateY);
+        canvas.scale(scale, scale);
+
+        // 1. The preview covers the whole image at low resolution
+        imageRect.set(0, 0, image.getWidth(), image.getHeight());
+        canvas.drawBitmap(image.getPreview(), null, imageRect, paint);
+
+        // 2. Full-resolution tiles where the preview is not detailed enough
+        int sampleSize = sampleSizeForScale();
+        if (sampleSize < image.getPreviewSampleSize()) {
+            drawTiles(canvas, sampleSize);
+        }
+        canvas.restore();
+    }
+
+    /**
+     * Power-of-two sample size that still gives at least one decoded pixel per screen pixel.
+     */
+    private int sampleSizeForScale() {
+        int sampleSize = 1;
+        while (scale * sampleSize * 2 <= 1f) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private void drawTiles(Canvas canvas, int sampleSize) {
+        // Visible area in image coordinates
+        visibleRect.set(-translateX / scale, -translateY / scale,
+                (getWidth() - translateX) / scale, (getHeight() - translateY) / scale);
+
+        int tileExtent = TILE_SIZE * sampleSize;
+        int firstCol = Math.max(0, (int) (visibleRect.left / tileExtent));
+        int lastCol = Math.min((image.getWidth() - 1) / tileExtent, (int) (visibleRect.right / tileExtent));
+        int firstRow = Math.max(0, (int) (visibleRect.top / tileExtent));
+        int lastRow = Math.min((image.getHeight() - 1) / tileExtent, (int) (visibleRect.bottom / tileExtent));
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                Rect region = new Rect(col * tileExtent, row * tileExtent,
+                        Math.min(image.getWidth(), (col + 1) * tileExtent),
+                        Math.min(image.getHeight(), (row + 1) * tileExtent));
+                String key = sampleSize + ":" + col + ":" + row;
+                Bitmap tile = tiles.get(key);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, region, paint);
+                } else {
+                    requestTile(key, region, sampleSize);
+                }
+            }
+        }
+    }
+
+    private void requestTile(String key, Rect region, int sampleSize) {
+        if (tileExecutor == null || !pendingTiles.add(key)) return;
+        final EvidenceImage source = image;
+        final int requestGeneration = generation;
+
+        tileExecutor.execute(() -> {
+            // Skip tiles the user has already zoomed or scrolled away from
+            Bitmap tile = null;
+            if (requestGeneration == generation && sampleSize == sampleSizeForScale()) {
+                tile = source.decodeRegion(region, sampleSize);
+            }
+            final Bitmap decoded = tile;
+            post(() -> {
+                if (requestGeneration != generation) return;
+                pendingTiles.remove(key);
+                if (decoded != null) {
+                    tiles.put(key, decoded);
+                    invalidate();
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.hfs.security.utils;
+
+import com.hfs.security.models.Alert;
+
+import java.io.IOException;
+
+/**
+ * A transport that alert messages are dispatched over.
+ * AlertDispatcher fans every alert out to all configured channels in
+ * parallel. SMS is the primary channel; FileAlertChannel exercises the
+ * same dispatch path without a SIM.
+ */
+public interface AlertChannel {
+
+    /**
+     * Short name used in logs and metrics, e.g. "sms".
+     */
+    String getName();
+
+    /**
+     * Returns false if the channel cannot send right now (e.g. no trusted number).
+     */
+    boolean isConfigured();
+
+    /**
+     * Returns true for channels that only record the alert on this device
+     * (the alert log). They receive every attempt, but never make it count as
+     * sent: that takes a transport that reaches the owner.
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * Hands one attempt of an alert to the transport. Blocking.
+     *
+     * @param alert The queued alert.
+     * @param message The formatted alert text.
+     * @param attempt The attempt number, starting at 1, or 0 for an untracked location follow-up.
+     * @return The number of sent reports the channel will deliver later through
+     *         AlertDispatcher.onPartSent, or 0 if the send already completed.
+     * @throws IOException If the message could not be handed to the transport.
+     */
+    int send(Alert alert, String message, int attempt) throws IOException;
+}
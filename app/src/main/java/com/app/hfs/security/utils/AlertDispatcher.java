@@ -0,0 +1,298 @@
+package com.hfs.security.utils;
+
+import android.app.Activity;
+import android.content.Context;
+import android.location.Location;
+import android.util.Log;
+
+import com.hfs.security.models.Alert;
+import com.hfs.security.workers.AlertDispatchWorker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent alert queue in front of SmsHelper.
+ * Intrusions are queued in the intrusion index instead of being sent on the
+ * UI thread. The first alert goes out at once; incidents within the
+ * coalescing window after it are merged into one follow-up summary. At most
+ * MAX_ALERTS_PER_HOUR alerts are sent per hour, later ones wait (and keep
+ * merging) until the budget allows.
+ *
+ * Alerts carry the cached last-known location (see LocationCache) and its
+ * age. If that fix is stale, one follow-up with the location is sent when a
+ * fresher fix arrives within FOLLOW_UP_WINDOW_MS.
+ *
+ * Every attempt is fanned out in parallel to the configured AlertChannels:
+ * SMS to the trusted number and the optional local alert log. The attempt counts as sent if at least one
+ * transport accepted it; the local alert log alone never does, so a failed
+ * SMS is retried even when the log recorded it. Sent and delivery reports of the SMS channel arrive
+ * through AlertStatusReceiver. A failed or unanswered attempt is retried
+ * with exponential backoff up to MAX_ATTEMPTS times. AlertDispatchWorker
+ * wakes the queue for delayed sends and retries.
+ */
+public class AlertDispatcher {
+
+    private static final String TAG = "HFS_AlertDispatcher";
+
+    // Incidents within this window after an alert are summarized in the next one
+    private static final long COALESCE_WINDOW_MS = 2 * 60 * 1000L;
+    private static final int MAX_ALERTS_PER_HOUR = 5;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_BASE_DELAY_MS = 30 * 1000L;
+    // An attempt without any sent report after this long counts as failed
+    private static final long SEND_TIMEOUT_MS = 5 * 60 * 1000L;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    // A cached fix older than this is followed up if a fresher one arrives within the window
+    private static final long FRESH_FIX_MS = 2 * 60 * 1000L;
+    private static final long FOLLOW_UP_WINDOW_MS = 5 * 60 * 1000L;
+    // Attempt number of location follow-ups, whose reports are ignored
+    private static final int FOLLOW_UP_ATTEMPT = 0;
+
+    /**
+     * An alert sent with a stale or missing location, waiting for a fresher fix.
+     */
+    private static class FollowUp {
+        final Alert alert;
+        final long attachedFixTime;
+        final long deadline;
+
+        FollowUp(Alert alert, long attachedFixTime, long deadline) {
+            this.alert = alert;
+            this.attachedFixTime = attachedFixTime;
+            this.deadline = deadline;
+        }
+    }
+
+    private static AlertDispatcher instance;
+    private final Context appContext;
+    private final IntrusionIndexHelper index;
+    // All queue transitions run in order on this thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AlertFanout fanout = new AlertFanout(3);
+    private final LocationCache locationCache;
+    private final Map<Long, FollowUp> followUps = new ConcurrentHashMap<>();
+
+    private AlertDispatcher(Context context) {
+        this.appContext = context;
+        this.index = IntrusionIndexHelper.getInstance(context);
+        this.locationCache = LocationCache.getInstance(context);
+        locationCache.addFixListener(location -> {
+            if (!followUps.isEmpty()) executor.execute(() -> sendFollowUps(location));
+        });
+    }
+
+    public static synchronized AlertDispatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlertDispatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the alert for an incident and sends whatever is due. Returns immediately.
+     */
+    public void enqueue(long incidentId, String appName, long timestamp) {
+        executor.execute(() -> {
+            index.enqueueAlert(incidentId, appName, timestamp, COALESCE_WINDOW_MS);
+            dispatchDue();
+        });
+    }
+
+    /**
+     * Local file the alert log channel appends to.
+     */
+    public static File getAlertLogFile(Context context) {
+        return new File(context.getFilesDir(), "alert_log.txt");
+    }
+
+    /**
+     * Handles the sent report of one alert part.
+     *
+     * @param done Run once the report is recorded (e.g. to finish a goAsync broadcast).
+     */
+    public void onPartSent(long alertId, int attempt, int resultCode, Runnable done) {
+        if (attempt == FOLLOW_UP_ATTEMPT) {
+            done.run();
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                // Waits for a dispatch in progress to record how many reports it expects
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    if (resultCode == Activity.RESULT_OK) {
+                        index.recordAlertPartSent(alertId, attempt);
+                    } else {
+                        Log.w(TAG, "Alert " + alertId + " attempt " + attempt + " not sent, result " + resultCode);
+                        retryOrFail(alertId, attempt, now);
+                    }
+                    dispatchDue();
+                }
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Handles the delivery report of an alert.
+     *
+     * @param delivered False if the network reported a permanent delivery failure.
+     * @param done Run once the report is recorded.
+     */
+    public void onDeliveryReport(long alertId, int attempt, boolean delivered, Runnable done) {
+        if (attempt == FOLLOW_UP_ATTEMPT) {
+            done.run();
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    if (delivered) {
+                        index.finishAlert(alertId, attempt, IntrusionIndexHelper.SMS_DELIVERED, now);
+                    } else {
+                        Log.w(TAG, "Alert " + alertId + " attempt " + attempt + " was not delivered");
+                        retryOrFail(alertId, attempt, now);
+                    }
+                    dispatchDue();
+                }
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Sends every due alert within the hourly budget and schedules the next wakeup.
+     * Blocking; called on the dispatcher thread and by AlertDispatchWorker.
+     */
+    public synchronized void dispatchDue() {
+        long now = System.currentTimeMillis();
+
+        // 1. Attempts that never reported back count as failed
+        for (Alert stale : index.getStaleSendingAlerts(now - SEND_TIMEOUT_MS)) {
+            Log.w(TAG, "Alert " + stale.getId() + " attempt " + stale.getAttempts() + " timed out");
+            retryOrFail(stale.getId(), stale.getAttempts(), now);
+        }
+
+        // 2. Send what is due; only first attempts use up the hourly budget
+        List<Long> dispatched = new ArrayList<>(index.getAlertDispatchTimesSince(now - HOUR_MS));
+        for (Alert alert : index.getDueAlerts(now)) {
+            boolean firstAttempt = alert.getAttempts() == 0;
+            if (firstAttempt && dispatched.size() >= MAX_ALERTS_PER_HOUR) {
+                // Wait until the oldest alert of the last hour leaves the window
+                index.postponeAlert(alert.getId(), dispatched.get(0) + HOUR_MS);
+                Log.i(TAG, "Alert " + alert.getId() + " rate limited");
+                continue;
+            }
+            send(alert, now);
+            if (firstAttempt) dispatched.add(now);
+        }
+
+        // 3. Wake up again for the next due alert or send timeout
+        AlertDispatchWorker.scheduleAt(appContext, index.getNextAlertWakeup(SEND_TIMEOUT_MS), now);
+    }
+
+    private void send(Alert alert, long now) {
+        int attempt = alert.getAttempts() + 1;
+        List<AlertChannel> channels = getConfiguredChannels();
+
+        // Safety check: Don't attempt to send if no transport (e.g. trusted number) is configured
+        if (!hasTransport(channels)) {
+            Log.e(TAG, "Alert failed: No trusted number configured in settings.");
+            if (!channels.isEmpty()) {
+                // The local alert log still records it
+                fanout.send(channels, alert, SmsHelper.buildAlertMessage(alert, locationCache.getLast(), now), attempt);
+            }
+            index.finishAlert(alert.getId(), alert.getAttempts(), IntrusionIndexHelper.SMS_NOT_CONFIGURED, now);
+            return;
+        }
+
+        // The cached last-known location is attached as is; dispatch never waits for a fix
+        Location location = locationCache.getLast();
+        index.markAlertSending(alert.getId(), attempt, now);
+        AlertFanout.Result result = fanout.send(channels, alert,
+                SmsHelper.buildAlertMessage(alert, location, now), attempt);
+
+        for (Map.Entry<String, Long> entry : result.channelNanos.entrySet()) {
+            PerfMetrics.record("alert.channel." + entry.getKey(), entry.getValue(), 0);
+        }
+        for (Map.Entry<String, String> failure : result.failures.entrySet()) {
+            Log.w(TAG, "Alert " + alert.getId() + " not sent over " + failure.getKey() + ": " + failure.getValue());
+        }
+
+        if (result.delivered == 0) {
+            retryOrFail(alert.getId(), attempt, now);
+            return;
+        }
+        index.expectAlertReports(alert.getId(), attempt, result.pendingReports);
+        if (location == null || LocationCache.ageMs(location, now) > FRESH_FIX_MS) {
+            // Send the location again if a fresher fix shows up soon
+            followUps.putIfAbsent(alert.getId(), new FollowUp(alert,
+                    location != null ? location.getTime() : 0, now + FOLLOW_UP_WINDOW_MS));
+            locationCache.requestFreshFix();
+        }
+        if (attempt == 1) {
+            // Intrusion to dispatch: queueing, coalescing and rate limiting included
+            long latencyMs = System.currentTimeMillis() - alert.getFirstAt();
+            PerfMetrics.record("alert.latency", TimeUnit.MILLISECONDS.toNanos(latencyMs), 0);
+        }
+    }
+
+    /**
+     * Sends the location follow-up of every alert that is still waiting for a fresher fix.
+     */
+    private synchronized void sendFollowUps(Location location) {
+        long now = System.currentTimeMillis();
+        for (FollowUp followUp : new ArrayList<>(followUps.values())) {
+            long alertId = followUp.alert.getId();
+            if (now > followUp.deadline) {
+                followUps.remove(alertId);
+            } else if (location.getTime() > followUp.attachedFixTime) {
+                followUps.remove(alertId);
+                List<AlertChannel> channels = getConfiguredChannels();
+                if (channels.isEmpty()) continue;
+                // Untracked: a follow-up is not retried and does not change the alert status
+                AlertFanout.Result result = fanout.send(channels, followUp.alert,
+                        SmsHelper.buildLocationFollowUp(followUp.alert, location, now), FOLLOW_UP_ATTEMPT);
+                Log.i(TAG, "Location follow-up for alert " + alertId + " sent over " + result.sent + " channels");
+                PerfMetrics.record("alert.location_follow_up",
+                        TimeUnit.MILLISECONDS.toNanos(now - followUp.alert.getFirstAt()), 0);
+            }
+        }
+    }
+
+    private List<AlertChannel> getConfiguredChannels() {
+        List<AlertChannel> channels = new ArrayList<>();
+        AlertChannel sms = new SmsAlertChannel(appContext);
+        if (sms.isConfigured()) channels.add(sms);
+        if (HFSDatabaseHelper.getInstance(appContext).isAlertLogEnabled()) {
+            channels.add(new FileAlertChannel(getAlertLogFile(appContext)));
+        }
+        return channels;
+    }
+
+    private static boolean hasTransport(List<AlertChannel> channels) {
+        for (AlertChannel channel : channels) {
+            if (!channel.isLocal()) return true;
+        }
+        return false;
+    }
+
+    private void retryOrFail(long alertId, int attempt, long now) {
+        if (attempt >= MAX_ATTEMPTS) {
+            index.finishAlert(alertId, attempt, IntrusionIndexHelper.SMS_FAILED, now);
+            Log.e(TAG, "Alert " + alertId + " failed after " + attempt + " attempts");
+        } else {
+            index.rescheduleAlert(alertId, attempt, now + (RETRY_BASE_DELAY_MS << (attempt - 1)));
+        }
+    }
+}
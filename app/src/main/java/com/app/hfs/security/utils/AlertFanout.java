@@ -0,0 +1,100 @@
+package com.hfs.security.utils;
+
+import com.hfs.security.models.Alert;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends one alert attempt to several channels in parallel, so a slow
+ * channel never delays the others. Plain Java, so the dispatch path is
+ * measured by JVM tests (see AlertFanoutTest).
+ */
+public class AlertFanout {
+
+    // A channel that has not returned by then counts as failed for this attempt
+    private static final long CHANNEL_TIMEOUT_MS = 30 * 1000L;
+
+    /**
+     * Combined outcome of one fan-out.
+     */
+    public static class Result {
+        /** Channels that accepted the alert. */
+        public int sent;
+        /** Non-local channels that accepted the alert; only these make an attempt sent. */
+        public int delivered;
+        /** Sent reports still expected from asynchronous channels. */
+        public int pendingReports;
+        /** Channel name to error message, for channels that failed. */
+        public final Map<String, String> failures = new LinkedHashMap<>();
+        /** Channel name to time spent in send(). */
+        public final Map<String, Long> channelNanos = new LinkedHashMap<>();
+    }
+
+    private final ExecutorService executor;
+
+    public AlertFanout(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Sends the attempt to every channel and waits for all of them. Blocking.
+     */
+    public Result send(List<AlertChannel> channels, Alert alert, String message, int attempt) {
+        List<Future<Integer>> futures = new ArrayList<>();
+        long[] nanos = new long[channels.size()];
+        for (int i = 0; i < channels.size(); i++) {
+            final int slot = i;
+            final AlertChannel channel = channels.get(i);
+            Callable<Integer> task = () -> {
+                long start = System.nanoTime();
+                try {
+                    return channel.send(alert, message, attempt);
+                } finally {
+                    nanos[slot] = System.nanoTime() - start;
+                }
+            };
+            // A single channel runs on the caller thread, there is nothing to overlap with
+            futures.add(channels.size() == 1 ? runInline(task) : executor.submit(task));
+        }
+
+        Result result = new Result();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CHANNEL_TIMEOUT_MS);
+        for (int i = 0; i < channels.size(); i++) {
+            String name = channels.get(i).getName();
+            try {
+                int reports = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                result.sent++;
+                if (!channels.get(i).isLocal()) result.delivered++;
+                result.pendingReports += reports;
+            } catch (ExecutionException e) {
+                result.failures.put(name, String.valueOf(e.getCause().getMessage()));
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                result.failures.put(name, "timed out");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.get(i).cancel(true);
+                result.failures.put(name, "interrupted");
+            }
+            result.channelNanos.put(name, nanos[i]);
+        }
+        return result;
+    }
+
+    private static Future<Integer> runInline(Callable<Integer> task) {
+        FutureTask<Integer> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+}
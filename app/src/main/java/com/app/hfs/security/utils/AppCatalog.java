@@ -0,0 +1,429 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent catalog of the installed apps: package, label, versionCode and
+ * whether the app can be launched. The Protected Apps screen renders from
+ * it at once instead of scanning the PackageManager every time it opens.
+ *
+ * The catalog is kept current incrementally: package broadcasts received
+ * while the monitor service runs (PackageChangeReceiver) update single
+ * entries, and refresh() asks PackageManager.getChangedPackages() for what
+ * changed since the last sequence number. A full scan only happens on the
+ * first run, after a reboot (sequence numbers restart) or a locale change
+ * (labels are localized). Launchable apps are found with one launcher
+ * activity query, and the labels of a full scan load in parallel.
+ *
+ * File: MAGIC | version | boot count | sequence number | locale | count | entries
+ */
+public class AppCatalog {
+
+    private static final String TAG = "HFS_AppCatalog";
+    private static final String FILE_NAME = "app_catalog.bin";
+
+    private static final int MAGIC = 0x48465343; // "HFSC"
+    private static final int FORMAT_VERSION = 1;
+
+    // Labels are read from each app's resources; this many load at a time
+    private static final int LABEL_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // While a first scan runs, its entries are published at most this often
+    private static final long PUBLISH_INTERVAL_MS = 150;
+
+    /**
+     * One installed package. Immutable.
+     */
+    public static class Entry {
+        public final String packageName;
+        // Only loaded for launchable apps; the package name otherwise
+        public final String label;
+        public final long versionCode;
+        public final boolean launchable;
+
+        Entry(String packageName, String label, long versionCode, boolean launchable) {
+            this.packageName = packageName;
+            this.label = label;
+            this.versionCode = versionCode;
+            this.launchable = launchable;
+        }
+    }
+
+    /**
+     * Notified on the main thread after entries were added, updated or removed.
+     */
+    public interface CatalogListener {
+        void onCatalogChanged();
+    }
+
+    private static AppCatalog instance;
+    private final Context appContext;
+    private final AtomicFile file;
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Updates run one at a time on this thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService labelPool = Executors.newFixedThreadPool(LABEL_THREADS);
+
+    // Immutable snapshot, replaced on every change
+    private volatile Map<String, Entry> entries = Collections.emptyMap();
+    private volatile boolean loaded;
+    private volatile boolean reconciled;
+    // Position in PackageManager's change log, valid for bootCount only
+    private int bootCount = -1;
+    private int sequenceNumber;
+    private String locale = "";
+
+    private AppCatalog(Context context) {
+        this.appContext = context;
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public static synchronized AppCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppCatalog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CatalogListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns true once there are entries to show, from the file or a first scan.
+     */
+    public boolean isReady() {
+        return !entries.isEmpty() || reconciled;
+    }
+
+    /**
+     * Returns the launchable apps, sorted by label. Never blocks; empty until loaded.
+     */
+    public List<Entry> getLaunchableApps() {
+        List<Entry> apps = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.launchable) apps.add(entry);
+        }
+        Collections.sort(apps, (a, b) -> a.label.compareToIgnoreCase(b.label));
+        return apps;
+    }
+
+    public Entry get(String packageName) {
+        return entries.get(packageName);
+    }
+
+    /**
+     * Loads the catalog if needed and reconciles it with the PackageManager
+     * in the background. Listeners are notified if anything changed.
+     */
+    public void refresh() {
+        executor.execute(() -> {
+            if (!loaded) {
+                load();
+                // Let the screen render the cached entries before reconciling
+                notifyChanged();
+            }
+            reconcile();
+        });
+    }
+
+    /**
+     * Updates one package after a package broadcast.
+     */
+    public void onPackageChanged(String packageName) {
+        executor.execute(() -> {
+            if (!loaded) load();
+            if (update(Collections.singletonList(packageName))) {
+                save();
+                notifyChanged();
+            }
+        });
+    }
+
+    // --- RECONCILIATION (catalog thread) ---
+
+    private void reconcile() {
+        long start = System.nanoTime();
+        PackageManager pm = appContext.getPackageManager();
+        int currentBoot = Settings.Global.getInt(appContext.getContentResolver(), Settings.Global.BOOT_COUNT, 0);
+        String currentLocale = Locale.getDefault().toLanguageTag();
+
+        boolean changed;
+        boolean sameLocale = currentLocale.equals(locale);
+        if (entries.isEmpty() || currentBoot != bootCount || !sameLocale) {
+            // 1. Sequence numbers restart at boot and labels follow the locale: scan everything.
+            // The sequence number is taken first, so changes during the scan are seen next time.
+            ChangedPackages latest = pm.getChangedPackages(0);
+            try {
+                changed = fullScan(pm, sameLocale);
+            } catch (InterruptedException e) {
+                // Nothing saved: the next refresh() scans again
+                Thread.currentThread().interrupt();
+                return;
+            }
+            sequenceNumber = latest != null ? latest.getSequenceNumber() : 0;
+            PerfMetrics.record("catalog.full_scan", System.nanoTime() - start, entries.size());
+        } else {
+            // 2. Only the packages changed since the last visit
+            ChangedPackages delta = pm.getChangedPackages(sequenceNumber);
+            if (delta == null) {
+                reconciled = true;
+                return;
+            }
+            changed = update(delta.getPackageNames());
+            sequenceNumber = delta.getSequenceNumber();
+            PerfMetrics.record("catalog.incremental", System.nanoTime() - start, delta.getPackageNames().size());
+        }
+        bootCount = currentBoot;
+        locale = currentLocale;
+        save();
+        if (changed || !reconciled) {
+            reconciled = true;
+            notifyChanged();
+        }
+    }
+
+    /**
+     * Rebuilds every entry from two PackageManager queries: the installed
+     * packages and the launcher activities. Labels of new or updated
+     * launchable apps load on labelPool. On a first scan the entries are
+     * published as their labels arrive, so the list fills in progressively.
+     */
+    private boolean fullScan(PackageManager pm, boolean reuseLabels) throws InterruptedException {
+        Map<String, Entry> previousEntries = entries;
+        Map<String, ResolveInfo> launchers = queryLaunchers(pm, null);
+        boolean progressive = previousEntries.isEmpty();
+
+        // 1. Entries that need no label, or whose label did not change
+        Map<String, Entry> scanned = new HashMap<>();
+        CompletionService<Entry> labels = new ExecutorCompletionService<>(labelPool);
+        int pending = 0;
+        for (PackageInfo info : pm.getInstalledPackages(0)) {
+            String packageName = info.packageName;
+            long versionCode = info.getLongVersionCode();
+            ResolveInfo launcher = launchers.get(packageName);
+            Entry previous = reuseLabels ? previousEntries.get(packageName) : null;
+            if (launcher == null) {
+                scanned.put(packageName, toEntry(pm, packageName, versionCode, null));
+            } else if (previous != null && previous.launchable && previous.versionCode == versionCode) {
+                scanned.put(packageName, previous);
+            } else {
+                labels.submit(() -> toLabeledEntry(pm, packageName, versionCode, launcher));
+                pending++;
+            }
+        }
+
+        // 2. Collect the labels in completion order
+        long start = System.nanoTime();
+        long lastPublish = SystemClock.uptimeMillis();
+        for (int i = 0; i < pending; i++) {
+            Entry entry;
+            try {
+                entry = labels.take().get();
+            } catch (InterruptedException e) {
+                // Keep the previous catalog rather than saving an incomplete one
+                entries = previousEntries;
+                throw e;
+            } catch (ExecutionException e) {
+                // toLabeledEntry() never throws; an unexpected error must not drop the other apps
+                Log.e(TAG, "Failed to load an app label: " + e.getCause());
+                continue;
+            }
+            scanned.put(entry.packageName, entry);
+            long now = SystemClock.uptimeMillis();
+            if (progressive && now - lastPublish >= PUBLISH_INTERVAL_MS) {
+                entries = Collections.unmodifiableMap(new HashMap<>(scanned));
+                notifyChanged();
+                lastPublish = now;
+            }
+        }
+        PerfMetrics.record("catalog.labels", System.nanoTime() - start, pending);
+
+        boolean changed = !scanned.keySet().equals(previousEntries.keySet())
+                || !sameEntries(previousEntries, scanned);
+        entries = Collections.unmodifiableMap(scanned);
+        return changed;
+    }
+
+    /**
+     * Re-reads the given packages; those that are gone are removed.
+     *
+     * @return True if any entry changed.
+     */
+    private boolean update(Collection<String> packageNames) {
+        PackageManager pm = appContext.getPackageManager();
+        Map<String, Entry> next = new HashMap<>(entries);
+        boolean changed = false;
+        for (String packageName : packageNames) {
+            Entry previous = next.get(packageName);
+            try {
+                PackageInfo info = pm.getPackageInfo(packageName, 0);
+                ResolveInfo launcher = queryLaunchers(pm, packageName).get(packageName);
+                Entry entry = toEntry(pm, packageName, info.getLongVersionCode(), launcher);
+                changed |= !same(previous, entry);
+                next.put(packageName, entry);
+            } catch (PackageManager.NameNotFoundException e) {
+                changed |= next.remove(packageName) != null;
+            }
+        }
+        if (changed) entries = Collections.unmodifiableMap(next);
+        return changed;
+    }
+
+    /**
+     * Returns the launcher activity of each app, for all apps or only the given package.
+     */
+    private static Map<String, ResolveInfo> queryLaunchers(PackageManager pm, String packageName) {
+        Intent intent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        if (packageName != null) intent.setPackage(packageName);
+        Map<String, ResolveInfo> launchers = new HashMap<>();
+        for (ResolveInfo info : pm.queryIntentActivities(intent, 0)) {
+            // Apps with several launcher activities are listed once
+            launchers.putIfAbsent(info.activityInfo.packageName, info);
+        }
+        return launchers;
+    }
+
+    /**
+     * Builds the entry of a launchable app on labelPool. An app whose label cannot be
+     * loaded (e.g. uninstalled during the scan) is listed under its package name.
+     */
+    private static Entry toLabeledEntry(PackageManager pm, String packageName, long versionCode,
+                                        ResolveInfo launcher) {
+        try {
+            return toEntry(pm, packageName, versionCode, launcher);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Label of " + packageName + " unavailable: " + e.getMessage());
+            return new Entry(packageName, packageName, versionCode, true);
+        }
+    }
+
+    /**
+     * Builds the entry of a package. Only launchable apps get their label loaded.
+     */
+    private static Entry toEntry(PackageManager pm, String packageName, long versionCode, ResolveInfo launcher) {
+        if (launcher == null) return new Entry(packageName, packageName, versionCode, false);
+        String label = launcher.activityInfo.applicationInfo.loadLabel(pm).toString();
+        return new Entry(packageName, label, versionCode, true);
+    }
+
+    private static boolean sameEntries(Map<String, Entry> previous, Map<String, Entry> scanned) {
+        for (Entry entry : scanned.values()) {
+            if (!same(previous.get(entry.packageName), entry)) return false;
+        }
+        return true;
+    }
+
+    private static boolean same(Entry a, Entry b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        return a.versionCode == b.versionCode && a.launchable == b.launchable && a.label.equals(b.label);
+    }
+
+    private void notifyChanged() {
+        mainHandler.post(() -> {
+            for (CatalogListener listener : listeners) {
+                listener.onCatalogChanged();
+            }
+        });
+    }
+
+    // --- PERSISTENCE (catalog thread) ---
+
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = file.readFully();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+                throw new IOException("Unknown catalog format");
+            }
+            int boot = in.readInt();
+            int sequence = in.readInt();
+            String savedLocale = in.readUTF();
+            int count = in.readInt();
+            Map<String, Entry> loadedEntries = new HashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readBoolean());
+                loadedEntries.put(entry.packageName, entry);
+            }
+            entries = Collections.unmodifiableMap(loadedEntries);
+            bootCount = boot;
+            sequenceNumber = sequence;
+            locale = savedLocale;
+            PerfMetrics.record("catalog.load", System.nanoTime() - start, bytes.length);
+        } catch (FileNotFoundException e) {
+            // First run: reconcile() scans everything
+        } catch (IOException e) {
+            Log.e(TAG, "Unreadable app catalog, rebuilding: " + e.getMessage());
+        }
+        loaded = true;
+    }
+
+    private void save() {
+        FileOutputStream out = null;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream data = new DataOutputStream(buffer);
+            Map<String, Entry> snapshot = entries;
+            data.writeInt(MAGIC);
+            data.writeByte(FORMAT_VERSION);
+            data.writeInt(bootCount);
+            data.writeInt(sequenceNumber);
+            data.writeUTF(locale);
+            data.writeInt(snapshot.size());
+            for (Entry entry : snapshot.values()) {
+                data.writeUTF(entry.packageName);
+                data.writeUTF(entry.label);
+                data.writeLong(entry.versionCode);
+                data.writeBoolean(entry.launchable);
+            }
+            data.flush();
+
+            out = file.startWrite();
+            buffer.writeTo(out);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) file.failWrite(out);
+            Log.e(TAG, "Failed to save app catalog: " + e.getMessage());
+        }
+    }
+}
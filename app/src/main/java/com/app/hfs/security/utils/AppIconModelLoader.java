@@ -0,0 +1,141 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.signature.ObjectKey;
+import com.hfs.security.models.AppIcon;
+
+/**
+ * Glide loader for app launcher icons.
+ * The icon is loaded from the PackageManager only when a row binds and is
+ * rasterized straight at the row's pixel size, so no full-size bitmap is
+ * kept. Glide's memory LRU and resource disk cache (keyed by package and
+ * version code, see AppIcon) then serve it without touching the
+ * PackageManager again, and clearing a recycled row cancels its load.
+ */
+public class AppIconModelLoader implements ModelLoader<AppIcon, Bitmap> {
+
+    // Used if the target has no size yet; launcher icons are at most 192 px
+    private static final int FALLBACK_SIZE_PX = 192;
+
+    private final Context appContext;
+
+    AppIconModelLoader(Context context) {
+        this.appContext = context;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<Bitmap> buildLoadData(@NonNull AppIcon model, int width, int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new IconFetcher(appContext, model, width, height));
+    }
+
+    @Override
+    public boolean handles(@NonNull AppIcon model) {
+        return true;
+    }
+
+    /**
+     * Loads and rasterizes the icon on Glide's source executor.
+     */
+    private static class IconFetcher implements DataFetcher<Bitmap> {
+
+        private final Context context;
+        private final AppIcon model;
+        private final int width;
+        private final int height;
+        private volatile boolean cancelled;
+
+        IconFetcher(Context context, AppIcon model, int width, int height) {
+            this.context = context;
+            this.model = model;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super Bitmap> callback) {
+            long start = System.nanoTime();
+            try {
+                // 1. The row may have been recycled while this load was queued
+                if (cancelled) {
+                    callback.onLoadFailed(new InterruptedException("Icon load cancelled"));
+                    return;
+                }
+                Drawable icon = context.getPackageManager().getApplicationIcon(model.getPackageName());
+
+                // 2. Draw it at the requested size
+                int w = width > 0 && width != Target.SIZE_ORIGINAL ? width : sizeOf(icon.getIntrinsicWidth());
+                int h = height > 0 && height != Target.SIZE_ORIGINAL ? height : sizeOf(icon.getIntrinsicHeight());
+                Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(bitmap);
+                icon.setBounds(0, 0, w, h);
+                icon.draw(canvas);
+                PerfMetrics.record("icon.load", System.nanoTime() - start, bitmap.getByteCount());
+                callback.onDataReady(bitmap);
+            } catch (PackageManager.NameNotFoundException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        private static int sizeOf(int intrinsic) {
+            return intrinsic > 0 ? Math.min(intrinsic, FALLBACK_SIZE_PX) : FALLBACK_SIZE_PX;
+        }
+
+        @Override
+        public void cleanup() {}
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @NonNull
+        @Override
+        public Class<Bitmap> getDataClass() {
+            return Bitmap.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+
+    /**
+     * Factory registered with Glide in HFSGlideModule.
+     */
+    public static class Factory implements ModelLoaderFactory<AppIcon, Bitmap> {
+
+        private final Context appContext;
+
+        public Factory(Context context) {
+            this.appContext = context.getApplicationContext();
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<AppIcon, Bitmap> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new AppIconModelLoader(appContext);
+        }
+
+        @Override
+        public void teardown() {}
+    }
+}
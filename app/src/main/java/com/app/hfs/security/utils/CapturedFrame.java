@@ -0,0 +1,52 @@
+package com.hfs.security.utils;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copy of a front camera frame (NV21) that outlives its ImageProxy.
+ * The camera reuses the frame's buffers as soon as the proxy is closed, so
+ * the lock screen copies the planes (a plain memory copy) before handing
+ * the frame to the capture pipeline on a background thread.
+ */
+public class CapturedFrame {
+
+    public final byte[] nv21;
+    public final int width;
+    public final int height;
+    // Bytes per row of the Y plane; may be larger than the width
+    public final int rowStride;
+    public final int rotationDegrees;
+
+    private CapturedFrame(byte[] nv21, int width, int height, int rowStride, int rotationDegrees) {
+        this.nv21 = nv21;
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+        this.rotationDegrees = rotationDegrees;
+    }
+
+    /**
+     * Copies a YUV_420_888 frame. The proxy may be closed right after.
+     */
+    public static CapturedFrame copyOf(ImageProxy image) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        ByteBuffer yBuffer = planes[0].getBuffer().duplicate();
+        ByteBuffer uBuffer = planes[1].getBuffer().duplicate();
+        ByteBuffer vBuffer = planes[2].getBuffer().duplicate();
+
+        int ySize = yBuffer.remaining();
+        int uSize = uBuffer.remaining();
+        int vSize = vBuffer.remaining();
+
+        // Y, then the interleaved V/U planes
+        byte[] nv21 = new byte[ySize + uSize + vSize];
+        yBuffer.get(nv21, 0, ySize);
+        vBuffer.get(nv21, ySize, vSize);
+        uBuffer.get(nv21, ySize + vSize, uSize);
+
+        return new CapturedFrame(nv21, image.getWidth(), image.getHeight(),
+                planes[0].getRowStride(), image.getImageInfo().getRotationDegrees());
+    }
+}
@@ -0,0 +1,434 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypted Evidence Format (HFSE).
+ * Intruder photos are written as a sequence of independently authenticated
+ * AES-GCM chunks, so the capture path never buffers the whole image and a
+ * reader can decrypt the thumbnail section without touching the full image.
+ *
+ * Layout:
+ *   Header  : "HFSE" | version (1) | reserved (3) | chunk size (4) | file ID (16)
+ *             | key type (1) | wrapped key length (2) | wrapped data key
+ *   Record* : section (1) | flags (1) | plain length (4) | IV (12) | ciphertext + tag
+ *
+ * Every file has its own random AES-256 data key and file ID. The data key
+ * is stored in the header, wrapped (AES-GCM) by a key that lives in the
+ * Android Keystore and never leaves it, so a file costs one Keystore call
+ * and its chunks are sealed in software. Chunk IVs count up from zero,
+ * which is safe because no two files share a data key.
+ *
+ * The AAD of every chunk binds the fixed header (up to and including the
+ * file ID), section, flags and chunk index, so chunks cannot be reordered,
+ * moved between sections or files, or dropped without failing
+ * authentication. Every section ends with a chunk flagged as last, empty if
+ * the section is, so a missing section is detected as well.
+ *
+ * Copies sent off the device (see writeRecoveryCopy) carry the same data
+ * key wrapped instead with the owner's RSA recovery key (RSA-OAEP, SHA-256
+ * for both digest and MGF1), so they stay readable after the phone is wiped
+ * or lost. To read one: unwrap the data key with the private key, then open
+ * each record with AES-256-GCM using its IV and the AAD described above.
+ *
+ * Version 1 files (no file ID, every chunk sealed by the Keystore key
+ * directly) are still readable.
+ */
+public class EvidenceCrypto {
+
+    public static final String FILE_EXTENSION = ".hfse";
+
+    static final byte[] MAGIC = {'H', 'F', 'S', 'E'};
+    static final int VERSION = 2;
+    static final int VERSION_KEYSTORE_CHUNKS = 1;
+    // Magic, version, reserved and chunk size; common to all versions
+    static final int PREFIX_SIZE = 12;
+    static final int FILE_ID_SIZE = 16;
+    // Header bytes bound into every chunk's AAD
+    static final int FIXED_HEADER_SIZE = PREFIX_SIZE + FILE_ID_SIZE;
+    static final int V1_HEADER_SIZE = 16;
+    static final int DATA_KEY_BYTES = 32;
+    static final int IV_SIZE = 12;
+    static final int TAG_BITS = 128;
+    static final int TAG_SIZE = TAG_BITS / 8;
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    // Plaintext bytes per chunk; bounds the memory used by writers and readers
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    // Sections of an evidence file
+    public static final int SECTION_THUMBNAIL = 1;
+    public static final int SECTION_IMAGE = 2;
+
+    // Record flag marking the final chunk of a section
+    static final int FLAG_LAST_CHUNK = 0x01;
+
+    // Wrapped data key types: sealed by the Keystore evidence key, or by the owner's recovery key
+    static final int KEY_TYPE_DEVICE = 1;
+    static final int KEY_TYPE_RECOVERY = 2;
+
+    private static final String RECOVERY_TRANSFORMATION = "RSA/ECB/OAEPPadding";
+    private static final OAEPParameterSpec RECOVERY_OAEP = new OAEPParameterSpec(
+            "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+    private static final int MIN_RECOVERY_KEY_BITS = 2048;
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "hfs_evidence_key";
+
+    private static SecretKey cachedKey;
+
+    /**
+     * Returns the evidence key, creating it in the Android Keystore on first use.
+     */
+    public static synchronized SecretKey getKey() throws GeneralSecurityException, IOException {
+        if (cachedKey != null) return cachedKey;
+
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        if (keyStore.containsAlias(KEY_ALIAS)) {
+            cachedKey = (SecretKey) keyStore.getKey(KEY_ALIAS, null);
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            cachedKey = generator.generateKey();
+        }
+        return cachedKey;
+    }
+
+    /**
+     * Header of an evidence file, as read from disk.
+     */
+    static class FileHeader {
+        final int version;
+        // Bytes bound into the AAD of every chunk
+        final byte[] fixed;
+        final int keyType;
+        final byte[] wrappedKey;
+
+        private FileHeader(int version, byte[] fixed, int keyType, byte[] wrappedKey) {
+            this.version = version;
+            this.fixed = fixed;
+            this.keyType = keyType;
+            this.wrappedKey = wrappedKey;
+        }
+
+        static FileHeader read(DataInputStream in) throws IOException {
+            byte[] prefix = new byte[PREFIX_SIZE];
+            try {
+                in.readFully(prefix);
+            } catch (EOFException e) {
+                throw new IOException("Not an evidence file: header truncated");
+            }
+            if (!Arrays.equals(Arrays.copyOf(prefix, MAGIC.length), MAGIC)) {
+                throw new IOException("Not an evidence file");
+            }
+
+            int version = prefix[MAGIC.length] & 0xFF;
+            if (version == VERSION_KEYSTORE_CHUNKS) {
+                byte[] fixed = Arrays.copyOf(prefix, V1_HEADER_SIZE);
+                in.readFully(fixed, PREFIX_SIZE, V1_HEADER_SIZE - PREFIX_SIZE);
+                return new FileHeader(version, fixed, KEY_TYPE_DEVICE, null);
+            }
+            if (version != VERSION) throw new IOException("Unsupported evidence file format " + version);
+
+            byte[] fixed = Arrays.copyOf(prefix, FIXED_HEADER_SIZE);
+            in.readFully(fixed, PREFIX_SIZE, FILE_ID_SIZE);
+            int keyType = in.readUnsignedByte();
+            byte[] wrappedKey = new byte[in.readUnsignedShort()];
+            in.readFully(wrappedKey);
+            return new FileHeader(version, fixed, keyType, wrappedKey);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.write(fixed);
+            out.writeByte(keyType);
+            out.writeShort(wrappedKey.length);
+            out.write(wrappedKey);
+        }
+
+        int size() {
+            return fixed.length + 3 + wrappedKey.length;
+        }
+    }
+
+    /**
+     * Builds the fixed header of a new file.
+     */
+    static byte[] newFixedHeader(byte[] fileId) {
+        return ByteBuffer.allocate(FIXED_HEADER_SIZE)
+                .put(MAGIC)
+                .put((byte) VERSION)
+                .put(new byte[3])
+                .putInt(CHUNK_SIZE)
+                .put(fileId)
+                .array();
+    }
+
+    /**
+     * Wraps a file's data key; the fixed header is authenticated with it.
+     */
+    static byte[] wrapDataKey(int keyType, Key wrappingKey, SecretKey dataKey, byte[] fixedHeader)
+            throws GeneralSecurityException {
+        if (keyType == KEY_TYPE_RECOVERY) {
+            // The chunk AADs already bind the fixed header, so the RSA wrap needs no label
+            Cipher cipher = Cipher.getInstance(RECOVERY_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, RECOVERY_OAEP);
+            return cipher.doFinal(dataKey.getEncoded());
+        }
+        if (keyType != KEY_TYPE_DEVICE) throw new GeneralSecurityException("Unknown evidence key type " + keyType);
+
+        // The Keystore chooses the IV
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, wrappingKey);
+        cipher.updateAAD(fixedHeader);
+        byte[] sealed = cipher.doFinal(dataKey.getEncoded());
+        return ByteBuffer.allocate(IV_SIZE + sealed.length).put(cipher.getIV(), 0, IV_SIZE).put(sealed).array();
+    }
+
+    /**
+     * Unwraps the data key of a file read with FileHeader.read().
+     */
+    static SecretKey unwrapDataKey(FileHeader header, Key unwrappingKey) throws GeneralSecurityException {
+        if (header.keyType == KEY_TYPE_RECOVERY) {
+            Cipher cipher = Cipher.getInstance(RECOVERY_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, unwrappingKey, RECOVERY_OAEP);
+            return new SecretKeySpec(cipher.doFinal(header.wrappedKey), "AES");
+        }
+        if (header.keyType != KEY_TYPE_DEVICE) {
+            throw new GeneralSecurityException("Unknown evidence key type " + header.keyType);
+        }
+
+        byte[] wrapped = header.wrappedKey;
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, unwrappingKey, new GCMParameterSpec(TAG_BITS, wrapped, 0, IV_SIZE));
+        cipher.updateAAD(header.fixed);
+        return new SecretKeySpec(cipher.doFinal(wrapped, IV_SIZE, wrapped.length - IV_SIZE), "AES");
+    }
+
+    /**
+     * Returns true if the file uses the encrypted evidence format.
+     */
+    public static boolean isEncrypted(String path) {
+        return path != null && path.endsWith(FILE_EXTENSION);
+    }
+
+    /**
+     * Opens a new encrypted evidence file for streaming writes.
+     */
+    public static EvidenceOutputStream openWriter(File file) throws IOException {
+        try {
+            return openWriter(file, KEY_TYPE_DEVICE, getKey());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Evidence key unavailable", e);
+        }
+    }
+
+    private static EvidenceOutputStream openWriter(File file, int keyType, Key wrappingKey)
+            throws IOException, GeneralSecurityException {
+        FileOutputStream target = new FileOutputStream(file);
+        try {
+            return new EvidenceOutputStream(target, keyType, wrappingKey);
+        } catch (GeneralSecurityException | IOException e) {
+            target.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens one section of an encrypted evidence file for streaming reads.
+     * Only the chunks of the requested section are decrypted.
+     */
+    public static InputStream openSection(File file, int section) throws IOException {
+        try {
+            return new EvidenceInputStream(new FileInputStream(file), getKey(), section);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Evidence key unavailable", e);
+        }
+    }
+
+    // --- RECOVERY COPIES ---
+
+    /**
+     * Parses the owner's recovery key: an RSA public key of at least 2048
+     * bits, as PEM or bare Base64 of its X.509 encoding.
+     */
+    public static PublicKey parseRecoveryKey(String text) throws GeneralSecurityException {
+        String base64 = text.replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "").replaceAll("\\s", "");
+        PublicKey key;
+        try {
+            key = KeyFactory.getInstance("RSA").generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Recovery key is not valid Base64", e);
+        }
+        if (((RSAPublicKey) key).getModulus().bitLength() < MIN_RECOVERY_KEY_BITS) {
+            throw new GeneralSecurityException("Recovery key is shorter than " + MIN_RECOVERY_KEY_BITS + " bits");
+        }
+        return key;
+    }
+
+    /**
+     * Writes a copy of an evidence file that only the owner's recovery key
+     * can open: the data key is re-wrapped for that key and the records are
+     * copied unchanged. Version 1 files have no data key and are
+     * re-encrypted section by section.
+     */
+    public static void writeRecoveryCopy(File source, File target, PublicKey recoveryKey) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(source), CHUNK_SIZE))) {
+            FileHeader header = FileHeader.read(in);
+            if (header.version == VERSION_KEYSTORE_CHUNKS) {
+                transcodeForRecovery(source, target, recoveryKey);
+                return;
+            }
+
+            // Same fixed header, so every chunk's AAD still matches
+            SecretKey dataKey = unwrapDataKey(header, getKey());
+            FileHeader copy = new FileHeader(header.version, header.fixed, KEY_TYPE_RECOVERY,
+                    wrapDataKey(KEY_TYPE_RECOVERY, recoveryKey, dataKey, header.fixed));
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(target), CHUNK_SIZE))) {
+                copy.write(out);
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Evidence key could not be re-wrapped", e);
+        }
+    }
+
+    /**
+     * Opens one section of a recovery copy with the owner's private key.
+     * Plain JCE, so it also runs off the device.
+     */
+    public static InputStream openRecoverySection(File file, PrivateKey recoveryKey, int section)
+            throws IOException {
+        return new EvidenceInputStream(new FileInputStream(file), recoveryKey, section);
+    }
+
+    private static void transcodeForRecovery(File source, File target, PublicKey recoveryKey)
+            throws IOException, GeneralSecurityException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try (EvidenceOutputStream out = openWriter(target, KEY_TYPE_RECOVERY, recoveryKey)) {
+            for (int section : new int[] {SECTION_THUMBNAIL, SECTION_IMAGE}) {
+                out.beginSection(section);
+                try (InputStream in = openSection(source, section)) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures write and read throughput of the plain and encrypted evidence
+     * paths on this device, using a temporary file in the cache directory.
+     *
+     * @return A human-readable summary in MB/s.
+     */
+    public static String benchmarkThroughput(Context context) throws IOException {
+        final int totalBytes = 8 * 1024 * 1024;
+        byte[] block = new byte[16 * 1024];
+        new Random(42).nextBytes(block);
+        File file = new File(context.getCacheDir(), "hfs_benchmark.tmp");
+
+        try {
+            long start = System.nanoTime();
+            try (OutputStream out = new FileOutputStream(file)) {
+                writeBlocks(out, block, totalBytes);
+            }
+            long plainWrite = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (InputStream in = new FileInputStream(file)) {
+                drain(in, block);
+            }
+            long plainRead = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (EvidenceOutputStream out = openWriter(file)) {
+                out.beginSection(SECTION_IMAGE);
+                writeBlocks(out, block, totalBytes);
+            }
+            long encryptedWrite = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (InputStream in = openSection(file, SECTION_IMAGE)) {
+                drain(in, block);
+            }
+            long encryptedRead = System.nanoTime() - start;
+
+            PerfMetrics.record("bench.plain.write", plainWrite, totalBytes);
+            PerfMetrics.record("bench.plain.read", plainRead, totalBytes);
+            PerfMetrics.record("bench.encrypted.write", encryptedWrite, totalBytes);
+            PerfMetrics.record("bench.encrypted.read", encryptedRead, totalBytes);
+
+            return String.format(Locale.US,
+                    "Evidence I/O (8 MB)\n  plain: write %.1f MB/s, read %.1f MB/s\n  encrypted: write %.1f MB/s, read %.1f MB/s",
+                    PerfMetrics.throughputMbPerSec(totalBytes, plainWrite),
+                    PerfMetrics.throughputMbPerSec(totalBytes, plainRead),
+                    PerfMetrics.throughputMbPerSec(totalBytes, encryptedWrite),
+                    PerfMetrics.throughputMbPerSec(totalBytes, encryptedRead));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void writeBlocks(OutputStream out, byte[] block, int totalBytes) throws IOException {
+        for (int written = 0; written < totalBytes; written += block.length) {
+            out.write(block, 0, Math.min(block.length, totalBytes - written));
+        }
+    }
+
+    private static void drain(InputStream in, byte[] buffer) throws IOException {
+        while (in.read(buffer) != -1) {
+            // Discard; only the elapsed time matters
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hfs.security.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decoded evidence photo for the in-app viewer.
+ * The image is decrypted in memory once, a screen-sized subsampled preview
+ * is decoded for the initial display, and full-resolution regions are
+ * decoded on demand with BitmapRegionDecoder as the user zooms in.
+ * The plaintext never touches the disk.
+ */
+public class EvidenceImage {
+
+    private final int width;
+    private final int height;
+    private final int previewSampleSize;
+    private final Bitmap preview;
+    private final BitmapRegionDecoder decoder;
+
+    private EvidenceImage(int width, int height, int previewSampleSize, Bitmap preview,
+                          BitmapRegionDecoder decoder) {
+        this.width = width;
+        this.height = height;
+        this.previewSampleSize = previewSampleSize;
+        this.preview = preview;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Reads (and decrypts, for encrypted evidence) the photo and decodes a
+     * preview no larger than needed for the target size. Blocking.
+     */
+    @SuppressWarnings("deprecation")
+    public static EvidenceImage load(String path, int targetWidth, int targetHeight) throws IOException {
+        // 1. Decrypt the image section into memory
+        long start = System.nanoTime();
+        byte[] data;
+        try (InputStream in = EvidenceCrypto.isEncrypted(path)
+                ? EvidenceCrypto.openSection(new File(path), EvidenceCrypto.SECTION_IMAGE)
+                : new FileInputStream(path)) {
+            data = readAll(in);
+        }
+        PerfMetrics.record("viewer.read", System.nanoTime() - start, data.length);
+
+        // 2. Bounds only, to pick the preview sample size
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Evidence image could not be decoded");
+        }
+        int width = options.outWidth;
+        int height = options.outHeight;
+
+        // 3. Subsampled preview that still covers the screen
+        start = System.nanoTime();
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateSampleSize(width, height, targetWidth, targetHeight);
+        Bitmap preview = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (preview == null) throw new IOException("Evidence image could not be decoded");
+        PerfMetrics.record("viewer.preview_decode", System.nanoTime() - start, preview.getByteCount());
+
+        // 4. Region decoder for full-resolution tiles
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+        return new EvidenceImage(width, height, options.inSampleSize, preview, decoder);
+    }
+
+    /**
+     * Largest power-of-two sample size that keeps the image at least as large as the target.
+     */
+    public static int calculateSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decodes one region of the full image at the given sample size. Blocking.
+     */
+    public Bitmap decodeRegion(Rect region, int sampleSize) {
+        long start = System.nanoTime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap tile;
+        try {
+            tile = decoder.decodeRegion(region, options);
+        } catch (IllegalStateException e) {
+            // Released while the tile was queued
+            return null;
+        }
+        if (tile != null) {
+            PerfMetrics.record("viewer.tile_decode", System.nanoTime() - start, tile.getByteCount());
+        }
+        return tile;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPreviewSampleSize() {
+        return previewSampleSize;
+    }
+
+    public Bitmap getPreview() {
+        return preview;
+    }
+
+    /**
+     * Returns the approximate memory held by this image, for cache sizing.
+     */
+    public int getByteCount() {
+        return preview.getByteCount();
+    }
+
+    /**
+     * Frees the region decoder. The preview is left to the garbage collector,
+     * since a view may still be drawing it.
+     */
+    public void release() {
+        decoder.recycle();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(EvidenceCrypto.CHUNK_SIZE);
+        byte[] buffer = new byte[EvidenceCrypto.CHUNK_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
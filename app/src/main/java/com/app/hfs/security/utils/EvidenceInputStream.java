@@ -0,0 +1,153 @@
+package com.hfs.security.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Streaming reader for one section of an encrypted evidence file.
+ * Records of other sections are skipped without being decrypted, and the
+ * chunks of the requested section are authenticated and decrypted one at a
+ * time as the caller reads. The file's data key is unwrapped once when the
+ * stream is opened; version 1 files use the Keystore key for every chunk.
+ * A section that ends before its last-chunk flag, or is missing entirely,
+ * fails with an IOException rather than reading as short or empty.
+ */
+public class EvidenceInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Key key;
+    private final Cipher cipher;
+    private final int section;
+    private final byte[] header;
+
+    private byte[] plain = new byte[0];
+    private int plainPos = 0;
+    private int chunkIndex = 0;
+    private boolean sectionDone = false;
+
+    /**
+     * @param unwrappingKey Key that unwraps the file's data key (for version 1
+     *                      files, the key that sealed every chunk).
+     */
+    EvidenceInputStream(InputStream source, Key unwrappingKey, int section) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(source, EvidenceCrypto.CHUNK_SIZE));
+        this.section = section;
+
+        try {
+            EvidenceCrypto.FileHeader fileHeader = EvidenceCrypto.FileHeader.read(in);
+            this.header = fileHeader.fixed;
+            this.key = fileHeader.version == EvidenceCrypto.VERSION_KEYSTORE_CHUNKS
+                    ? unwrappingKey : EvidenceCrypto.unwrapDataKey(fileHeader, unwrappingKey);
+            this.cipher = Cipher.getInstance(EvidenceCrypto.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            in.close();
+            throw new IOException("Evidence key could not be unwrapped", e);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the associated data bound to each chunk.
+     */
+    static byte[] buildAad(byte[] header, int section, int flags, int chunkIndex) {
+        return ByteBuffer.allocate(header.length + 6)
+                .put(header)
+                .put((byte) section)
+                .put((byte) flags)
+                .putInt(chunkIndex)
+                .array();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (plainPos == plain.length) {
+            if (sectionDone) return -1;
+            nextChunk();
+        }
+        int n = Math.min(len, plain.length - plainPos);
+        System.arraycopy(plain, plainPos, b, off, n);
+        plainPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return plain.length - plainPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Advances to the next chunk of the requested section.
+     * @throws IOException If the section ends without its last chunk.
+     */
+    private void nextChunk() throws IOException {
+        while (true) {
+            int recordSection;
+            try {
+                recordSection = in.readUnsignedByte();
+            } catch (EOFException e) {
+                // Every section ends with a flagged chunk, so EOF before it means records were removed
+                throw new IOException(chunkIndex > 0 ? "Evidence section truncated" : "Evidence section missing");
+            }
+            int flags = in.readUnsignedByte();
+            int plainLength = in.readInt();
+            if (plainLength < 0 || plainLength > EvidenceCrypto.CHUNK_SIZE) {
+                throw new IOException("Corrupt evidence record");
+            }
+            int sealedLength = plainLength + EvidenceCrypto.TAG_SIZE;
+
+            if (recordSection != section) {
+                skipFully(EvidenceCrypto.IV_SIZE + sealedLength);
+                continue;
+            }
+
+            byte[] iv = new byte[EvidenceCrypto.IV_SIZE];
+            in.readFully(iv);
+            byte[] sealed = new byte[sealedLength];
+            in.readFully(sealed);
+
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(EvidenceCrypto.TAG_BITS, iv));
+                cipher.updateAAD(buildAad(header, section, flags, chunkIndex));
+                plain = cipher.doFinal(sealed);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Evidence chunk failed authentication", e);
+            }
+            plainPos = 0;
+            chunkIndex++;
+            sectionDone = (flags & EvidenceCrypto.FLAG_LAST_CHUNK) != 0;
+            return;
+        }
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) throw new EOFException("Evidence record truncated");
+            count -= skipped;
+        }
+    }
+}
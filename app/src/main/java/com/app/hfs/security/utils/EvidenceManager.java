@@ -0,0 +1,279 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.hfs.security.models.Incident;
+import com.hfs.security.models.IntruderLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background Evidence Manager.
+ * Performs bulk deletion and retention enforcement off the UI thread.
+ * Evidence is always removed oldest-first, in batches: the index rows of a
+ * batch are deleted in one transaction, then their files. Files left behind
+ * by an interrupted run are picked up by the orphan sweep. Every file
+ * deletion is recorded in the evidence manifest first.
+ */
+public class EvidenceManager {
+
+    private static final String TAG = "HFS_EvidenceManager";
+
+    // Number of records removed per index transaction
+    private static final int BATCH_SIZE = 100;
+
+    // Files younger than this may belong to a capture whose row is not written yet
+    private static final long ORPHAN_GRACE_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Progress callback for bulk operations. Always invoked on the main thread.
+     */
+    public interface ProgressListener {
+        void onProgress(int deleted, int total);
+        void onComplete(int deleted);
+    }
+
+    private static EvidenceManager instance;
+    private final Context context;
+    private final IntrusionIndexHelper index;
+    private final HFSDatabaseHelper db;
+    private final EvidenceManifest manifest;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private EvidenceManager(Context context) {
+        this.context = context;
+        this.index = IntrusionIndexHelper.getInstance(context);
+        this.db = HFSDatabaseHelper.getInstance(context);
+        this.manifest = EvidenceManifest.getInstance(context);
+    }
+
+    /**
+     * Returns a thread-safe singleton instance of the evidence manager.
+     */
+    public static synchronized EvidenceManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidenceManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // --- BULK DELETION ---
+
+    /**
+     * Deletes all intruder evidence in the background.
+     */
+    public void deleteAllEvidence(ProgressListener listener) {
+        executor.execute(() -> {
+            int total = index.getIntrusionCount();
+            int deleted = 0;
+
+            List<IntruderLog> batch;
+            while (!(batch = index.getOldestIntrusions(BATCH_SIZE)).isEmpty()) {
+                deleted += evict(batch);
+                postProgress(listener, deleted, total);
+            }
+
+            sweepAllOrphanedFiles();
+            postComplete(listener, deleted);
+        });
+    }
+
+    /**
+     * Deletes the given incidents, all of their captures and evidence files
+     * in the background.
+     */
+    public void deleteIncidents(List<Incident> incidents, ProgressListener listener) {
+        final List<Long> pending = new ArrayList<>(incidents.size());
+        for (Incident incident : incidents) {
+            pending.add(incident.getId());
+        }
+        executor.execute(() -> {
+            int total = pending.size();
+            int deleted = 0;
+
+            for (int start = 0; start < total; start += BATCH_SIZE) {
+                List<Long> batch = pending.subList(start, Math.min(total, start + BATCH_SIZE));
+                // Index rows first (single transaction), then files
+                List<File> files = new ArrayList<>();
+                for (String path : index.getIncidentPhotoPaths(batch)) {
+                    files.add(new File(path));
+                }
+                index.deleteIncidents(batch);
+                deleteFiles(files);
+                deleted += batch.size();
+                postProgress(listener, deleted, total);
+            }
+            postComplete(listener, deleted);
+        });
+    }
+
+    /**
+     * Removes all incidents, captures and evidence files for the remote wipe
+     * command. The index is cleared in one transaction before any file is
+     * deleted, and the run is queued behind other bulk operations.
+     * Blocking; intended for a background worker.
+     *
+     * @return Number of evidence files deleted.
+     */
+    public int wipeAllEvidence() throws Exception {
+        return executor.submit(() -> {
+            List<File> files = new ArrayList<>();
+            for (String path : index.getAllPhotoPaths()) {
+                files.add(new File(path));
+            }
+            int incidents = index.deleteAllIncidents();
+            deleteFiles(files);
+            sweepAllOrphanedFiles();
+            Log.i(TAG, "Remote wipe removed " + incidents + " incidents and " + files.size() + " files.");
+            return files.size();
+        }).get();
+    }
+
+    // --- RETENTION ---
+
+    /**
+     * Enforces the retention policy (maximum age, count and size) by evicting
+     * the oldest evidence until every limit is satisfied. Blocking; intended
+     * for the periodic retention worker.
+     *
+     * @return Number of records evicted.
+     */
+    public int enforceRetention() {
+        int maxAgeDays = db.getRetentionMaxAgeDays();
+        int maxCount = db.getRetentionMaxCount();
+        long maxBytes = db.getRetentionMaxMegabytes() * 1024L * 1024L;
+
+        long ageCutoff = maxAgeDays > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays)
+                : Long.MIN_VALUE;
+        int count = index.getIntrusionCount();
+        long bytes = index.getTotalEvidenceBytes();
+        int evicted = 0;
+
+        boolean done = false;
+        while (!done) {
+            List<IntruderLog> batch = index.getOldestIntrusions(BATCH_SIZE);
+            List<IntruderLog> victims = new ArrayList<>();
+
+            // Walk oldest-first and stop at the first record that breaks no limit
+            for (IntruderLog log : batch) {
+                boolean tooOld = log.getTimestamp() < ageCutoff;
+                boolean tooMany = maxCount > 0 && count > maxCount;
+                boolean tooLarge = maxBytes > 0 && bytes > maxBytes;
+                if (!tooOld && !tooMany && !tooLarge) {
+                    done = true;
+                    break;
+                }
+                victims.add(log);
+                count--;
+                bytes -= log.getFileSize();
+            }
+
+            if (victims.isEmpty()) break;
+            evicted += evict(victims);
+            if (batch.size() < BATCH_SIZE) done = true;
+        }
+
+        sweepOrphanedFiles(ORPHAN_GRACE_MS);
+        Log.i(TAG, "Retention pass evicted " + evicted + " records.");
+        return evicted;
+    }
+
+    // --- INTERNALS ---
+
+    /**
+     * Removes one batch: index rows first (single transaction), then files.
+     */
+    private int evict(List<IntruderLog> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (IntruderLog log : batch) {
+            ids.add(log.getId());
+        }
+        index.deleteIntrusions(ids);
+
+        List<File> files = new ArrayList<>();
+        for (IntruderLog log : batch) {
+            if (log.hasPhoto()) {
+                files.add(new File(log.getFilePath()));
+            }
+        }
+        deleteFiles(files);
+        return batch.size();
+    }
+
+    /**
+     * Records the deletions in the evidence manifest, then removes the files.
+     */
+    private void deleteFiles(List<File> files) {
+        manifest.recordDeletions(files);
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes every unreferenced evidence file, however young, and the upload
+     * copies of removed captures. Runs on the index thread, where a capture
+     * writes its file and inserts its row in one task, so no capture can be
+     * caught between the two.
+     */
+    private void sweepAllOrphanedFiles() {
+        try {
+            index.submit(() -> {
+                sweepOrphanedFiles(0);
+                File[] staged = FileSecureHelper.getUploadStagingDirectory(context).listFiles();
+                if (staged != null) {
+                    for (File file : staged) {
+                        file.delete();
+                    }
+                }
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Orphan sweep failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Deletes evidence files that are no longer referenced by the index.
+     */
+    private void sweepOrphanedFiles(long graceMs) {
+        File[] files = FileSecureHelper.getIntruderDirectory(context).listFiles();
+        if (files == null) return;
+
+        Set<String> indexed = index.getAllPhotoPaths();
+        long cutoff = System.currentTimeMillis() - graceMs;
+        List<File> orphans = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() <= cutoff && !indexed.contains(file.getAbsolutePath())) {
+                orphans.add(file);
+            }
+        }
+        deleteFiles(orphans);
+    }
+
+    private void postProgress(ProgressListener listener, int deleted, int total) {
+        if (listener != null) {
+            mainHandler.post(() -> listener.onProgress(deleted, total));
+        }
+    }
+
+    private void postComplete(ProgressListener listener, int deleted) {
+        if (listener != null) {
+            mainHandler.post(() -> listener.onComplete(deleted));
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tamper-Evident Evidence Manifest.
+ * An append-only log in private app storage with one entry per evidence
+ * file written (ADD, with the file's SHA-256) or deleted (DEL). Every entry
+ * carries the hash of the previous entry and its own hash over all fields,
+ * so removing, reordering or editing an entry breaks the chain, and editing
+ * an evidence file no longer matches its recorded digest. The head of the
+ * chain is also kept in the encrypted settings, so cutting entries off the
+ * end (or the whole file) is detected as well.
+ *
+ * Entry: seq|type|timestamp|file name|size|file sha256|previous entry hash|entry hash
+ */
+public class EvidenceManifest {
+
+    private static final String TAG = "HFS_EvidenceManifest";
+    private static final String MANIFEST_FILE = "evidence_manifest.log";
+
+    private static final String TYPE_ADD = "ADD";
+    private static final String TYPE_DEL = "DEL";
+    private static final String GENESIS_HASH = repeat('0', 64);
+    private static final int FIELD_COUNT = 8;
+
+    // Files written this recently may not have their ADD entry yet
+    private static final long UNRECORDED_GRACE_MS = 60 * 1000L;
+
+    /**
+     * Outcome of a verification pass.
+     */
+    public static class VerificationResult {
+        public int entries;
+        public int verifiedFiles;
+        public final List<String> problems = new ArrayList<>();
+
+        public boolean isIntact() {
+            return problems.isEmpty();
+        }
+
+        public String summary() {
+            if (isIntact()) {
+                return "Intact: " + entries + " entries, " + verifiedFiles + " files verified";
+            }
+            StringBuilder sb = new StringBuilder("TAMPERING DETECTED (" + problems.size() + " issues)");
+            for (int i = 0; i < Math.min(5, problems.size()); i++) {
+                sb.append("\n  ").append(problems.get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static EvidenceManifest instance;
+    private final File manifestFile;
+    private final File evidenceDir;
+    private final HFSDatabaseHelper db;
+
+    // Tail of the chain; loaded lazily from the last manifest entry
+    private boolean tailLoaded = false;
+    private long lastSeq = -1;
+    private String lastHash = GENESIS_HASH;
+
+    private EvidenceManifest(Context context) {
+        this.manifestFile = new File(context.getFilesDir(), MANIFEST_FILE);
+        this.evidenceDir = FileSecureHelper.getIntruderDirectory(context);
+        this.db = HFSDatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Returns a thread-safe singleton instance of the evidence manifest.
+     */
+    public static synchronized EvidenceManifest getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidenceManifest(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // --- APPEND ---
+
+    /**
+     * Records a newly written evidence file and its digest.
+     */
+    public synchronized void recordAddition(File file, byte[] sha256) throws IOException {
+        long start = System.nanoTime();
+        loadTail(file);
+        StringBuilder lines = new StringBuilder();
+        appendEntry(lines, TYPE_ADD, file.getName(), file.length(), toHex(sha256));
+        write(lines);
+        PerfMetrics.record("capture.manifest_append", System.nanoTime() - start, lines.length());
+    }
+
+    /**
+     * Records the deletion of evidence files. Called before the files are
+     * removed, so the manifest never lags behind the evidence directory.
+     * The whole batch is appended and synced at once.
+     */
+    public synchronized void recordDeletions(List<File> files) {
+        if (files.isEmpty()) return;
+        try {
+            loadTail(null);
+            StringBuilder lines = new StringBuilder();
+            for (File file : files) {
+                appendEntry(lines, TYPE_DEL, file.getName(), 0, "-");
+            }
+            write(lines);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to record evidence deletions: " + e.getMessage());
+        }
+    }
+
+    private void appendEntry(StringBuilder lines, String type, String name, long size, String fileHash) {
+        long seq = lastSeq + 1;
+        String body = seq + "|" + type + "|" + System.currentTimeMillis() + "|" + name + "|" + size
+                + "|" + fileHash + "|" + lastHash;
+        String entryHash = sha256Hex(body);
+        lines.append(body).append('|').append(entryHash).append('\n');
+        lastSeq = seq;
+        lastHash = entryHash;
+    }
+
+    private void write(StringBuilder lines) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(manifestFile, true)) {
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+            db.saveManifestHead(lastSeq, lastHash);
+        } catch (IOException e) {
+            // Re-read the tail on the next append, since this entry may not have been written
+            tailLoaded = false;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the sequence number and hash of the last entry, scanning backwards
+     * from the end of the file instead of replaying the whole manifest.
+     * A torn final line (interrupted append) is cut off, as it was never committed.
+     * If the manifest ends before its anchored head, numbering resumes after the
+     * head, so the missing entries stay visible to verify() as a sequence gap.
+     *
+     * @param pending File about to be recorded by the caller; not enrolled twice.
+     */
+    private void loadTail(File pending) throws IOException {
+        if (tailLoaded) return;
+        lastSeq = -1;
+        lastHash = GENESIS_HASH;
+
+        if (!manifestFile.exists()) {
+            tailLoaded = true;
+            skipPastAnchoredHead();
+            enrollExistingFiles(pending);
+            return;
+        }
+
+        if (manifestFile.length() > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(manifestFile, "rw")) {
+                long length = raf.length();
+                int window = (int) Math.min(length, 4096);
+                byte[] buffer = new byte[window];
+                raf.seek(length - window);
+                raf.readFully(buffer);
+
+                int end = window;
+                if (buffer[window - 1] != '\n') {
+                    int lastNewline = lastIndexOf(buffer, window - 1);
+                    raf.setLength(length - window + lastNewline + 1);
+                    Log.w(TAG, "Discarded torn manifest entry.");
+                    end = lastNewline + 1;
+                }
+                if (end > 0) {
+                    int lineStart = lastIndexOf(buffer, end - 2) + 1;
+                    String[] fields = new String(buffer, lineStart, end - 1 - lineStart, StandardCharsets.UTF_8)
+                            .split("\\|", -1);
+                    if (fields.length == FIELD_COUNT) {
+                        lastSeq = Long.parseLong(fields[0]);
+                        lastHash = fields[7];
+                    }
+                }
+            }
+        }
+        tailLoaded = true;
+        skipPastAnchoredHead();
+    }
+
+    private void skipPastAnchoredHead() {
+        long anchoredSeq = db.getManifestHeadSeq();
+        if (lastSeq < anchoredSeq) {
+            Log.w(TAG, "Manifest ends at #" + lastSeq + " before its anchored head #" + anchoredSeq);
+            lastSeq = anchoredSeq;
+        }
+    }
+
+    /**
+     * Starts a new manifest with the encrypted evidence written before the
+     * manifest existed, so it is covered by later verifications. One-time cost.
+     */
+    private void enrollExistingFiles(File pending) throws IOException {
+        String pendingName = pending != null ? pending.getName() : null;
+        File[] files = evidenceDir.listFiles((d, name) ->
+                name.endsWith(EvidenceCrypto.FILE_EXTENSION) && !name.equals(pendingName));
+        if (files == null || files.length == 0) return;
+
+        StringBuilder lines = new StringBuilder();
+        for (File file : files) {
+            appendEntry(lines, TYPE_ADD, file.getName(), file.length(), hashFile(file));
+        }
+        write(lines);
+        Log.i(TAG, "Enrolled " + files.length + " existing evidence files.");
+    }
+
+    private static int lastIndexOf(byte[] buffer, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (buffer[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    // --- VERIFY ---
+
+    /**
+     * Replays the manifest, checking the sequence (gaps), the chain of entry
+     * hashes (edits, removals, reordering), then re-hashes every live
+     * evidence file and reports files that are missing, modified or were
+     * never recorded. The anchored head must be on the chain, so a manifest
+     * cut short is reported too. Blocking; intended for the periodic verifier worker.
+     */
+    public VerificationResult verify() {
+        VerificationResult result = new VerificationResult();
+        Map<String, String> live = new HashMap<>();
+        Set<String> deleted = new HashSet<>();
+
+        // 1. Snapshot the manifest length and anchored head, so concurrent appends are not half-read
+        long snapshotLength;
+        long anchoredSeq;
+        String anchoredHash;
+        synchronized (this) {
+            try {
+                loadTail(null);
+            } catch (IOException e) {
+                result.problems.add("Manifest unreadable: " + e.getMessage());
+            }
+            snapshotLength = manifestFile.exists() ? manifestFile.length() : 0;
+            anchoredSeq = db.getManifestHeadSeq();
+            anchoredHash = db.getManifestHeadHash();
+        }
+
+        // 2. Replay the chain
+        long expectedSeq = 0;
+        String previousHash = GENESIS_HASH;
+        boolean headFound = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new BoundedInputStream(new FileInputStream(manifestFile), snapshotLength), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\\|", -1);
+                if (f.length != FIELD_COUNT) {
+                    result.problems.add("Malformed entry after #" + (expectedSeq - 1));
+                    continue;
+                }
+                long seq = Long.parseLong(f[0]);
+                if (seq != expectedSeq) {
+                    result.problems.add("Sequence gap: expected #" + expectedSeq + ", found #" + seq);
+                }
+                if (!f[6].equals(previousHash)) {
+                    result.problems.add("Broken chain at #" + seq);
+                }
+                String body = line.substring(0, line.lastIndexOf('|'));
+                if (!sha256Hex(body).equals(f[7])) {
+                    result.problems.add("Entry #" + seq + " was modified");
+                }
+                if (seq == anchoredSeq) {
+                    headFound = f[7].equals(anchoredHash);
+                }
+
+                if (TYPE_ADD.equals(f[1])) {
+                    live.put(f[3], f[5]);
+                    deleted.remove(f[3]);
+                } else if (TYPE_DEL.equals(f[1])) {
+                    live.remove(f[3]);
+                    deleted.add(f[3]);
+                }
+                expectedSeq = seq + 1;
+                previousHash = f[7];
+                result.entries++;
+            }
+        } catch (IOException | NumberFormatException e) {
+            if (snapshotLength > 0) {
+                result.problems.add("Manifest unreadable: " + e.getMessage());
+            }
+        }
+
+        if (anchoredSeq >= 0 && !headFound) {
+            result.problems.add("Manifest cut short: entry #" + anchoredSeq + " missing or replaced");
+        }
+
+        // 3. Re-hash every live evidence file
+        for (Map.Entry<String, String> entry : live.entrySet()) {
+            File file = new File(evidenceDir, entry.getKey());
+            if (!file.exists()) {
+                // Deleted after the snapshot? Then its DEL entry is already appended.
+                if (!deletedSince(snapshotLength, entry.getKey())) {
+                    result.problems.add("Missing without deletion record: " + entry.getKey());
+                }
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                String actual = hashFile(file);
+                PerfMetrics.record("verify.file_hash", System.nanoTime() - start, file.length());
+                if (!actual.equals(entry.getValue())) {
+                    result.problems.add("Modified: " + entry.getKey());
+                } else {
+                    result.verifiedFiles++;
+                }
+            } catch (IOException e) {
+                result.problems.add("Unreadable: " + entry.getKey());
+            }
+        }
+
+        // 4. Encrypted evidence that never went through the writer
+        File[] files = evidenceDir.listFiles((d, name) -> name.endsWith(EvidenceCrypto.FILE_EXTENSION));
+        long cutoff = System.currentTimeMillis() - UNRECORDED_GRACE_MS;
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!live.containsKey(name) && !deleted.contains(name) && file.lastModified() <= cutoff) {
+                    result.problems.add("Unrecorded file: " + name);
+                }
+            }
+        }
+
+        Log.i(TAG, "Verification: " + result.summary());
+        return result;
+    }
+
+    /**
+     * Returns true if a DEL entry for the file was appended after the given offset.
+     */
+    private boolean deletedSince(long offset, String name) {
+        String marker = "|" + TYPE_DEL + "|";
+        try (RandomAccessFile raf = new RandomAccessFile(manifestFile, "r")) {
+            raf.seek(offset);
+            String line;
+            while ((line = raf.readLine()) != null) {
+                if (line.contains(marker) && line.split("\\|", -1)[3].equals(name)) return true;
+            }
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the manifest as it is now into the given stream, for export bundles.
+     * Entries appended while copying are not included, so the copy always ends
+     * on a complete entry. The stream is not closed.
+     *
+     * @return The number of bytes copied.
+     */
+    public long copyTo(OutputStream out, byte[] buffer) throws IOException {
+        long snapshotLength;
+        synchronized (this) {
+            loadTail(null);
+            snapshotLength = manifestFile.exists() ? manifestFile.length() : 0;
+        }
+        if (snapshotLength == 0) return 0;
+
+        long copied = 0;
+        try (InputStream in = new BoundedInputStream(new FileInputStream(manifestFile), snapshotLength)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                copied += n;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Returns the digest recorded for every evidence file that is live in the
+     * manifest as it is now, by file name. The chain itself is not checked here;
+     * that is what {@link #verify()} is for.
+     */
+    public Map<String, String> getRecordedDigests() throws IOException {
+        long snapshotLength;
+        synchronized (this) {
+            loadTail(null);
+            snapshotLength = manifestFile.exists() ? manifestFile.length() : 0;
+        }
+        Map<String, String> live = new HashMap<>();
+        if (snapshotLength == 0) return live;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new BoundedInputStream(new FileInputStream(manifestFile), snapshotLength), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\\|", -1);
+                if (f.length != FIELD_COUNT) continue;
+                if (TYPE_ADD.equals(f[1])) {
+                    live.put(f[3], f[5]);
+                } else if (TYPE_DEL.equals(f[1])) {
+                    live.remove(f[3]);
+                }
+            }
+        }
+        return live;
+    }
+
+    // --- HASHING ---
+
+    /**
+     * Returns the SHA-256 of a file as stored, in the form the manifest records it.
+     */
+    public static String hashFile(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[EvidenceCrypto.CHUNK_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String sha256Hex(String text) {
+        return toHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format(Locale.US, "%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * Reads at most a fixed number of bytes from the underlying stream.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b != -1) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n != -1) remaining -= n;
+            return n;
+        }
+    }
+}
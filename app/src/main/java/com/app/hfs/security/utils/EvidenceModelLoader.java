@@ -0,0 +1,104 @@
+package com.hfs.security.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import com.hfs.security.models.EncryptedEvidence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Glide loader for encrypted evidence files.
+ * Streams the decrypted bytes of the requested section into Glide's
+ * regular image decoders, so only the thumbnail chunks are decrypted
+ * for list rows.
+ */
+public class EvidenceModelLoader implements ModelLoader<EncryptedEvidence, InputStream> {
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull EncryptedEvidence model, int width, int height,
+                                               @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new EvidenceFetcher(model));
+    }
+
+    @Override
+    public boolean handles(@NonNull EncryptedEvidence model) {
+        return EvidenceCrypto.isEncrypted(model.getFilePath());
+    }
+
+    /**
+     * Opens the decrypting stream on Glide's source executor.
+     */
+    private static class EvidenceFetcher implements DataFetcher<InputStream> {
+
+        private final EncryptedEvidence model;
+        private InputStream stream;
+
+        EvidenceFetcher(EncryptedEvidence model) {
+            this.model = model;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            int section = model.isThumbnail() ? EvidenceCrypto.SECTION_THUMBNAIL : EvidenceCrypto.SECTION_IMAGE;
+            try {
+                stream = EvidenceCrypto.openSection(new File(model.getFilePath()), section);
+                callback.onDataReady(stream);
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        @Override
+        public void cancel() {
+            // Decryption is chunked; cleanup() closes the stream once Glide stops reading
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+
+    /**
+     * Factory registered with Glide in HFSGlideModule.
+     */
+    public static class Factory implements ModelLoaderFactory<EncryptedEvidence, InputStream> {
+
+        @NonNull
+        @Override
+        public ModelLoader<EncryptedEvidence, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new EvidenceModelLoader();
+        }
+
+        @Override
+        public void teardown() {}
+    }
+}
@@ -0,0 +1,172 @@
+package com.hfs.security.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming writer for the encrypted evidence format (see EvidenceCrypto).
+ * Plaintext is buffered one chunk at a time and each full chunk is sealed
+ * with AES-GCM as soon as the next byte arrives, so peak memory is bounded
+ * by the chunk size rather than the image size. Chunks are sealed in
+ * software with the file's own data key; only wrapping that key in the
+ * constructor needs the wrapping key.
+ *
+ * The SHA-256 of the bytes written to disk is computed on the way out
+ * (see HashingOutputStream) and is available after close().
+ *
+ * Usage: beginSection(...), write the section bytes, repeat for the next
+ * section, then close().
+ */
+public class EvidenceOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final HashingOutputStream hashing;
+    private final SecretKey dataKey;
+    private final Cipher cipher;
+    private final byte[] header;
+    private final byte[] chunk = new byte[EvidenceCrypto.CHUNK_SIZE];
+
+    private int chunkLength = 0;
+    private int chunkIndex = 0;
+    // Counts the records of the whole file; doubles as the chunk IV
+    private long recordIndex = 0;
+    private int section = -1;
+    private long bytesWritten = 0;
+    private boolean closed = false;
+
+    /**
+     * @param keyType How the data key is wrapped (EvidenceCrypto.KEY_TYPE_*).
+     * @param wrappingKey Key that wraps the file's data key.
+     */
+    EvidenceOutputStream(OutputStream target, int keyType, Key wrappingKey)
+            throws IOException, GeneralSecurityException {
+        // Hash below the buffer, so the digest sees a few large writes of the exact file bytes
+        this.hashing = new HashingOutputStream(target);
+        this.out = new DataOutputStream(new BufferedOutputStream(hashing, EvidenceCrypto.CHUNK_SIZE));
+
+        // 1. Fresh data key and file ID; the ID makes every file's AAD unique
+        SecureRandom random = new SecureRandom();
+        byte[] rawKey = new byte[EvidenceCrypto.DATA_KEY_BYTES];
+        random.nextBytes(rawKey);
+        byte[] fileId = new byte[EvidenceCrypto.FILE_ID_SIZE];
+        random.nextBytes(fileId);
+        this.dataKey = new SecretKeySpec(rawKey, "AES");
+        this.header = EvidenceCrypto.newFixedHeader(fileId);
+        this.cipher = Cipher.getInstance(EvidenceCrypto.TRANSFORMATION);
+
+        // 2. Header with the wrapped data key
+        byte[] wrappedKey = EvidenceCrypto.wrapDataKey(keyType, wrappingKey, dataKey, header);
+        out.write(header);
+        out.writeByte(keyType);
+        out.writeShort(wrappedKey.length);
+        out.write(wrappedKey);
+        bytesWritten += header.length + 3 + wrappedKey.length;
+    }
+
+    /**
+     * Finishes the current section (if any) and starts a new one.
+     */
+    public void beginSection(int newSection) throws IOException {
+        endSection();
+        section = newSection;
+        chunkIndex = 0;
+        chunkLength = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (section < 0) throw new IOException("beginSection() must be called before writing");
+
+        while (len > 0) {
+            // A full chunk is only sealed once more data arrives, so the last chunk can be flagged
+            if (chunkLength == chunk.length) {
+                sealChunk(false);
+            }
+            int n = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, n);
+            chunkLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to disk so far (header and records).
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the SHA-256 of the complete file. Only valid after close().
+     */
+    public byte[] getSha256() {
+        if (!closed) throw new IllegalStateException("Evidence file is still open");
+        return hashing.getDigest();
+    }
+
+    /**
+     * Returns the time spent computing the file digest.
+     */
+    public long getHashNanos() {
+        return hashing.getDigestNanos();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            endSection();
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void endSection() throws IOException {
+        if (section >= 0) {
+            // Always written, even when empty, so readers can tell a complete section from a missing one
+            sealChunk(true);
+            section = -1;
+        }
+    }
+
+    private void sealChunk(boolean last) throws IOException {
+        int flags = last ? EvidenceCrypto.FLAG_LAST_CHUNK : 0;
+        byte[] iv = ByteBuffer.allocate(EvidenceCrypto.IV_SIZE).putInt(0).putLong(recordIndex).array();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(EvidenceCrypto.TAG_BITS, iv));
+            cipher.updateAAD(EvidenceInputStream.buildAad(header, section, flags, chunkIndex));
+            byte[] sealed = cipher.doFinal(chunk, 0, chunkLength);
+
+            out.writeByte(section);
+            out.writeByte(flags);
+            out.writeInt(chunkLength);
+            out.write(iv);
+            out.write(sealed);
+            bytesWritten += 6 + EvidenceCrypto.IV_SIZE + sealed.length;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Evidence chunk encryption failed", e);
+        }
+        recordIndex++;
+        chunkIndex++;
+        chunkLength = 0;
+    }
+}
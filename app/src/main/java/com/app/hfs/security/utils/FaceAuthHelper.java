@@ -2,6 +2,7 @@ package com.hfs.security.utils;
 
 import android.content.Context;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -36,7 +37,13 @@ public class FaceAuthHelper {
      */
     public interface AuthCallback {
         void onMatchFound();
-        void onMismatchFound();
+
+        /**
+         * @param score Ratio difference between the live face and the owner template,
+         *              or -1 if no comparison was possible.
+         * @param faceBounds Bounding box of the rejected face in the upright frame.
+         */
+        void onMismatchFound(float score, Rect faceBounds);
         void onError(String error);
     }
 
@@ -127,7 +134,7 @@ public class FaceAuthHelper {
         if (savedRatioStr == null || savedRatioStr.isEmpty() || savedRatioStr.equals("PENDING")) {
             // First time running? Everything is a mismatch until 'Rescan' is done.
             Log.w(TAG, "Security Alert: No Owner Face registered in settings.");
-            callback.onMismatchFound();
+            callback.onMismatchFound(IntrusionIndexHelper.SCORE_UNKNOWN, face.getBoundingBox());
             return;
         }
 
@@ -144,12 +151,12 @@ public class FaceAuthHelper {
                 callback.onMatchFound();
             } else {
                 Log.w(TAG, "Biometric Rejected: Intruder Detected. Ratio Diff: " + difference);
-                callback.onMismatchFound();
+                callback.onMismatchFound(difference, face.getBoundingBox());
             }
             
         } catch (NumberFormatException e) {
             // Data error - default to lock for security
-            callback.onMismatchFound();
+            callback.onMismatchFound(IntrusionIndexHelper.SCORE_UNKNOWN, face.getBoundingBox());
         }
     }
 
@@ -0,0 +1,54 @@
+package com.hfs.security.utils;
+
+import com.hfs.security.models.Alert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loopback channel that appends every alert to a local log file, one line
+ * per attempt: dispatch time, alert ID, attempt and the escaped message.
+ * Lets the whole alert path be exercised on devices without a SIM. Being
+ * local, it never makes an attempt count as sent.
+ */
+public class FileAlertChannel implements AlertChannel {
+
+    private final File file;
+
+    public FileAlertChannel(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public synchronized int send(Alert alert, String message, int attempt) throws IOException {
+        String line = System.currentTimeMillis() + "\t" + alert.getId() + "\t" + attempt + "\t"
+                + message.replace("\\", "\\\\").replace("\n", "\\n") + "\n";
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            // The line is on disk before the attempt counts as sent
+            out.getFD().sync();
+        }
+        return 0;
+    }
+}
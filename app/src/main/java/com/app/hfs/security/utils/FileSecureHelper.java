@@ -8,15 +8,12 @@ import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.media.Image;
+import android.os.Build;
 import android.util.Log;
 
-import androidx.camera.core.ImageProxy;
-
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -25,71 +22,279 @@ import java.util.Locale;
  * Data Storage Utility (Phase 6).
  * Manages the secret saving of intruder photos.
  * Data is stored in: /Android/data/com.hfs.security/files/intruders/
- * This location is hidden from standard Gallery apps.
+ * Photos are encrypted with a Keystore-held key (see EvidenceCrypto), so
+ * file browsers and other apps cannot read them.
  */
 public class FileSecureHelper {
 
     private static final String TAG = "HFS_FileSecure";
     private static final String INTRUDER_DIR = "intruders";
+    private static final String UPLOAD_STAGING_DIR = "upload_staging";
+
+    // Preview stored in the first section of every evidence file
+    private static final int THUMBNAIL_SIZE = 320;
+    private static final int THUMBNAIL_QUALITY = 75;
+
+    // Encoding of the evidence image itself
+    private static final int DEFAULT_QUALITY = 90;
+    private static final int MIN_QUALITY = 30;
+    private static final int MAX_QUALITY = 95;
+
+    // Margin added around the detected face, as a fraction of the box size per side
+    private static final float FACE_CROP_MARGIN = 0.4f;
+
+    /**
+     * Returns the hidden evidence directory, creating it if needed.
+     */
+    public static File getIntruderDirectory(Context context) {
+        File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return directory;
+    }
+
+    /**
+     * Returns the private directory holding recovery copies waiting to be
+     * uploaded, creating it if needed.
+     */
+    public static File getUploadStagingDirectory(Context context) {
+        File directory = new File(context.getFilesDir(), UPLOAD_STAGING_DIR);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return directory;
+    }
+
+    // Captures of the same app within this window and distance are merged as occurrences
+    private static final long DEDUP_WINDOW_MS = 10 * 60 * 1000L;
+    private static final int DEDUP_MAX_DISTANCE = 10;
 
     /**
-     * Captures the current frame from the ImageProxy, converts it to a JPG,
-     * and saves it secretly to the internal storage.
+     * Outcome of a capture: the intrusion record it was stored in and
+     * whether it was merged into an earlier near-identical capture.
+     */
+    public static class CaptureResult {
+        public final long intrusionId;
+        public final boolean duplicate;
+
+        CaptureResult(long intrusionId, boolean duplicate) {
+            this.intrusionId = intrusionId;
+            this.duplicate = duplicate;
+        }
+    }
+
+    /**
+     * Takes the copied camera frame, converts it to a JPG,
+     * saves it secretly to the internal storage and records the intrusion
+     * in the intrusion index.
+     * A frame that is perceptually near-identical to a recent capture of the
+     * same app is not stored again; it is counted as another occurrence of
+     * that record instead.
      * 
      * @param context App context.
-     * @param imageProxy The frame from the front camera.
+     * @param incidentId Incident of the current lock session.
+     * @param frame Copy of the front camera frame, or null if no frame is available.
+     *              Hashing, encoding and encryption are slow: call this off the UI thread.
+     * @param faceBounds Detected face in the upright frame, or null if no face was found.
+     * @param packageName Package of the protected app that was accessed.
+     * @param appName Readable name of the protected app.
+     * @param verdictScore Face ratio difference reported by the verifier.
+     * @return The intrusion record (ID -1 if it could not be recorded).
      */
-    public static void saveIntruderCapture(Context context, ImageProxy imageProxy) {
-        // 1. Convert ImageProxy to Bitmap
-        Bitmap bitmap = imageProxyToBitmap(imageProxy);
-        if (bitmap == null) return;
+    public static CaptureResult saveIntruderCapture(Context context, long incidentId, CapturedFrame frame, Rect faceBounds,
+                                                    String packageName, String appName, float verdictScore) {
+        long now = System.currentTimeMillis();
+        IntrusionIndexHelper index = IntrusionIndexHelper.getInstance(context);
+
+        // 1. Hash the frame and look for a recent near-identical capture
+        Long hash = null;
+        if (frame != null) {
+            long start = System.nanoTime();
+            hash = PerceptualHash.dHash(frame);
+            long existingId = index.findRecentSimilarCapture(packageName, hash,
+                    now - DEDUP_WINDOW_MS, DEDUP_MAX_DISTANCE);
+            PerfMetrics.record("capture.dedup_lookup", System.nanoTime() - start, 0);
+
+            if (existingId != -1) {
+                index.recordOccurrence(existingId, incidentId, now);
+                Log.i(TAG, "Near-identical capture merged into intrusion " + existingId);
+                return new CaptureResult(existingId, true);
+            }
+        }
+
+        // 2. New capture: write the evidence and index it
+        File savedFile = frame != null ? writeCapture(context, frame, faceBounds, packageName, now) : null;
+        long id = index.insertIntrusion(incidentId, packageName, appName, now,
+                savedFile != null ? savedFile.getAbsolutePath() : null,
+                savedFile != null ? savedFile.length() : 0,
+                verdictScore, hash);
+        return new CaptureResult(id, false);
+    }
+
+    /**
+     * Writes the frame to the evidence directory, using the configured
+     * evidence mode (full frame or face crop), format and size budget.
+     * @return The written file, or null if the frame could not be saved.
+     */
+    private static File writeCapture(Context context, CapturedFrame frame, Rect faceBounds,
+                                     String packageName, long timestamp) {
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+
+        // 1. Convert the frame to a Bitmap
+        Bitmap bitmap = frameToBitmap(frame);
+        if (bitmap == null) return null;
 
         // 2. Rotate bitmap if necessary (Front camera usually needs 270 deg rotation)
-        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        int rotation = frame.rotationDegrees;
         bitmap = rotateBitmap(bitmap, rotation);
 
-        // 3. Prepare the Filename: AppName-PackageName-Timestamp.jpg
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "Intrusion-" + timestamp + ".jpg";
-
-        // 4. Get the secure internal directory
-        File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
-        if (!directory.exists()) {
-            directory.mkdirs();
+        // 3. Keep only the face (with margin) when face-crop mode is on and a face was found
+        boolean faceCrop = db.getEvidenceMode() == HFSDatabaseHelper.EVIDENCE_MODE_FACE_CROP && faceBounds != null;
+        if (faceCrop) {
+            Bitmap cropped = cropToFace(bitmap, faceBounds, rotation != 0);
+            if (cropped != bitmap) bitmap.recycle();
+            bitmap = cropped;
         }
 
-        File file = new File(directory, fileName);
+        // 4. Prepare the Filename: PackageName-Timestamp.hfse
+        String prefix = packageName != null ? packageName.replaceAll("[^A-Za-z0-9._]", "_") : "Intrusion";
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date(timestamp));
+        File file = new File(getIntruderDirectory(context), prefix + "-" + stamp + EvidenceCrypto.FILE_EXTENSION);
+
+        boolean webp = db.getEvidenceFormat() == HFSDatabaseHelper.EVIDENCE_FORMAT_WEBP;
+        Bitmap.CompressFormat format = webp ? webpFormat() : Bitmap.CompressFormat.JPEG;
+        // The stored budget is clamped to MAX_EVIDENCE_BUDGET_KB, so the byte count fits an int
+        int budgetBytes = (int) (db.getEvidenceBudgetKb() * 1024L);
+        String metric = "capture.encode." + (faceCrop ? "face" : "full") + (webp ? ".webp" : ".jpeg");
+
+        // 5. Stream the thumbnail and the image through the chunked AES-GCM writer.
+        // Without a budget the encoder writes straight into the cipher stream, so the
+        // image is never buffered in memory a second time.
+        Bitmap thumbnail = createThumbnail(bitmap);
+        long start = System.nanoTime();
+        try (EvidenceOutputStream out = EvidenceCrypto.openWriter(file)) {
+            out.beginSection(EvidenceCrypto.SECTION_THUMBNAIL);
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+
+            out.beginSection(EvidenceCrypto.SECTION_IMAGE);
+            long encodeStart = System.nanoTime();
+            long imageStart = out.getBytesWritten();
+            if (budgetBytes > 0) {
+                encodeWithinBudget(bitmap, format, budgetBytes).writeTo(out);
+            } else {
+                bitmap.compress(format, DEFAULT_QUALITY, out);
+            }
+            long encodeNanos = System.nanoTime() - encodeStart;
+            out.close();
+
+            PerfMetrics.record(metric, encodeNanos, out.getBytesWritten() - imageStart);
+            PerfMetrics.record("capture.encrypted_write", System.nanoTime() - start, out.getBytesWritten());
+            PerfMetrics.record("capture.hash", out.getHashNanos(), out.getBytesWritten());
+
+            // 6. Chain the file digest (computed while writing) into the tamper-evident manifest
+            try {
+                EvidenceManifest.getInstance(context).recordAddition(file, out.getSha256());
+            } catch (IOException e) {
+                // Keep the evidence; the verifier reports it as unrecorded
+                Log.e(TAG, "Failed to record evidence in manifest: " + e.getMessage());
+            }
 
-        // 5. Write the Bitmap to the file as a compressed JPEG
-        try (FileOutputStream out = new FileOutputStream(file)) {
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
             Log.i(TAG, "Intruder evidence saved: " + file.getAbsolutePath());
+            return file;
         } catch (IOException e) {
             Log.e(TAG, "Failed to save intruder photo: " + e.getMessage());
+            file.delete();
+            return null;
         } finally {
+            if (thumbnail != bitmap) thumbnail.recycle();
             bitmap.recycle();
         }
     }
 
+    /**
+     * Encodes the bitmap at the highest quality that fits the byte budget,
+     * found by binary search over the quality range. Falls back to the
+     * minimum quality if even that exceeds the budget.
+     */
+    private static ByteArrayOutputStream encodeWithinBudget(Bitmap bitmap, Bitmap.CompressFormat format,
+                                                            int budgetBytes) {
+        ByteArrayOutputStream best = null;
+        ByteArrayOutputStream attempt = new ByteArrayOutputStream(budgetBytes);
+        int low = MIN_QUALITY;
+        int high = MAX_QUALITY;
+
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            attempt.reset();
+            bitmap.compress(format, quality, attempt);
+
+            if (attempt.size() <= budgetBytes) {
+                // Fits: keep it and try a higher quality
+                best = attempt;
+                attempt = new ByteArrayOutputStream(budgetBytes);
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+
+        if (best == null) {
+            best = new ByteArrayOutputStream();
+            bitmap.compress(format, MIN_QUALITY, best);
+        }
+        return best;
+    }
+
+    /**
+     * Crops the upright bitmap to the face bounding box plus a margin.
+     * The detector reports the box in the upright, unmirrored frame, while the
+     * saved bitmap is mirrored whenever it was rotated (see rotateBitmap).
+     */
+    private static Bitmap cropToFace(Bitmap bitmap, Rect faceBounds, boolean mirrored) {
+        int marginX = Math.round(faceBounds.width() * FACE_CROP_MARGIN);
+        int marginY = Math.round(faceBounds.height() * FACE_CROP_MARGIN);
+
+        int left = faceBounds.left - marginX;
+        int right = faceBounds.right + marginX;
+        if (mirrored) {
+            int mirroredLeft = bitmap.getWidth() - right;
+            right = bitmap.getWidth() - left;
+            left = mirroredLeft;
+        }
+        left = Math.max(0, left);
+        right = Math.min(bitmap.getWidth(), right);
+        int top = Math.max(0, faceBounds.top - marginY);
+        int bottom = Math.min(bitmap.getHeight(), faceBounds.bottom + marginY);
+
+        if (right <= left || bottom <= top) return bitmap;
+        return Bitmap.createBitmap(bitmap, left, top, right - left, bottom - top);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+
+    /**
+     * Creates a small preview used by the History grid, so the list never
+     * needs to decrypt the full-size image.
+     */
+    private static Bitmap createThumbnail(Bitmap source) {
+        int longSide = Math.max(source.getWidth(), source.getHeight());
+        if (longSide <= THUMBNAIL_SIZE) return source;
+        float scale = (float) THUMBNAIL_SIZE / longSide;
+        return Bitmap.createScaledBitmap(source,
+                Math.round(source.getWidth() * scale), Math.round(source.getHeight() * scale), true);
+    }
+
     /**
      * Helper to convert CameraX YUV_420_888 format to Bitmap.
      */
-    private static Bitmap imageProxyToBitmap(ImageProxy image) {
-        ImageProxy.PlaneProxy[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
-
-        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
+    private static Bitmap frameToBitmap(CapturedFrame frame) {
+        YuvImage yuvImage = new YuvImage(frame.nv21, ImageFormat.NV21, frame.width, frame.height, null);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 100, out);
 
@@ -109,19 +314,4 @@ public class FileSecureHelper {
         
         return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
     }
-
-    /**
-     * Deletes all intruder evidence logs.
-     */
-    public static void deleteAllLogs(Context context) {
-        File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    file.delete();
-                }
-            }
-        }
-    }
 }
\ No newline at end of file
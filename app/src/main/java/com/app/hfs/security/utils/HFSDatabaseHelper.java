@@ -2,45 +2,142 @@ package com.hfs.security.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Manages local persistent storage for HFS - Hybrid File Security.
  * Handles the storage and retrieval of:
  * 1) Selected Protected App package names.
- * 2) Master Security PIN.
+ * 2) Master Security PIN (salted PBKDF2 hash only).
  * 3) Trusted Secondary Phone Number.
  * 4) Feature states (Stealth Mode, Fake Gallery).
+ * 5) Evidence retention limits.
+ * 6) Off-device upload configuration.
+ * 7) Alert channels besides SMS.
+ *
+ * Values live in SettingsStore: reads come from its in-memory snapshot and
+ * take no lock, the file is encrypted at rest, and setters that change
+ * several keys write them as one batch. Protected apps are changed
+ * incrementally: toggles are persisted together once they pause, and every
+ * batch notifies the ProtectedAppsListeners (the monitor service) once.
+ * Settings of older versions are moved over from SharedPreferences on
+ * first start.
  */
 public class HFSDatabaseHelper {
 
+    private static final String TAG = "HFS_DatabaseHelper";
+
+    // Legacy SharedPreferences file, migrated to SettingsStore
     private static final String PREF_NAME = "hfs_security_prefs";
-    
-    // Keys for SharedPreferences
+
+    // Setting keys
     private static final String KEY_PROTECTED_PACKAGES = "protected_packages";
+    // Plaintext PIN of older versions, replaced by the hash on first use
     private static final String KEY_MASTER_PIN = "master_pin";
+    private static final String KEY_MASTER_PIN_HASH = "master_pin_hash";
     private static final String KEY_TRUSTED_NUMBER = "trusted_number";
     private static final String KEY_SETUP_COMPLETE = "setup_complete";
     private static final String KEY_STEALTH_MODE = "stealth_mode_enabled";
     private static final String KEY_FAKE_GALLERY = "fake_gallery_enabled";
     private static final String KEY_OWNER_FACE_DATA = "owner_face_template";
+    private static final String KEY_RETENTION_MAX_AGE_DAYS = "retention_max_age_days";
+    private static final String KEY_RETENTION_MAX_COUNT = "retention_max_count";
+    private static final String KEY_RETENTION_MAX_MB = "retention_max_mb";
+
+    // Default retention limits (0 disables a limit); evidence is kept until the owner sets one
+    private static final int DEFAULT_RETENTION_MAX_AGE_DAYS = 0;
+    private static final int DEFAULT_RETENTION_MAX_COUNT = 0;
+    private static final int DEFAULT_RETENTION_MAX_MB = 0;
+
+    // Evidence encoding keys
+    private static final String KEY_EVIDENCE_MODE = "evidence_mode";
+    private static final String KEY_EVIDENCE_FORMAT = "evidence_format";
+    private static final String KEY_EVIDENCE_BUDGET_KB = "evidence_budget_kb";
+
+    // Result of the last evidence integrity verification
+    private static final String KEY_INTEGRITY_CHECKED_AT = "integrity_checked_at";
+    private static final String KEY_INTEGRITY_SUMMARY = "integrity_summary";
+    // Last entry appended to the evidence manifest, so a cut-off manifest is detected
+    private static final String KEY_MANIFEST_HEAD_SEQ = "manifest_head_seq";
+    private static final String KEY_MANIFEST_HEAD_HASH = "manifest_head_hash";
+
+    // Off-device upload of encrypted evidence
+    private static final String KEY_UPLOAD_ENABLED = "upload_enabled";
+    private static final String KEY_UPLOAD_ENDPOINT = "upload_endpoint";
+    private static final String KEY_UPLOAD_TOKEN = "upload_token";
+    private static final String KEY_UPLOAD_RECOVERY_KEY = "upload_recovery_key";
+    private static final String KEY_UPLOAD_UNMETERED_ONLY = "upload_unmetered_only";
+    private static final String KEY_UPLOAD_SUMMARY = "upload_summary";
+    private static final String KEY_UPLOAD_DEVICE_ID = "upload_device_id";
+
+    // Alert channels
+    private static final String KEY_ALERT_LOG_ENABLED = "alert_log_enabled";
+
+    // Evidence modes: the whole frame, or only the detected face with a margin
+    public static final int EVIDENCE_MODE_FULL_FRAME = 0;
+    public static final int EVIDENCE_MODE_FACE_CROP = 1;
+
+    // Evidence image encodings
+    public static final int EVIDENCE_FORMAT_JPEG = 0;
+    public static final int EVIDENCE_FORMAT_WEBP = 1;
+
+    // Largest per-capture size budget; the encoder buffers up to this much per attempt
+    public static final int MAX_EVIDENCE_BUDGET_KB = 8 * 1024;
+
+    // Checkbox toggles are written to disk together once they pause for this long
+    private static final long PROTECTED_WRITE_DEBOUNCE_MS = 500;
+
+    /**
+     * Notified on the main thread once per batch of protected app changes.
+     */
+    public interface ProtectedAppsListener {
+        void onProtectedAppsChanged(Set<String> added, Set<String> removed);
+    }
+
+    /**
+     * Result of an asynchronous PIN check, delivered on the main thread.
+     */
+    public interface PinCallback {
+        void onResult(boolean valid);
+    }
 
     private static HFSDatabaseHelper instance;
-    private final SharedPreferences prefs;
-    private final Gson gson;
+    private final SettingsStore store;
+    // PIN hashing is deliberately slow and must stay off the main thread
+    private final ExecutorService pinExecutor = Executors.newSingleThreadExecutor();
+    private final List<ProtectedAppsListener> protectedAppsListeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Private constructor for Singleton pattern.
      */
     private HFSDatabaseHelper(Context context) {
-        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        store = SettingsStore.getInstance(context);
+        migrateLegacyPrefs(context);
+        if (store.getString(KEY_MASTER_PIN, null) != null) {
+            pinExecutor.execute(this::upgradeLegacyPin);
+        }
     }
 
     /**
@@ -58,47 +155,194 @@ public class HFSDatabaseHelper {
     /**
      * Saves the set of package names (e.g., com.whatsapp) that should trigger the lock.
      */
-    public void saveProtectedPackages(Set<String> packages) {
-        String json = gson.toJson(packages);
-        prefs.edit().putString(KEY_PROTECTED_PACKAGES, json).apply();
+    public synchronized void saveProtectedPackages(Set<String> packages) {
+        Set<String> previous = getProtectedPackages();
+        Map<String, Boolean> batch = new LinkedHashMap<>();
+        for (String packageName : previous) {
+            if (!packages.contains(packageName)) batch.put(packageName, false);
+        }
+        for (String packageName : packages) {
+            if (!previous.contains(packageName)) batch.put(packageName, true);
+        }
+        store.edit().putStringSet(KEY_PROTECTED_PACKAGES, packages).apply();
+        notifyProtectedAppsChanged(batch);
     }
 
     /**
-     * Retrieves the set of currently protected package names.
+     * Adds packages to the protected set in one synchronous write (remote ARM).
+     *
+     * @return True once the new set is on disk.
      */
-    public Set<String> getProtectedPackages() {
-        String json = prefs.getString(KEY_PROTECTED_PACKAGES, null);
-        if (json == null) {
-            return new HashSet<>();
+    public synchronized boolean addProtectedPackages(Collection<String> packages) {
+        Set<String> protectedPackages = getProtectedPackages();
+        Map<String, Boolean> batch = new LinkedHashMap<>();
+        for (String packageName : packages) {
+            if (protectedPackages.add(packageName)) batch.put(packageName, true);
+        }
+        boolean saved = store.edit().putStringSet(KEY_PROTECTED_PACKAGES, protectedPackages).commit();
+        notifyProtectedAppsChanged(batch);
+        return saved;
+    }
+
+    public void addProtectedPackage(String packageName) {
+        applyProtectedChanges(Collections.singletonMap(packageName, true));
+    }
+
+    public void removeProtectedPackage(String packageName) {
+        applyProtectedChanges(Collections.singletonMap(packageName, false));
+    }
+
+    /**
+     * Protects (true) or unprotects (false) each package of the batch. The
+     * change is visible to readers at once; the write to disk is debounced,
+     * so rapid toggling is persisted as one write.
+     */
+    public synchronized void applyProtectedChanges(Map<String, Boolean> batch) {
+        Set<String> protectedPackages = getProtectedPackages();
+        Map<String, Boolean> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Boolean> change : batch.entrySet()) {
+            boolean modified = change.getValue()
+                    ? protectedPackages.add(change.getKey())
+                    : protectedPackages.remove(change.getKey());
+            if (modified) changed.put(change.getKey(), change.getValue());
+        }
+        if (changed.isEmpty()) return;
+        store.edit().putStringSet(KEY_PROTECTED_PACKAGES, protectedPackages)
+                .applyDebounced(PROTECTED_WRITE_DEBOUNCE_MS);
+        notifyProtectedAppsChanged(changed);
+    }
+
+    /**
+     * Writes debounced protected app changes now (e.g. when leaving the screen).
+     */
+    public void flushProtectedChanges() {
+        store.flush();
+    }
+
+    public void addProtectedAppsListener(ProtectedAppsListener listener) {
+        protectedAppsListeners.add(listener);
+    }
+
+    public void removeProtectedAppsListener(ProtectedAppsListener listener) {
+        protectedAppsListeners.remove(listener);
+    }
+
+    private void notifyProtectedAppsChanged(Map<String, Boolean> batch) {
+        if (batch.isEmpty() || protectedAppsListeners.isEmpty()) return;
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        for (Map.Entry<String, Boolean> change : batch.entrySet()) {
+            (change.getValue() ? added : removed).add(change.getKey());
         }
-        Type type = new TypeToken<HashSet<String>>() {}.getType();
-        return gson.fromJson(json, type);
+        mainHandler.post(() -> {
+            for (ProtectedAppsListener listener : protectedAppsListeners) {
+                listener.onProtectedAppsChanged(added, removed);
+            }
+        });
+    }
+
+    /**
+     * Retrieves a modifiable copy of the currently protected package names.
+     */
+    public Set<String> getProtectedPackages() {
+        return new HashSet<>(store.getStringSet(KEY_PROTECTED_PACKAGES, new HashSet<>()));
+    }
+
+    /**
+     * Returns true if the package is protected. Called on every monitor tick, so it does not copy the set.
+     */
+    public boolean isPackageProtected(String packageName) {
+        return store.getStringSet(KEY_PROTECTED_PACKAGES, new HashSet<>()).contains(packageName);
     }
 
     /**
      * Returns the total number of apps currently under HFS protection.
      */
     public int getProtectedAppsCount() {
-        return getProtectedPackages().size();
+        return store.getStringSet(KEY_PROTECTED_PACKAGES, new HashSet<>()).size();
     }
 
     // --- SECURITY CREDENTIALS ---
 
-    public void saveMasterPin(String pin) {
-        prefs.edit().putString(KEY_MASTER_PIN, pin).apply();
+    /**
+     * Returns true once the owner has chosen a PIN. There is no default PIN.
+     */
+    public boolean hasMasterPin() {
+        return store.getString(KEY_MASTER_PIN_HASH, null) != null
+                || store.getString(KEY_MASTER_PIN, null) != null;
+    }
+
+    /**
+     * Hashes and saves a new PIN (see PinHasher). Blocking: calibrates the
+     * KDF cost on this device, so call it off the main thread.
+     *
+     * @return False if the PIN could not be hashed or saved.
+     */
+    public boolean saveMasterPin(String pin) {
+        return saveSecurityCredentials(null, pin);
     }
 
-    public String getMasterPin() {
-        // Default PIN is 0000 if not set
-        return prefs.getString(KEY_MASTER_PIN, "0000");
+    /**
+     * Saves the trusted number (if not null) and the hashed PIN together, as
+     * one durable write. Blocking, like saveMasterPin().
+     */
+    public boolean saveSecurityCredentials(String number, String pin) {
+        String record;
+        try {
+            record = PinHasher.hash(pin, PinHasher.calibrate(PinHasher.TARGET_VERIFY_MS));
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "PIN hashing unavailable: " + e.getMessage());
+            return false;
+        }
+        SettingsStore.Editor editor = store.edit()
+                .putString(KEY_MASTER_PIN_HASH, record)
+                .remove(KEY_MASTER_PIN);
+        if (number != null) editor.putString(KEY_TRUSTED_NUMBER, number);
+        return editor.commit();
+    }
+
+    /**
+     * Checks a PIN against the stored hash. Blocking for about
+     * PinHasher.TARGET_VERIFY_MS; call it off the main thread.
+     */
+    public boolean verifyMasterPin(String pin) {
+        String record = store.getString(KEY_MASTER_PIN_HASH, null);
+        if (record != null) return PinHasher.verify(pin, record);
+
+        // Plaintext PIN of an older version: compare in constant time, then hash it
+        String legacyPin = store.getString(KEY_MASTER_PIN, null);
+        if (legacyPin == null || pin == null) return false;
+        boolean valid = MessageDigest.isEqual(pin.getBytes(StandardCharsets.UTF_8),
+                legacyPin.getBytes(StandardCharsets.UTF_8));
+        upgradeLegacyPin();
+        return valid;
+    }
+
+    /**
+     * Verifies the PIN on a background thread and reports the result on the main thread.
+     */
+    public void verifyMasterPinAsync(String pin, PinCallback callback) {
+        pinExecutor.execute(() -> {
+            boolean valid = verifyMasterPin(pin);
+            mainHandler.post(() -> callback.onResult(valid));
+        });
+    }
+
+    /**
+     * Replaces a plaintext PIN left by an older version with its hash.
+     */
+    private synchronized void upgradeLegacyPin() {
+        String legacyPin = store.getString(KEY_MASTER_PIN, null);
+        if (legacyPin == null || store.getString(KEY_MASTER_PIN_HASH, null) != null) return;
+        saveMasterPin(legacyPin);
     }
 
     public void saveTrustedNumber(String number) {
-        prefs.edit().putString(KEY_TRUSTED_NUMBER, number).apply();
+        store.edit().putString(KEY_TRUSTED_NUMBER, number).apply();
     }
 
     public String getTrustedNumber() {
-        return prefs.getString(KEY_TRUSTED_NUMBER, "");
+        return store.getString(KEY_TRUSTED_NUMBER, "");
     }
 
     // --- APP SETUP STATUS ---
@@ -107,29 +351,29 @@ public class HFSDatabaseHelper {
      * Returns true if the user has completed the Face & PIN registration.
      */
     public boolean isSetupComplete() {
-        return prefs.getBoolean(KEY_SETUP_COMPLETE, false);
+        return store.getBoolean(KEY_SETUP_COMPLETE, false);
     }
 
     public void setSetupComplete(boolean status) {
-        prefs.edit().putBoolean(KEY_SETUP_COMPLETE, status).apply();
+        store.edit().putBoolean(KEY_SETUP_COMPLETE, status).apply();
     }
 
     // --- FEATURE TOGGLES ---
 
     public void setStealthMode(boolean enabled) {
-        prefs.edit().putBoolean(KEY_STEALTH_MODE, enabled).apply();
+        store.edit().putBoolean(KEY_STEALTH_MODE, enabled).apply();
     }
 
     public boolean isStealthModeEnabled() {
-        return prefs.getBoolean(KEY_STEALTH_MODE, false);
+        return store.getBoolean(KEY_STEALTH_MODE, false);
     }
 
     public void setFakeGalleryEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_FAKE_GALLERY, enabled).apply();
+        store.edit().putBoolean(KEY_FAKE_GALLERY, enabled).apply();
     }
 
     public boolean isFakeGalleryEnabled() {
-        return prefs.getBoolean(KEY_FAKE_GALLERY, false);
+        return store.getBoolean(KEY_FAKE_GALLERY, false);
     }
 
     // --- FACE DATA STORAGE ---
@@ -138,17 +382,247 @@ public class HFSDatabaseHelper {
      * Saves the owner's face biometric template as a String/JSON.
      */
     public void saveOwnerFaceData(String faceData) {
-        prefs.edit().putString(KEY_OWNER_FACE_DATA, faceData).apply();
+        store.edit().putString(KEY_OWNER_FACE_DATA, faceData).apply();
     }
 
     public String getOwnerFaceData() {
-        return prefs.getString(KEY_OWNER_FACE_DATA, "");
+        return store.getString(KEY_OWNER_FACE_DATA, "");
+    }
+
+    // --- EVIDENCE RETENTION ---
+
+    /**
+     * Saves the retention limits enforced by the periodic evidence cleanup.
+     * A value of 0 disables the corresponding limit.
+     */
+    public void saveRetentionPolicy(int maxAgeDays, int maxCount, int maxMegabytes) {
+        store.edit()
+                .putInt(KEY_RETENTION_MAX_AGE_DAYS, maxAgeDays)
+                .putInt(KEY_RETENTION_MAX_COUNT, maxCount)
+                .putInt(KEY_RETENTION_MAX_MB, maxMegabytes)
+                .apply();
+    }
+
+    public int getRetentionMaxAgeDays() {
+        return store.getInt(KEY_RETENTION_MAX_AGE_DAYS, DEFAULT_RETENTION_MAX_AGE_DAYS);
+    }
+
+    public int getRetentionMaxCount() {
+        return store.getInt(KEY_RETENTION_MAX_COUNT, DEFAULT_RETENTION_MAX_COUNT);
+    }
+
+    public int getRetentionMaxMegabytes() {
+        return store.getInt(KEY_RETENTION_MAX_MB, DEFAULT_RETENTION_MAX_MB);
+    }
+
+    // --- EVIDENCE ENCODING ---
+
+    /**
+     * Saves how intruder photos are encoded.
+     * A budget of 0 keeps the fixed default quality.
+     */
+    public void saveEvidenceEncoding(int mode, int format, int budgetKb) {
+        store.edit()
+                .putInt(KEY_EVIDENCE_MODE, mode)
+                .putInt(KEY_EVIDENCE_FORMAT, format)
+                .putInt(KEY_EVIDENCE_BUDGET_KB, clampEvidenceBudgetKb(budgetKb))
+                .apply();
+    }
+
+    public int getEvidenceMode() {
+        return store.getInt(KEY_EVIDENCE_MODE, EVIDENCE_MODE_FULL_FRAME);
+    }
+
+    public int getEvidenceFormat() {
+        return store.getInt(KEY_EVIDENCE_FORMAT, EVIDENCE_FORMAT_JPEG);
+    }
+
+    public int getEvidenceBudgetKb() {
+        return clampEvidenceBudgetKb(store.getInt(KEY_EVIDENCE_BUDGET_KB, 0));
+    }
+
+    private static int clampEvidenceBudgetKb(int budgetKb) {
+        return Math.max(0, Math.min(budgetKb, MAX_EVIDENCE_BUDGET_KB));
+    }
+
+    // --- EVIDENCE INTEGRITY ---
+
+    public void saveIntegrityReport(long checkedAt, String summary) {
+        store.edit()
+                .putLong(KEY_INTEGRITY_CHECKED_AT, checkedAt)
+                .putString(KEY_INTEGRITY_SUMMARY, summary)
+                .apply();
+    }
+
+    public long getIntegrityCheckedAt() {
+        return store.getLong(KEY_INTEGRITY_CHECKED_AT, 0);
+    }
+
+    public String getIntegritySummary() {
+        return store.getString(KEY_INTEGRITY_SUMMARY, "Not verified yet");
+    }
+
+    public void saveManifestHead(long seq, String hash) {
+        store.edit()
+                .putLong(KEY_MANIFEST_HEAD_SEQ, seq)
+                .putString(KEY_MANIFEST_HEAD_HASH, hash)
+                .apply();
+    }
+
+    /**
+     * Returns the sequence number of the last manifest entry written, or -1 if none was recorded.
+     */
+    public long getManifestHeadSeq() {
+        return store.getLong(KEY_MANIFEST_HEAD_SEQ, -1);
+    }
+
+    public String getManifestHeadHash() {
+        return store.getString(KEY_MANIFEST_HEAD_HASH, null);
+    }
+
+    // --- OFF-DEVICE UPLOAD ---
+
+    /**
+     * Saves the upload configuration. The token is sent as a bearer token
+     * and may be empty if the endpoint does not require one. Uploads are
+     * encrypted for the recovery key (see EvidenceCrypto.parseRecoveryKey).
+     */
+    public void saveUploadSettings(boolean enabled, String endpoint, String token, String recoveryKey,
+                                   boolean unmeteredOnly) {
+        store.edit()
+                .putBoolean(KEY_UPLOAD_ENABLED, enabled)
+                .putString(KEY_UPLOAD_ENDPOINT, endpoint)
+                .putString(KEY_UPLOAD_TOKEN, token)
+                .putString(KEY_UPLOAD_RECOVERY_KEY, recoveryKey)
+                .putBoolean(KEY_UPLOAD_UNMETERED_ONLY, unmeteredOnly)
+                .apply();
+    }
+
+    /**
+     * Uploads need an https endpoint and a recovery key; a configuration
+     * saved before those were required stays disabled.
+     */
+    public boolean isUploadEnabled() {
+        return store.getBoolean(KEY_UPLOAD_ENABLED, false) && getUploadEndpoint().startsWith("https://")
+                && !getUploadRecoveryKey().isEmpty();
+    }
+
+    public String getUploadEndpoint() {
+        return store.getString(KEY_UPLOAD_ENDPOINT, "");
+    }
+
+    public String getUploadToken() {
+        return store.getString(KEY_UPLOAD_TOKEN, "");
+    }
+
+    public String getUploadRecoveryKey() {
+        return store.getString(KEY_UPLOAD_RECOVERY_KEY, "");
+    }
+
+    public boolean isUploadUnmeteredOnly() {
+        return store.getBoolean(KEY_UPLOAD_UNMETERED_ONLY, true);
+    }
+
+    /**
+     * Random ID of this installation, used to name uploads on the server
+     * so captures of several devices never collide. Created on first use.
+     */
+    public synchronized String getUploadDeviceId() {
+        String id = store.getString(KEY_UPLOAD_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            store.edit().putString(KEY_UPLOAD_DEVICE_ID, id).apply();
+        }
+        return id;
+    }
+
+    public void saveUploadSummary(String summary) {
+        store.edit().putString(KEY_UPLOAD_SUMMARY, summary).apply();
+    }
+
+    public String getUploadSummary() {
+        return store.getString(KEY_UPLOAD_SUMMARY, "No uploads yet");
+    }
+
+    // --- ALERT CHANNELS ---
+
+    /**
+     * Enables the local alert log, a loopback channel that receives every
+     * alert next to the SMS (see FileAlertChannel).
+     */
+    public void setAlertLogEnabled(boolean enabled) {
+        store.edit().putBoolean(KEY_ALERT_LOG_ENABLED, enabled).apply();
+    }
+
+    public boolean isAlertLogEnabled() {
+        return store.getBoolean(KEY_ALERT_LOG_ENABLED, false);
+    }
+
+    // --- SETTINGS STATE ---
+
+    /**
+     * Returns false while the settings file could not be read (see SettingsStore).
+     * Nothing is protected then, and changes are not saved.
+     */
+    public boolean isSettingsAvailable() {
+        return store.isAvailable();
+    }
+
+    public boolean retrySettingsLoad() {
+        return store.retryLoad();
+    }
+
+    /**
+     * Returns true once after the settings were lost with their encryption key
+     * and started over empty, so the user can be told to set HFS up again.
+     */
+    public boolean consumeSettingsResetNotice() {
+        if (!store.getBoolean(SettingsStore.KEY_RESET_NOTICE, false)) return false;
+        store.edit().remove(SettingsStore.KEY_RESET_NOTICE).apply();
+        return true;
     }
 
     /**
      * Completely resets the app settings.
      */
     public void clearDatabase() {
-        prefs.edit().clear().apply();
+        store.edit().clear().apply();
+    }
+
+    /**
+     * Moves the settings of older versions from SharedPreferences into the
+     * store in one durable write, then clears the old file. The protected set
+     * was kept there as Gson JSON and becomes a native string set.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyPrefs(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        Map<String, ?> legacy = prefs.getAll();
+        if (legacy.isEmpty()) return;
+
+        SettingsStore.Editor editor = store.edit();
+        for (Map.Entry<String, ?> entry : legacy.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (KEY_PROTECTED_PACKAGES.equals(key) && value instanceof String) {
+                Type type = new TypeToken<HashSet<String>>() {}.getType();
+                Set<String> packages = new Gson().fromJson((String) value, type);
+                if (packages != null) editor.putStringSet(key, packages);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else if (value instanceof Set) {
+                editor.putStringSet(key, (Set<String>) value);
+            }
+        }
+        // Keep the old file if the new one could not be written, to retry next start
+        if (editor.commit()) {
+            prefs.edit().clear().commit();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.hfs.security.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Pass-through stream that computes the SHA-256 of every byte written to
+ * the underlying stream, so a file's digest is known as soon as it is
+ * written, without reading it back. The time spent hashing is tracked
+ * separately for the capture metrics.
+ */
+public class HashingOutputStream extends FilterOutputStream {
+
+    private final MessageDigest digest;
+    private long digestNanos = 0;
+    private byte[] result;
+
+    public HashingOutputStream(OutputStream target) {
+        super(target);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Android version
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        digest.update((byte) b);
+        digestNanos += System.nanoTime() - start;
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream would forward byte by byte; hash and write the whole block instead
+        long start = System.nanoTime();
+        digest.update(b, off, len);
+        digestNanos += System.nanoTime() - start;
+        out.write(b, off, len);
+    }
+
+    /**
+     * Returns the SHA-256 of all bytes written. Finalizes the digest,
+     * so it must only be called once writing is complete.
+     */
+    public byte[] getDigest() {
+        if (result == null) {
+            result = digest.digest();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the time spent hashing so far.
+     */
+    public long getDigestNanos() {
+        return digestNanos;
+    }
+}
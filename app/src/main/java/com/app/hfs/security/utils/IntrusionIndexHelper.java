@@ -0,0 +1,1224 @@
+package com.hfs.security.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.hfs.security.models.Alert;
+import com.hfs.security.models.Incident;
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.models.IntrusionStats;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Indexed local store for intrusion events.
+ * One row is written per intrusion at capture time, so the History screen
+ * can page through events sorted by time without scanning the evidence
+ * directory or stat-ing every photo file.
+ *
+ * Intrusions are grouped into incidents: one incident collects the captures,
+ * attempts, wrong-PIN entries and the alert of a lock session. A new lock
+ * session for the same app while its incident is still open (see
+ * openIncident) continues that incident, so rapid retries form one unit.
+ *
+ * Every committed write notifies the registered ChangeListeners with the
+ * affected incident IDs, so screens can apply just those changes instead
+ * of reloading.
+ *
+ * Dashboard statistics are kept in small counter tables (per app, and per
+ * local day and hour for the last IntrusionStats.DAYS days) that are bumped
+ * in the same transaction as the incident and intrusion writes. They
+ * describe what happened, so deleting evidence does not lower them.
+ *
+ * Alert SMS are queued in the alerts table. Incidents that occur while an
+ * alert is still waiting are merged into it, and every status change of an
+ * alert is mirrored to the alert status of the incidents it covers.
+ */
+public class IntrusionIndexHelper extends SQLiteOpenHelper {
+
+    private static final String TAG = "HFS_IntrusionIndex";
+    private static final String DB_NAME = "hfs_intrusions.db";
+    private static final int DB_VERSION = 6;
+
+    // Table and column names
+    private static final String TABLE_INTRUSIONS = "intrusions";
+    private static final String COL_ID = "_id";
+    private static final String COL_PACKAGE = "package_name";
+    private static final String COL_APP_NAME = "app_name";
+    private static final String COL_TIMESTAMP = "timestamp";
+    private static final String COL_PHOTO_PATH = "photo_path";
+    private static final String COL_FILE_SIZE = "file_size";
+    private static final String COL_VERDICT_SCORE = "verdict_score";
+    private static final String COL_SMS_STATUS = "sms_status";
+    private static final String COL_PHASH = "phash";
+    private static final String COL_OCCURRENCES = "occurrences";
+    private static final String COL_LAST_SEEN = "last_seen";
+    private static final String COL_INCIDENT_ID = "incident_id";
+    private static final String COL_UPLOAD_STATE = "upload_state";
+
+    private static final String TABLE_INCIDENTS = "incidents";
+    private static final String COL_SESSION_ID = "session_id";
+    private static final String COL_STARTED_AT = "started_at";
+    private static final String COL_LAST_EVENT_AT = "last_event_at";
+    private static final String COL_SESSION_COUNT = "session_count";
+    private static final String COL_CAPTURE_COUNT = "capture_count";
+    private static final String COL_ATTEMPT_COUNT = "attempt_count";
+    private static final String COL_WRONG_PIN_COUNT = "wrong_pin_count";
+    private static final String COL_ALERT_STATUS = "alert_status";
+    private static final String COL_COVER_PATH = "cover_path";
+
+    private static final String TABLE_STATS_APP = "stats_app";
+    private static final String TABLE_STATS_HOURLY = "stats_hourly";
+    private static final String COL_INCIDENTS = "incident_count";
+    private static final String COL_ATTEMPTS = "attempt_count";
+    private static final String COL_LAST_INCIDENT_AT = "last_incident_at";
+    private static final String COL_DAY = "day";
+    private static final String COL_HOUR = "hour";
+
+    private static final String TABLE_ALERTS = "alerts";
+    private static final String COL_ALERT_ID = "alert_id";
+    private static final String COL_STATUS = "status";
+    private static final String COL_APP_NAMES = "app_names";
+    private static final String COL_FIRST_AT = "first_at";
+    private static final String COL_LAST_AT = "last_at";
+    private static final String COL_SEND_ATTEMPTS = "attempts";
+    private static final String COL_PARTS = "parts";
+    private static final String COL_PARTS_SENT = "parts_sent";
+    private static final String COL_NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String COL_LAST_ATTEMPT_AT = "last_attempt_at";
+    private static final String COL_DISPATCHED_AT = "dispatched_at";
+    private static final String COL_DELIVERED_AT = "delivered_at";
+
+    // SMS alert status values stored per intrusion
+    public static final int SMS_UNKNOWN = -1;
+    public static final int SMS_PENDING = 0;
+    public static final int SMS_SENT = 1;
+    public static final int SMS_FAILED = 2;
+    public static final int SMS_NOT_CONFIGURED = 3;
+    public static final int SMS_DELIVERED = 4;
+    public static final int SMS_SENDING = 5;
+
+    // Off-device upload state stored per intrusion
+    public static final int UPLOAD_PENDING = 0;
+    public static final int UPLOAD_DONE = 1;
+    public static final int UPLOAD_SKIPPED = 2;
+
+    // Score used when no face could be compared (timeout, camera failure)
+    public static final float SCORE_UNKNOWN = -1f;
+
+    // Incident columns plus the latest photo of each incident as its cover
+    private static final String SELECT_INCIDENTS = "SELECT *, (SELECT " + COL_PHOTO_PATH
+            + " FROM " + TABLE_INTRUSIONS + " WHERE " + COL_INCIDENT_ID + " = " + TABLE_INCIDENTS + "." + COL_ID
+            + " AND " + COL_PHOTO_PATH + " IS NOT NULL ORDER BY " + COL_TIMESTAMP + " DESC LIMIT 1) AS " + COL_COVER_PATH
+            + " FROM " + TABLE_INCIDENTS;
+
+    // An incident stays open for new lock sessions of the same app until idle this long
+    private static final long INCIDENT_IDLE_MS = 10 * 60 * 1000L;
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    // Number of apps listed on the dashboard
+    private static final int TOP_APPS = 3;
+
+    /**
+     * Receives incident changes after the write is committed. Always invoked on the main thread.
+     */
+    public interface ChangeListener {
+        /** An incident was created or one of its counters, captures or alert status changed. */
+        void onIncidentChanged(long incidentId);
+
+        /** Incidents were deleted together with their captures. */
+        void onIncidentsRemoved(List<Long> incidentIds);
+    }
+
+    private static IntrusionIndexHelper instance;
+    private final Context appContext;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Background thread for writes started from the UI (lock screen events)
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private IntrusionIndexHelper(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        this.appContext = context;
+    }
+
+    /**
+     * Returns a thread-safe singleton instance of the intrusion index.
+     */
+    public static synchronized IntrusionIndexHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new IntrusionIndexHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the application context the index was opened with.
+     */
+    public Context getContext() {
+        return appContext;
+    }
+
+    /**
+     * Runs a task on the index's background thread. Tasks run one at a time,
+     * in the order they were submitted, so the UI thread never waits for SQLite.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Like execute(), but returns the task's result. Once the task has run,
+     * every task submitted before it has finished.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyChanged(long incidentId) {
+        if (incidentId < 0 || listeners.isEmpty()) return;
+        mainHandler.post(() -> {
+            for (ChangeListener listener : listeners) {
+                listener.onIncidentChanged(incidentId);
+            }
+        });
+    }
+
+    private void notifyRemoved(List<Long> incidentIds) {
+        if (incidentIds.isEmpty() || listeners.isEmpty()) return;
+        final List<Long> removed = Collections.unmodifiableList(new ArrayList<>(incidentIds));
+        mainHandler.post(() -> {
+            for (ChangeListener listener : listeners) {
+                listener.onIncidentsRemoved(removed);
+            }
+        });
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_INTRUSIONS + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_PACKAGE + " TEXT, "
+                + COL_APP_NAME + " TEXT, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL, "
+                + COL_PHOTO_PATH + " TEXT, "
+                + COL_FILE_SIZE + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_VERDICT_SCORE + " REAL NOT NULL DEFAULT -1, "
+                + COL_SMS_STATUS + " INTEGER NOT NULL DEFAULT " + SMS_PENDING + ")");
+
+        // Newest-first paging is the only access pattern of the History screen
+        db.execSQL("CREATE INDEX idx_intrusions_time ON " + TABLE_INTRUSIONS
+                + " (" + COL_TIMESTAMP + " DESC, " + COL_ID + " DESC)");
+
+        importLegacyCaptures(db);
+
+        // Bring the version 1 schema created above up to date
+        onUpgrade(db, 1, DB_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Schema migrations are applied incrementally per version
+        if (oldVersion < 2) {
+            // Perceptual hash and occurrence tracking for near-duplicate captures
+            db.execSQL("ALTER TABLE " + TABLE_INTRUSIONS + " ADD COLUMN " + COL_PHASH + " INTEGER");
+            db.execSQL("ALTER TABLE " + TABLE_INTRUSIONS + " ADD COLUMN "
+                    + COL_OCCURRENCES + " INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("ALTER TABLE " + TABLE_INTRUSIONS + " ADD COLUMN " + COL_LAST_SEEN + " INTEGER");
+            db.execSQL("UPDATE " + TABLE_INTRUSIONS + " SET " + COL_LAST_SEEN + " = " + COL_TIMESTAMP);
+            db.execSQL("CREATE INDEX idx_intrusions_recent ON " + TABLE_INTRUSIONS
+                    + " (" + COL_PACKAGE + ", " + COL_LAST_SEEN + ")");
+        }
+        if (oldVersion < 3) {
+            // Incidents group the events of a lock session
+            db.execSQL("CREATE TABLE " + TABLE_INCIDENTS + " ("
+                    + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COL_SESSION_ID + " TEXT NOT NULL, "
+                    + COL_PACKAGE + " TEXT, "
+                    + COL_APP_NAME + " TEXT, "
+                    + COL_STARTED_AT + " INTEGER NOT NULL, "
+                    + COL_LAST_EVENT_AT + " INTEGER NOT NULL, "
+                    + COL_SESSION_COUNT + " INTEGER NOT NULL DEFAULT 1, "
+                    + COL_CAPTURE_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_ATTEMPT_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_WRONG_PIN_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_ALERT_STATUS + " INTEGER NOT NULL DEFAULT " + SMS_PENDING + ")");
+            db.execSQL("CREATE INDEX idx_incidents_time ON " + TABLE_INCIDENTS
+                    + " (" + COL_STARTED_AT + " DESC, " + COL_ID + " DESC)");
+            db.execSQL("CREATE INDEX idx_incidents_open ON " + TABLE_INCIDENTS
+                    + " (" + COL_PACKAGE + ", " + COL_LAST_EVENT_AT + ")");
+
+            db.execSQL("ALTER TABLE " + TABLE_INTRUSIONS + " ADD COLUMN " + COL_INCIDENT_ID + " INTEGER");
+            db.execSQL("CREATE INDEX idx_intrusions_incident ON " + TABLE_INTRUSIONS
+                    + " (" + COL_INCIDENT_ID + ", " + COL_TIMESTAMP + ")");
+
+            // Existing intrusions become one incident each
+            db.execSQL("INSERT INTO " + TABLE_INCIDENTS + " ("
+                    + COL_SESSION_ID + ", " + COL_PACKAGE + ", " + COL_APP_NAME + ", "
+                    + COL_STARTED_AT + ", " + COL_LAST_EVENT_AT + ", "
+                    + COL_CAPTURE_COUNT + ", " + COL_ATTEMPT_COUNT + ", " + COL_ALERT_STATUS + ")"
+                    + " SELECT 'legacy-' || " + COL_ID + ", " + COL_PACKAGE + ", " + COL_APP_NAME + ", "
+                    + COL_TIMESTAMP + ", " + COL_LAST_SEEN + ", 1, " + COL_OCCURRENCES + ", " + COL_SMS_STATUS
+                    + " FROM " + TABLE_INTRUSIONS);
+            db.execSQL("UPDATE " + TABLE_INTRUSIONS + " SET " + COL_INCIDENT_ID
+                    + " = (SELECT " + COL_ID + " FROM " + TABLE_INCIDENTS + " WHERE " + COL_SESSION_ID
+                    + " = 'legacy-' || " + TABLE_INTRUSIONS + "." + COL_ID + ")");
+        }
+        if (oldVersion < 4) {
+            // Counter tables for the dashboard; unknown packages are keyed by ''
+            db.execSQL("CREATE TABLE " + TABLE_STATS_APP + " ("
+                    + COL_PACKAGE + " TEXT PRIMARY KEY NOT NULL, "
+                    + COL_APP_NAME + " TEXT, "
+                    + COL_INCIDENTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_LAST_INCIDENT_AT + " INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("CREATE TABLE " + TABLE_STATS_HOURLY + " ("
+                    + COL_DAY + " INTEGER NOT NULL, "
+                    + COL_HOUR + " INTEGER NOT NULL, "
+                    + COL_INCIDENTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY (" + COL_DAY + ", " + COL_HOUR + "))");
+
+            // One-time backfill from the existing incidents (attempts are dated at the incident start)
+            db.execSQL("INSERT INTO " + TABLE_STATS_APP + " ("
+                    + COL_PACKAGE + ", " + COL_APP_NAME + ", " + COL_INCIDENTS + ", "
+                    + COL_ATTEMPTS + ", " + COL_LAST_INCIDENT_AT + ")"
+                    + " SELECT COALESCE(" + COL_PACKAGE + ", ''), MAX(" + COL_APP_NAME + "), COUNT(*), SUM("
+                    + COL_ATTEMPT_COUNT + "), MAX(" + COL_STARTED_AT + ") FROM " + TABLE_INCIDENTS
+                    + " GROUP BY COALESCE(" + COL_PACKAGE + ", '')");
+            String localSeconds = "strftime('%s', " + COL_STARTED_AT + " / 1000, 'unixepoch', 'localtime')";
+            db.execSQL("INSERT INTO " + TABLE_STATS_HOURLY + " ("
+                    + COL_DAY + ", " + COL_HOUR + ", " + COL_INCIDENTS + ", " + COL_ATTEMPTS + ")"
+                    + " SELECT CAST(" + localSeconds + " AS INTEGER) / 86400 AS d,"
+                    + " (CAST(" + localSeconds + " AS INTEGER) % 86400) / 3600 AS h,"
+                    + " COUNT(*), SUM(" + COL_ATTEMPT_COUNT + ") FROM " + TABLE_INCIDENTS
+                    + " GROUP BY d, h");
+        }
+        if (oldVersion < 5) {
+            // Off-device upload progress; the offset itself is tracked by the server
+            db.execSQL("ALTER TABLE " + TABLE_INTRUSIONS + " ADD COLUMN "
+                    + COL_UPLOAD_STATE + " INTEGER NOT NULL DEFAULT " + UPLOAD_PENDING);
+            db.execSQL("CREATE INDEX idx_intrusions_upload ON " + TABLE_INTRUSIONS
+                    + " (" + COL_UPLOAD_STATE + ", " + COL_TIMESTAMP + ")");
+        }
+        if (oldVersion < 6) {
+            // Persistent alert queue; existing incidents keep their recorded status and get no alert row
+            db.execSQL("CREATE TABLE " + TABLE_ALERTS + " ("
+                    + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COL_STATUS + " INTEGER NOT NULL DEFAULT " + SMS_PENDING + ", "
+                    + COL_APP_NAMES + " TEXT, "
+                    + COL_FIRST_AT + " INTEGER NOT NULL, "
+                    + COL_LAST_AT + " INTEGER NOT NULL, "
+                    + COL_INCIDENTS + " INTEGER NOT NULL DEFAULT 1, "
+                    + COL_SEND_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_PARTS + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_PARTS_SENT + " INTEGER NOT NULL DEFAULT 0, "
+                    + COL_NEXT_ATTEMPT_AT + " INTEGER NOT NULL, "
+                    + COL_LAST_ATTEMPT_AT + " INTEGER, "
+                    + COL_DISPATCHED_AT + " INTEGER, "
+                    + COL_DELIVERED_AT + " INTEGER)");
+            db.execSQL("CREATE INDEX idx_alerts_due ON " + TABLE_ALERTS
+                    + " (" + COL_STATUS + ", " + COL_NEXT_ATTEMPT_AT + ")");
+            db.execSQL("CREATE INDEX idx_alerts_dispatched ON " + TABLE_ALERTS
+                    + " (" + COL_DISPATCHED_AT + ")");
+
+            db.execSQL("ALTER TABLE " + TABLE_INCIDENTS + " ADD COLUMN " + COL_ALERT_ID + " INTEGER");
+            db.execSQL("CREATE INDEX idx_incidents_alert ON " + TABLE_INCIDENTS + " (" + COL_ALERT_ID + ")");
+        }
+    }
+
+    /**
+     * One-time import of photos captured before the index existed,
+     * so upgrading users do not lose their existing evidence history.
+     */
+    private void importLegacyCaptures(SQLiteDatabase db) {
+        File dir = FileSecureHelper.getIntruderDirectory(appContext);
+        File[] files = dir.listFiles((d, name) ->
+                name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png"));
+        if (files == null || files.length == 0) return;
+
+        for (File file : files) {
+            ContentValues values = new ContentValues();
+            values.put(COL_APP_NAME, "Unknown App");
+            values.put(COL_TIMESTAMP, file.lastModified());
+            values.put(COL_PHOTO_PATH, file.getAbsolutePath());
+            values.put(COL_FILE_SIZE, file.length());
+            values.put(COL_SMS_STATUS, SMS_UNKNOWN);
+            db.insert(TABLE_INTRUSIONS, null, values);
+        }
+        Log.i(TAG, "Imported " + files.length + " legacy captures into the intrusion index.");
+    }
+
+    // --- WRITES ---
+
+    /**
+     * Returns the incident a lock session should record its events in.
+     * If the same app has an incident with activity in the last INCIDENT_IDLE_MS,
+     * the session joins it; otherwise a new incident is opened for the session.
+     *
+     * @return The incident ID, or -1 on failure.
+     */
+    public long openIncident(String sessionId, String packageName, String appName, long timestamp) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long incidentId = -1;
+            String selection = COL_LAST_EVENT_AT + " >= ? AND "
+                    + (packageName != null ? COL_PACKAGE + " = ?" : COL_PACKAGE + " IS NULL");
+            String[] args = packageName != null
+                    ? new String[]{String.valueOf(timestamp - INCIDENT_IDLE_MS), packageName}
+                    : new String[]{String.valueOf(timestamp - INCIDENT_IDLE_MS)};
+
+            try (Cursor c = db.query(TABLE_INCIDENTS, new String[]{COL_ID}, selection, args,
+                    null, null, COL_LAST_EVENT_AT + " DESC", "1")) {
+                if (c.moveToFirst()) incidentId = c.getLong(0);
+            }
+
+            if (incidentId != -1) {
+                db.execSQL("UPDATE " + TABLE_INCIDENTS + " SET " + COL_SESSION_COUNT + " = "
+                                + COL_SESSION_COUNT + " + 1, " + COL_LAST_EVENT_AT + " = ? WHERE " + COL_ID + " = ?",
+                        new Object[]{timestamp, incidentId});
+            } else {
+                ContentValues values = new ContentValues();
+                values.put(COL_SESSION_ID, sessionId);
+                values.put(COL_PACKAGE, packageName);
+                values.put(COL_APP_NAME, appName);
+                values.put(COL_STARTED_AT, timestamp);
+                values.put(COL_LAST_EVENT_AT, timestamp);
+                incidentId = db.insert(TABLE_INCIDENTS, null, values);
+                countIncident(db, packageName, appName, timestamp);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanged(incidentId);
+        return incidentId;
+    }
+
+    /**
+     * Records a new intrusion and counts it on its incident, in one transaction.
+     * Called from the capture path right after the evidence photo (if any) has been written.
+     *
+     * @return The row ID of the new intrusion, or -1 on failure.
+     */
+    public long insertIntrusion(long incidentId, String packageName, String appName, long timestamp,
+                                String photoPath, long fileSize, float verdictScore, Long perceptualHash) {
+        ContentValues values = new ContentValues();
+        values.put(COL_INCIDENT_ID, incidentId);
+        values.put(COL_PACKAGE, packageName);
+        values.put(COL_APP_NAME, appName);
+        values.put(COL_TIMESTAMP, timestamp);
+        values.put(COL_PHOTO_PATH, photoPath);
+        values.put(COL_FILE_SIZE, fileSize);
+        values.put(COL_VERDICT_SCORE, verdictScore);
+        values.put(COL_SMS_STATUS, SMS_PENDING);
+        values.put(COL_PHASH, perceptualHash);
+        values.put(COL_LAST_SEEN, timestamp);
+
+        SQLiteDatabase db = getWritableDatabase();
+        long id;
+        db.beginTransaction();
+        try {
+            id = db.insert(TABLE_INTRUSIONS, null, values);
+            db.execSQL("UPDATE " + TABLE_INCIDENTS + " SET "
+                            + COL_CAPTURE_COUNT + " = " + COL_CAPTURE_COUNT + " + 1, "
+                            + COL_ATTEMPT_COUNT + " = " + COL_ATTEMPT_COUNT + " + 1, "
+                            + COL_LAST_EVENT_AT + " = ? WHERE " + COL_ID + " = ?",
+                    new Object[]{timestamp, incidentId});
+            countAttempt(db, incidentId, timestamp);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanged(incidentId);
+        return id;
+    }
+
+    /**
+     * Merges a near-duplicate capture into an existing intrusion
+     * as an extra occurrence instead of storing it again, and counts
+     * the attempt on the current incident.
+     */
+    public void recordOccurrence(long id, long incidentId, long timestamp) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + TABLE_INTRUSIONS
+                            + " SET " + COL_OCCURRENCES + " = " + COL_OCCURRENCES + " + 1, "
+                            + COL_LAST_SEEN + " = ? WHERE " + COL_ID + " = ?",
+                    new Object[]{timestamp, id});
+            db.execSQL("UPDATE " + TABLE_INCIDENTS + " SET "
+                            + COL_ATTEMPT_COUNT + " = " + COL_ATTEMPT_COUNT + " + 1, "
+                            + COL_LAST_EVENT_AT + " = ? WHERE " + COL_ID + " = ?",
+                    new Object[]{timestamp, incidentId});
+            countAttempt(db, incidentId, timestamp);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanged(incidentId);
+    }
+
+    /**
+     * Counts a wrong PIN entry on the lock screen against the incident.
+     */
+    public void recordWrongPin(long incidentId, long timestamp) {
+        if (incidentId < 0) return;
+        getWritableDatabase().execSQL("UPDATE " + TABLE_INCIDENTS + " SET "
+                        + COL_WRONG_PIN_COUNT + " = " + COL_WRONG_PIN_COUNT + " + 1, "
+                        + COL_LAST_EVENT_AT + " = ? WHERE " + COL_ID + " = ?",
+                new Object[]{timestamp, incidentId});
+        notifyChanged(incidentId);
+    }
+
+    /**
+     * Records the off-device upload state of an intrusion.
+     */
+    public void updateUploadState(long id, int state) {
+        ContentValues values = new ContentValues();
+        values.put(COL_UPLOAD_STATE, state);
+        getWritableDatabase().update(TABLE_INTRUSIONS, values,
+                COL_ID + " = ?", new String[]{String.valueOf(id)});
+    }
+
+    /**
+     * Removes a batch of intrusion rows in a single transaction,
+     * so an interrupted bulk delete never leaves a half-applied batch.
+     * Capture counts of the affected incidents are refreshed, and incidents
+     * left without any capture are removed with them, along with their alerts.
+     */
+    public void deleteIntrusions(List<Long> ids) {
+        if (ids.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        Set<Long> incidentIds = new HashSet<>();
+        List<Long> emptied = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            String idList = joinIds(ids);
+            try (Cursor c = db.rawQuery("SELECT DISTINCT " + COL_INCIDENT_ID + " FROM " + TABLE_INTRUSIONS
+                    + " WHERE " + COL_ID + " IN (" + idList + ") AND " + COL_INCIDENT_ID + " IS NOT NULL", null)) {
+                while (c.moveToNext()) {
+                    incidentIds.add(c.getLong(0));
+                }
+            }
+
+            db.execSQL("DELETE FROM " + TABLE_INTRUSIONS + " WHERE " + COL_ID + " IN (" + idList + ")");
+
+            if (!incidentIds.isEmpty()) {
+                String incidentList = joinIds(incidentIds);
+                db.execSQL("UPDATE " + TABLE_INCIDENTS + " SET " + COL_CAPTURE_COUNT
+                        + " = (SELECT COUNT(*) FROM " + TABLE_INTRUSIONS + " WHERE "
+                        + COL_INCIDENT_ID + " = " + TABLE_INCIDENTS + "." + COL_ID + ")"
+                        + " WHERE " + COL_ID + " IN (" + incidentList + ")");
+
+                String emptySelection = COL_ID + " IN (" + incidentList + ") AND " + COL_CAPTURE_COUNT + " = 0";
+                try (Cursor c = db.query(TABLE_INCIDENTS, new String[]{COL_ID}, emptySelection,
+                        null, null, null, null)) {
+                    while (c.moveToNext()) {
+                        emptied.add(c.getLong(0));
+                    }
+                }
+                db.delete(TABLE_INCIDENTS, emptySelection, null);
+                if (!emptied.isEmpty()) dropOrphanedAlerts(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        incidentIds.removeAll(emptied);
+        for (Long incidentId : incidentIds) {
+            notifyChanged(incidentId);
+        }
+        notifyRemoved(emptied);
+    }
+
+    /**
+     * Removes a batch of incidents together with all of their intrusion rows
+     * and alerts, in a single transaction.
+     */
+    public void deleteIncidents(List<Long> incidentIds) {
+        if (incidentIds.isEmpty()) return;
+        String idList = joinIds(incidentIds);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_INTRUSIONS + " WHERE " + COL_INCIDENT_ID + " IN (" + idList + ")");
+            db.execSQL("DELETE FROM " + TABLE_INCIDENTS + " WHERE " + COL_ID + " IN (" + idList + ")");
+            dropOrphanedAlerts(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyRemoved(incidentIds);
+    }
+
+    /**
+     * Removes every incident, capture and open alert in a single transaction (remote wipe).
+     * The statistics counters are kept, like for any other deletion.
+     *
+     * @return Number of incidents removed.
+     */
+    public int deleteAllIncidents() {
+        SQLiteDatabase db = getWritableDatabase();
+        List<Long> incidentIds = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            try (Cursor c = db.query(TABLE_INCIDENTS, new String[]{COL_ID}, null, null, null, null, null)) {
+                while (c.moveToNext()) {
+                    incidentIds.add(c.getLong(0));
+                }
+            }
+            db.delete(TABLE_INTRUSIONS, null, null);
+            db.delete(TABLE_INCIDENTS, null, null);
+            dropOrphanedAlerts(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyRemoved(incidentIds);
+        return incidentIds.size();
+    }
+
+    /**
+     * Settles the alerts of deleted incidents. Runs inside the caller's transaction.
+     * Alerts never handed to the radio are removed; dispatched ones are kept for
+     * the hourly rate limit but closed, so no retry goes out for a deleted incident.
+     * Unsent alerts that still cover other incidents get their count refreshed.
+     */
+    private void dropOrphanedAlerts(SQLiteDatabase db) {
+        String orphaned = "NOT EXISTS (SELECT 1 FROM " + TABLE_INCIDENTS + " WHERE "
+                + TABLE_INCIDENTS + "." + COL_ALERT_ID + " = " + TABLE_ALERTS + "." + COL_ID + ")";
+        db.execSQL("DELETE FROM " + TABLE_ALERTS + " WHERE " + COL_DISPATCHED_AT + " IS NULL AND " + orphaned);
+        db.execSQL("UPDATE " + TABLE_ALERTS + " SET " + COL_STATUS + " = " + SMS_FAILED + " WHERE "
+                + COL_STATUS + " IN (" + SMS_PENDING + ", " + SMS_SENDING + ") AND " + orphaned);
+        db.execSQL("UPDATE " + TABLE_ALERTS + " SET " + COL_INCIDENTS
+                + " = (SELECT COUNT(*) FROM " + TABLE_INCIDENTS + " WHERE "
+                + TABLE_INCIDENTS + "." + COL_ALERT_ID + " = " + TABLE_ALERTS + "." + COL_ID + ")"
+                + " WHERE " + COL_DISPATCHED_AT + " IS NULL");
+    }
+
+    /**
+     * Counts a new incident in the statistics tables. Runs inside the caller's
+     * transaction; day rows that fall out of the window are pruned here, so the
+     * hourly table never holds more than DAYS * 24 rows.
+     */
+    private void countIncident(SQLiteDatabase db, String packageName, String appName, long timestamp) {
+        String key = packageName != null ? packageName : "";
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_STATS_APP + " (" + COL_PACKAGE + ") VALUES (?)",
+                new Object[]{key});
+        db.execSQL("UPDATE " + TABLE_STATS_APP + " SET " + COL_INCIDENTS + " = " + COL_INCIDENTS + " + 1, "
+                        + COL_APP_NAME + " = ?, " + COL_LAST_INCIDENT_AT + " = ? WHERE " + COL_PACKAGE + " = ?",
+                new Object[]{appName, timestamp, key});
+
+        long day = localDay(timestamp);
+        bumpHourly(db, day, localHour(timestamp), COL_INCIDENTS);
+        db.execSQL("DELETE FROM " + TABLE_STATS_HOURLY + " WHERE " + COL_DAY + " < ?",
+                new Object[]{day - (IntrusionStats.DAYS - 1)});
+    }
+
+    /**
+     * Counts a detection attempt of an incident in the statistics tables.
+     * Runs inside the caller's transaction.
+     */
+    private void countAttempt(SQLiteDatabase db, long incidentId, long timestamp) {
+        db.execSQL("UPDATE " + TABLE_STATS_APP + " SET " + COL_ATTEMPTS + " = " + COL_ATTEMPTS + " + 1"
+                        + " WHERE " + COL_PACKAGE + " = (SELECT COALESCE(" + COL_PACKAGE + ", '') FROM "
+                        + TABLE_INCIDENTS + " WHERE " + COL_ID + " = ?)",
+                new Object[]{incidentId});
+        bumpHourly(db, localDay(timestamp), localHour(timestamp), COL_ATTEMPTS);
+    }
+
+    private void bumpHourly(SQLiteDatabase db, long day, int hour, String column) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_STATS_HOURLY + " (" + COL_DAY + ", " + COL_HOUR
+                + ") VALUES (?, ?)", new Object[]{day, hour});
+        db.execSQL("UPDATE " + TABLE_STATS_HOURLY + " SET " + column + " = " + column + " + 1"
+                + " WHERE " + COL_DAY + " = ? AND " + COL_HOUR + " = ?", new Object[]{day, hour});
+    }
+
+    /**
+     * Days since the epoch in the device's current time zone.
+     */
+    private static long localDay(long timestamp) {
+        return (timestamp + TimeZone.getDefault().getOffset(timestamp)) / DAY_MS;
+    }
+
+    /**
+     * Hour of day (0-23) in the device's current time zone.
+     */
+    private static int localHour(long timestamp) {
+        return (int) (((timestamp + TimeZone.getDefault().getOffset(timestamp)) % DAY_MS) / HOUR_MS);
+    }
+
+    // --- ALERT QUEUE ---
+
+    /**
+     * Queues the alert of an incident. While an alert is still waiting for its
+     * first send, new incidents are merged into it. Otherwise a new alert is
+     * queued, due no earlier than coalesceWindowMs after the last dispatched
+     * one, so a burst of incidents becomes a single follow-up summary.
+     *
+     * @return The alert ID, or -1 if the incident already has an alert.
+     */
+    public long enqueueAlert(long incidentId, String appName, long now, long coalesceWindowMs) {
+        if (incidentId < 0) return -1;
+        SQLiteDatabase db = getWritableDatabase();
+        long alertId = -1;
+        db.beginTransaction();
+        try {
+            // 1. One alert per incident; sessions that join an alerted incident are only counted
+            try (Cursor c = db.query(TABLE_INCIDENTS, new String[]{COL_ID},
+                    COL_ID + " = ? AND " + COL_ALERT_ID + " IS NULL",
+                    new String[]{String.valueOf(incidentId)}, null, null, null)) {
+                if (!c.moveToFirst()) return -1;
+            }
+
+            // 2. Merge into the alert that has not been sent yet, if any
+            try (Cursor c = db.query(TABLE_ALERTS, new String[]{COL_ID, COL_APP_NAMES},
+                    COL_STATUS + " = " + SMS_PENDING + " AND " + COL_SEND_ATTEMPTS + " = 0",
+                    null, null, null, COL_ID + " DESC", "1")) {
+                if (c.moveToFirst()) {
+                    alertId = c.getLong(0);
+                    db.execSQL("UPDATE " + TABLE_ALERTS + " SET "
+                                    + COL_INCIDENTS + " = " + COL_INCIDENTS + " + 1, "
+                                    + COL_LAST_AT + " = MAX(" + COL_LAST_AT + ", ?), "
+                                    + COL_APP_NAMES + " = ? WHERE " + COL_ID + " = ?",
+                            new Object[]{now, mergeAppNames(c.getString(1), appName), alertId});
+                }
+            }
+
+            // 3. Otherwise queue a new alert behind the coalescing window of the last one sent
+            if (alertId == -1) {
+                long lastDispatched = 0;
+                try (Cursor c = db.rawQuery("SELECT MAX(" + COL_DISPATCHED_AT + ") FROM " + TABLE_ALERTS, null)) {
+                    if (c.moveToFirst() && !c.isNull(0)) lastDispatched = c.getLong(0);
+                }
+                ContentValues values = new ContentValues();
+                values.put(COL_STATUS, SMS_PENDING);
+                values.put(COL_APP_NAMES, appName);
+                values.put(COL_FIRST_AT, now);
+                values.put(COL_LAST_AT, now);
+                values.put(COL_NEXT_ATTEMPT_AT, Math.max(now, lastDispatched + coalesceWindowMs));
+                alertId = db.insert(TABLE_ALERTS, null, values);
+            }
+
+            ContentValues link = new ContentValues();
+            link.put(COL_ALERT_ID, alertId);
+            link.put(COL_ALERT_STATUS, SMS_PENDING);
+            db.update(TABLE_INCIDENTS, link, COL_ID + " = ?", new String[]{String.valueOf(incidentId)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanged(incidentId);
+        return alertId;
+    }
+
+    /**
+     * Marks an alert as being dispatched for the given attempt.
+     * The first attempt also fixes its dispatch time, which the hourly rate limit counts.
+     */
+    public void markAlertSending(long alertId, int attempt, long now) {
+        ContentValues values = new ContentValues();
+        values.put(COL_STATUS, SMS_SENDING);
+        values.put(COL_SEND_ATTEMPTS, attempt);
+        values.put(COL_PARTS, 0);
+        values.put(COL_PARTS_SENT, 0);
+        values.put(COL_LAST_ATTEMPT_AT, now);
+        updateAlert(alertId, values, null);
+        getWritableDatabase().execSQL("UPDATE " + TABLE_ALERTS + " SET " + COL_DISPATCHED_AT
+                + " = ? WHERE " + COL_ID + " = ? AND " + COL_DISPATCHED_AT + " IS NULL", new Object[]{now, alertId});
+    }
+
+    /**
+     * Sets how many sent reports the current attempt waits for once every
+     * channel accepted it. With none outstanding the alert is SMS_SENT at once.
+     */
+    public void expectAlertReports(long alertId, int attempt, int reports) {
+        getWritableDatabase().execSQL("UPDATE " + TABLE_ALERTS + " SET " + COL_PARTS + " = ? WHERE "
+                        + COL_ID + " = ? AND " + COL_SEND_ATTEMPTS + " = ? AND " + COL_STATUS + " = " + SMS_SENDING,
+                new Object[]{reports, alertId, attempt});
+        completeAlertIfSent(alertId, attempt);
+    }
+
+    /**
+     * Counts one sent report of the current attempt.
+     *
+     * @return True if this was the last outstanding report and the alert is now SMS_SENT.
+     */
+    public boolean recordAlertPartSent(long alertId, int attempt) {
+        getWritableDatabase().execSQL("UPDATE " + TABLE_ALERTS + " SET " + COL_PARTS_SENT + " = "
+                        + COL_PARTS_SENT + " + 1 WHERE " + COL_ID + " = ? AND " + COL_SEND_ATTEMPTS
+                        + " = ? AND " + COL_STATUS + " = " + SMS_SENDING,
+                new Object[]{alertId, attempt});
+        return completeAlertIfSent(alertId, attempt);
+    }
+
+    private boolean completeAlertIfSent(long alertId, int attempt) {
+        ContentValues values = new ContentValues();
+        values.put(COL_STATUS, SMS_SENT);
+        return updateAlert(alertId, values, COL_SEND_ATTEMPTS + " = " + attempt + " AND "
+                + COL_STATUS + " = " + SMS_SENDING + " AND " + COL_PARTS_SENT + " >= " + COL_PARTS);
+    }
+
+    /**
+     * Puts an alert back in the queue after a failed attempt. Reports of an
+     * older attempt are ignored, so one failure is only retried once.
+     *
+     * @return True if the alert was rescheduled.
+     */
+    public boolean rescheduleAlert(long alertId, int attempt, long nextAttemptAt) {
+        ContentValues values = new ContentValues();
+        values.put(COL_STATUS, SMS_PENDING);
+        values.put(COL_NEXT_ATTEMPT_AT, nextAttemptAt);
+        return updateAlert(alertId, values, COL_SEND_ATTEMPTS + " = " + attempt + " AND "
+                + COL_STATUS + " IN (" + SMS_SENDING + ", " + SMS_SENT + ")");
+    }
+
+    /**
+     * Delays a queued alert without counting an attempt (used by the rate limit).
+     */
+    public void postponeAlert(long alertId, long nextAttemptAt) {
+        ContentValues values = new ContentValues();
+        values.put(COL_NEXT_ATTEMPT_AT, nextAttemptAt);
+        updateAlert(alertId, values, COL_STATUS + " = " + SMS_PENDING);
+    }
+
+    /**
+     * Records the final outcome of an alert: SMS_DELIVERED, SMS_FAILED or SMS_NOT_CONFIGURED.
+     *
+     * @return True if the alert was still at the given attempt and not yet final.
+     */
+    public boolean finishAlert(long alertId, int attempt, int status, long now) {
+        ContentValues values = new ContentValues();
+        values.put(COL_STATUS, status);
+        if (status == SMS_DELIVERED) values.put(COL_DELIVERED_AT, now);
+        return updateAlert(alertId, values, COL_SEND_ATTEMPTS + " = " + attempt + " AND "
+                + COL_STATUS + " NOT IN (" + SMS_DELIVERED + ", " + SMS_FAILED + ", " + SMS_NOT_CONFIGURED + ")");
+    }
+
+    /**
+     * Updates an alert row and mirrors a status change to the incidents it covers.
+     */
+    private boolean updateAlert(long alertId, ContentValues values, String condition) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<Long> incidentIds = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            String where = COL_ID + " = " + alertId + (condition != null ? " AND " + condition : "");
+            if (db.update(TABLE_ALERTS, values, where, null) == 0) return false;
+
+            Integer status = values.getAsInteger(COL_STATUS);
+            if (status != null) {
+                String[] args = {String.valueOf(alertId)};
+                try (Cursor c = db.query(TABLE_INCIDENTS, new String[]{COL_ID},
+                        COL_ALERT_ID + " = ?", args, null, null, null)) {
+                    while (c.moveToNext()) {
+                        incidentIds.add(c.getLong(0));
+                    }
+                }
+                ContentValues mirror = new ContentValues();
+                mirror.put(COL_ALERT_STATUS, status);
+                db.update(TABLE_INCIDENTS, mirror, COL_ALERT_ID + " = ?", args);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (long incidentId : incidentIds) {
+            notifyChanged(incidentId);
+        }
+        return true;
+    }
+
+    private static String mergeAppNames(String appNames, String appName) {
+        if (appNames == null || appNames.isEmpty()) return appName;
+        if (appName == null) return appNames;
+        for (String name : appNames.split(", ")) {
+            if (name.equals(appName)) return appNames;
+        }
+        return appNames + ", " + appName;
+    }
+
+    // --- QUERIES ---
+
+    /**
+     * Returns the dashboard statistics. Reads only the counter tables, which
+     * hold one row per app and at most DAYS * 24 hourly rows, so the cost does
+     * not grow with the history.
+     */
+    public IntrusionStats getStats(long now) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = getReadableDatabase();
+
+        // 1. All-time totals and the most targeted apps
+        int totalIncidents = 0;
+        int totalAttempts = 0;
+        try (Cursor c = db.rawQuery("SELECT COALESCE(SUM(" + COL_INCIDENTS + "), 0), COALESCE(SUM("
+                + COL_ATTEMPTS + "), 0) FROM " + TABLE_STATS_APP, null)) {
+            if (c.moveToFirst()) {
+                totalIncidents = c.getInt(0);
+                totalAttempts = c.getInt(1);
+            }
+        }
+        List<IntrusionStats.AppCount> topApps = new ArrayList<>();
+        try (Cursor c = db.query(TABLE_STATS_APP, null, COL_INCIDENTS + " > 0", null, null, null,
+                COL_INCIDENTS + " DESC, " + COL_LAST_INCIDENT_AT + " DESC", String.valueOf(TOP_APPS))) {
+            while (c.moveToNext()) {
+                String packageName = c.getString(c.getColumnIndexOrThrow(COL_PACKAGE));
+                topApps.add(new IntrusionStats.AppCount(
+                        packageName.isEmpty() ? null : packageName,
+                        c.getString(c.getColumnIndexOrThrow(COL_APP_NAME)),
+                        c.getInt(c.getColumnIndexOrThrow(COL_INCIDENTS)),
+                        c.getInt(c.getColumnIndexOrThrow(COL_ATTEMPTS)),
+                        c.getLong(c.getColumnIndexOrThrow(COL_LAST_INCIDENT_AT))));
+            }
+        }
+
+        // 2. Per day and per hour of day over the window
+        int[] perDay = new int[IntrusionStats.DAYS];
+        int[] perHour = new int[IntrusionStats.HOURS];
+        int recentAttempts = 0;
+        long firstDay = localDay(now) - (IntrusionStats.DAYS - 1);
+        try (Cursor c = db.query(TABLE_STATS_HOURLY, new String[]{COL_DAY, COL_HOUR, COL_INCIDENTS, COL_ATTEMPTS},
+                COL_DAY + " >= ?", new String[]{String.valueOf(firstDay)}, null, null, null)) {
+            while (c.moveToNext()) {
+                int dayIndex = (int) (c.getLong(0) - firstDay);
+                if (dayIndex >= IntrusionStats.DAYS) continue;
+                perDay[dayIndex] += c.getInt(2);
+                perHour[c.getInt(1)] += c.getInt(2);
+                recentAttempts += c.getInt(3);
+            }
+        }
+
+        PerfMetrics.record("dashboard.stats_query", System.nanoTime() - start, 0);
+        return new IntrusionStats(totalIncidents, totalAttempts, topApps, perDay, perHour, recentAttempts);
+    }
+
+    /**
+     * Returns the start time of the latest incident from the counter tables, or 0 if there was none.
+     */
+    public long getLastIncidentAt() {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COALESCE(MAX(" + COL_LAST_INCIDENT_AT
+                + "), 0) FROM " + TABLE_STATS_APP, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Returns one page of intrusions, newest first.
+     * Uses keyset paging: pass the timestamp and ID of the last row of the
+     * previous page, or Long.MAX_VALUE for both to fetch the first page.
+     */
+    public List<IntruderLog> getIntrusionsPage(long beforeTimestamp, long beforeId, int limit) {
+        List<IntruderLog> page = new ArrayList<>();
+        String selection = COL_TIMESTAMP + " < ? OR (" + COL_TIMESTAMP + " = ? AND " + COL_ID + " < ?)";
+        String[] args = {
+                String.valueOf(beforeTimestamp),
+                String.valueOf(beforeTimestamp),
+                String.valueOf(beforeId)
+        };
+
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, null, selection, args,
+                null, null, COL_TIMESTAMP + " DESC, " + COL_ID + " DESC", String.valueOf(limit))) {
+            while (c.moveToNext()) {
+                page.add(readIntrusion(c));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns one page of incidents, newest first, with the latest photo of
+     * each incident as its cover. Keyset paging as in getIntrusionsPage,
+     * keyed by the incident start time.
+     */
+    public List<Incident> getIncidentsPage(long beforeStartedAt, long beforeId, int limit) {
+        List<Incident> page = new ArrayList<>();
+        String sql = SELECT_INCIDENTS
+                + " WHERE " + COL_STARTED_AT + " < ? OR (" + COL_STARTED_AT + " = ? AND " + COL_ID + " < ?)"
+                + " ORDER BY " + COL_STARTED_AT + " DESC, " + COL_ID + " DESC LIMIT " + limit;
+        String[] args = {
+                String.valueOf(beforeStartedAt),
+                String.valueOf(beforeStartedAt),
+                String.valueOf(beforeId)
+        };
+
+        try (Cursor c = getReadableDatabase().rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                page.add(readIncident(c));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns a single incident, or null if it no longer exists.
+     */
+    public Incident getIncident(long incidentId) {
+        try (Cursor c = getReadableDatabase().rawQuery(SELECT_INCIDENTS + " WHERE " + COL_ID + " = ?",
+                new String[]{String.valueOf(incidentId)})) {
+            return c.moveToFirst() ? readIncident(c) : null;
+        }
+    }
+
+    /**
+     * Returns queued alerts whose next attempt is due, oldest first.
+     */
+    public List<Alert> getDueAlerts(long now) {
+        return queryAlerts(COL_STATUS + " = " + SMS_PENDING + " AND " + COL_NEXT_ATTEMPT_AT + " <= " + now,
+                COL_NEXT_ATTEMPT_AT + " ASC");
+    }
+
+    /**
+     * Returns alerts handed to the radio before the given time that never reported back.
+     */
+    public List<Alert> getStaleSendingAlerts(long before) {
+        return queryAlerts(COL_STATUS + " = " + SMS_SENDING + " AND " + COL_LAST_ATTEMPT_AT + " < " + before, null);
+    }
+
+    /**
+     * Returns the dispatch times of alerts first sent since the given time, oldest first.
+     */
+    public List<Long> getAlertDispatchTimesSince(long since) {
+        List<Long> times = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_ALERTS, new String[]{COL_DISPATCHED_AT},
+                COL_DISPATCHED_AT + " >= ?", new String[]{String.valueOf(since)},
+                null, null, COL_DISPATCHED_AT + " ASC")) {
+            while (c.moveToNext()) {
+                times.add(c.getLong(0));
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Returns when the alert queue next needs attention: the earliest due
+     * alert, or the time an unanswered send times out. -1 if nothing is open.
+     */
+    public long getNextAlertWakeup(long sendTimeoutMs) {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT MIN(CASE WHEN " + COL_STATUS + " = "
+                + SMS_PENDING + " THEN " + COL_NEXT_ATTEMPT_AT + " ELSE " + COL_LAST_ATTEMPT_AT + " + ? END)"
+                + " FROM " + TABLE_ALERTS + " WHERE " + COL_STATUS + " IN (" + SMS_PENDING + ", " + SMS_SENDING + ")",
+                new String[]{String.valueOf(sendTimeoutMs)})) {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : -1;
+        }
+    }
+
+    /**
+     * Returns the number of alerts that are queued or waiting for their sent reports.
+     */
+    public int getOpenAlertCount() {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_ALERTS + " WHERE "
+                + COL_STATUS + " IN (" + SMS_PENDING + ", " + SMS_SENDING + ")", null)) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    private List<Alert> queryAlerts(String selection, String orderBy) {
+        List<Alert> alerts = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_ALERTS, null, selection, null, null, null, orderBy)) {
+            while (c.moveToNext()) {
+                alerts.add(new Alert(
+                        c.getLong(c.getColumnIndexOrThrow(COL_ID)),
+                        c.getInt(c.getColumnIndexOrThrow(COL_STATUS)),
+                        c.getString(c.getColumnIndexOrThrow(COL_APP_NAMES)),
+                        c.getLong(c.getColumnIndexOrThrow(COL_FIRST_AT)),
+                        c.getLong(c.getColumnIndexOrThrow(COL_LAST_AT)),
+                        c.getInt(c.getColumnIndexOrThrow(COL_INCIDENTS)),
+                        c.getInt(c.getColumnIndexOrThrow(COL_SEND_ATTEMPTS))));
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Returns the captures of one incident, newest first.
+     */
+    public List<IntruderLog> getIncidentCaptures(long incidentId) {
+        List<IntruderLog> captures = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, null,
+                COL_INCIDENT_ID + " = ?", new String[]{String.valueOf(incidentId)},
+                null, null, COL_TIMESTAMP + " DESC")) {
+            while (c.moveToNext()) {
+                captures.add(readIntrusion(c));
+            }
+        }
+        return captures;
+    }
+
+    /**
+     * Returns the evidence paths of the given incidents.
+     */
+    public List<String> getIncidentPhotoPaths(List<Long> incidentIds) {
+        List<String> paths = new ArrayList<>();
+        if (incidentIds.isEmpty()) return paths;
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, new String[]{COL_PHOTO_PATH},
+                COL_INCIDENT_ID + " IN (" + joinIds(incidentIds) + ") AND " + COL_PHOTO_PATH + " IS NOT NULL",
+                null, null, null, null)) {
+            while (c.moveToNext()) {
+                paths.add(c.getString(0));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Looks for a recent capture of the same app whose perceptual hash is within
+     * the given Hamming distance. Only the few rows seen inside the time window
+     * are compared, using the (package, last_seen) index.
+     *
+     * @return The matching intrusion ID, or -1 if the capture is new.
+     */
+    public long findRecentSimilarCapture(String packageName, long perceptualHash,
+                                         long sinceTimestamp, int maxDistance) {
+        String selection = COL_PHASH + " IS NOT NULL AND " + COL_LAST_SEEN + " >= ? AND "
+                + (packageName != null ? COL_PACKAGE + " = ?" : COL_PACKAGE + " IS NULL");
+        String[] args = packageName != null
+                ? new String[]{String.valueOf(sinceTimestamp), packageName}
+                : new String[]{String.valueOf(sinceTimestamp)};
+
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, new String[]{COL_ID, COL_PHASH},
+                selection, args, null, null, COL_LAST_SEEN + " DESC", "16")) {
+            while (c.moveToNext()) {
+                if (PerceptualHash.distance(perceptualHash, c.getLong(1)) <= maxDistance) {
+                    return c.getLong(0);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the oldest intrusions first. Used by eviction, which always
+     * removes evidence in capture order.
+     */
+    public List<IntruderLog> getOldestIntrusions(int limit) {
+        List<IntruderLog> batch = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, null, null, null,
+                null, null, COL_TIMESTAMP + " ASC, " + COL_ID + " ASC", String.valueOf(limit))) {
+            while (c.moveToNext()) {
+                batch.add(readIntrusion(c));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns captures with evidence that still has to be uploaded, oldest first.
+     */
+    public List<IntruderLog> getPendingUploads(int limit) {
+        List<IntruderLog> batch = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, null,
+                COL_UPLOAD_STATE + " = " + UPLOAD_PENDING + " AND " + COL_PHOTO_PATH + " IS NOT NULL",
+                null, null, null, COL_TIMESTAMP + " ASC", String.valueOf(limit))) {
+            while (c.moveToNext()) {
+                batch.add(readIntrusion(c));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the total size in bytes of all indexed evidence files.
+     */
+    public long getTotalEvidenceBytes() {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT COALESCE(SUM(" + COL_FILE_SIZE + "), 0) FROM " + TABLE_INTRUSIONS, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Returns every evidence path referenced by the index.
+     * Used to find orphaned files that are no longer indexed.
+     */
+    public Set<String> getAllPhotoPaths() {
+        Set<String> paths = new HashSet<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_INTRUSIONS, new String[]{COL_PHOTO_PATH},
+                COL_PHOTO_PATH + " IS NOT NULL", null, null, null, null)) {
+            while (c.moveToNext()) {
+                paths.add(c.getString(0));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the total number of indexed intrusions.
+     */
+    public int getIntrusionCount() {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_INTRUSIONS, null)) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    private Incident readIncident(Cursor c) {
+        return new Incident(
+                c.getLong(c.getColumnIndexOrThrow(COL_ID)),
+                c.getString(c.getColumnIndexOrThrow(COL_SESSION_ID)),
+                c.getString(c.getColumnIndexOrThrow(COL_PACKAGE)),
+                c.getString(c.getColumnIndexOrThrow(COL_APP_NAME)),
+                c.getLong(c.getColumnIndexOrThrow(COL_STARTED_AT)),
+                c.getLong(c.getColumnIndexOrThrow(COL_LAST_EVENT_AT)),
+                c.getInt(c.getColumnIndexOrThrow(COL_SESSION_COUNT)),
+                c.getInt(c.getColumnIndexOrThrow(COL_CAPTURE_COUNT)),
+                c.getInt(c.getColumnIndexOrThrow(COL_ATTEMPT_COUNT)),
+                c.getInt(c.getColumnIndexOrThrow(COL_WRONG_PIN_COUNT)),
+                c.getInt(c.getColumnIndexOrThrow(COL_ALERT_STATUS)),
+                c.getString(c.getColumnIndexOrThrow(COL_COVER_PATH)));
+    }
+
+    /**
+     * Formats IDs for an SQL IN clause. IDs are numeric, so no escaping is needed.
+     */
+    private static String joinIds(Collection<Long> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (Long id : ids) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(id.longValue());
+        }
+        return sb.toString();
+    }
+
+    private IntruderLog readIntrusion(Cursor c) {
+        return new IntruderLog(
+                c.getLong(c.getColumnIndexOrThrow(COL_ID)),
+                c.getString(c.getColumnIndexOrThrow(COL_PACKAGE)),
+                c.getString(c.getColumnIndexOrThrow(COL_APP_NAME)),
+                c.getLong(c.getColumnIndexOrThrow(COL_TIMESTAMP)),
+                c.getString(c.getColumnIndexOrThrow(COL_PHOTO_PATH)),
+                c.getLong(c.getColumnIndexOrThrow(COL_FILE_SIZE)),
+                c.getFloat(c.getColumnIndexOrThrow(COL_VERDICT_SCORE)),
+                c.getInt(c.getColumnIndexOrThrow(COL_SMS_STATUS)),
+                c.getInt(c.getColumnIndexOrThrow(COL_OCCURRENCES)));
+    }
+}
@@ -0,0 +1,159 @@
+package com.hfs.security.utils;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Build;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Low-power cache of the device's most recent location.
+ * The app has no background location access, so Android 10+ gives it no
+ * passive updates while it runs in the background. The cache is therefore
+ * filled while the lock screen is in the foreground: start() seeds it from
+ * getLastKnownLocation and listens to the passive provider (fixes other
+ * apps or the system already computed, never GPS), and an intrusion asks
+ * for one fresh network fix. Alerts attach the cached fix with its age
+ * instead of waiting for a new one.
+ */
+public class LocationCache {
+
+    private static final String TAG = "HFS_LocationCache";
+
+    // Passive updates are free, but there is no use in more than one a minute
+    private static final long PASSIVE_MIN_TIME_MS = 60 * 1000L;
+    private static final float PASSIVE_MIN_DISTANCE_M = 25f;
+
+    /**
+     * Notified whenever a newer fix is cached, on the thread that received it.
+     */
+    public interface FixListener {
+        void onFix(Location location);
+    }
+
+    private static LocationCache instance;
+    private final Context appContext;
+    private final LocationManager locationManager;
+    private final List<FixListener> listeners = new CopyOnWriteArrayList<>();
+    private final LocationListener passiveListener = this::offer;
+    private volatile Location last;
+    private boolean listening;
+
+    private LocationCache(Context context) {
+        this.appContext = context;
+        this.locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    }
+
+    public static synchronized LocationCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocationCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public static boolean hasPermission(Context context) {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Seeds the cache and listens to passive updates. Called by the lock
+     * screen while it is visible, when location access is allowed.
+     */
+    public synchronized void start() {
+        if (listening || locationManager == null || !hasPermission(appContext)) return;
+        try {
+            seedFromLastKnown();
+            locationManager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER,
+                    PASSIVE_MIN_TIME_MS, PASSIVE_MIN_DISTANCE_M, passiveListener, Looper.getMainLooper());
+            listening = true;
+        } catch (SecurityException | IllegalArgumentException e) {
+            Log.w(TAG, "Passive location updates unavailable: " + e.getMessage());
+        }
+    }
+
+    public synchronized void stop() {
+        if (!listening) return;
+        locationManager.removeUpdates(passiveListener);
+        listening = false;
+    }
+
+    /**
+     * Returns the most recent known fix, or null if there is none. Never blocks on a new fix.
+     */
+    public Location getLast() {
+        if (last == null && locationManager != null && hasPermission(appContext)) {
+            try {
+                seedFromLastKnown();
+            } catch (SecurityException ignored) {
+                // Permission revoked since the check
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Asks the network provider for one fresh fix, delivered to the listeners
+     * if it arrives. Cheap (no GPS) and fire-and-forget.
+     */
+    public void requestFreshFix() {
+        if (locationManager == null || !hasPermission(appContext)
+                || !locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) return;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                locationManager.getCurrentLocation(LocationManager.NETWORK_PROVIDER, null,
+                        ContextCompat.getMainExecutor(appContext), location -> {
+                            if (location != null) offer(location);
+                        });
+            } else {
+                locationManager.requestSingleUpdate(LocationManager.NETWORK_PROVIDER,
+                        passiveListener, Looper.getMainLooper());
+            }
+        } catch (SecurityException | IllegalArgumentException e) {
+            Log.w(TAG, "Fresh fix unavailable: " + e.getMessage());
+        }
+    }
+
+    public void addFixListener(FixListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeFixListener(FixListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Age of a fix in milliseconds.
+     */
+    public static long ageMs(Location location, long now) {
+        return Math.max(0, now - location.getTime());
+    }
+
+    private void seedFromLastKnown() {
+        for (String provider : locationManager.getProviders(true)) {
+            Location candidate = locationManager.getLastKnownLocation(provider);
+            if (candidate != null) offer(candidate);
+        }
+    }
+
+    private synchronized void offer(@NonNull Location location) {
+        Location current = last;
+        if (current != null && location.getTime() <= current.getTime()) return;
+        last = location;
+        for (FixListener listener : listeners) {
+            listener.onFix(location);
+        }
+    }
+}
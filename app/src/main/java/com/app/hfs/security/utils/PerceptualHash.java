@@ -0,0 +1,64 @@
+package com.hfs.security.utils;
+
+/**
+ * Perceptual Hash (dHash) for camera frames.
+ * The luminance (Y) plane is reduced to a 9x8 grid of block averages and
+ * each bit records whether a cell is brighter than its right neighbour.
+ * Frames of the same scene differ by only a few bits, so the Hamming
+ * distance between two hashes tells near-identical captures apart from
+ * new ones without decoding or comparing the images themselves.
+ */
+public class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    // Pixels sampled per grid cell along each axis; keeps hashing well under a millisecond
+    private static final int SAMPLES_PER_CELL = 4;
+
+    /**
+     * Computes the 64-bit difference hash of a YUV frame.
+     * Reads the Y plane directly, so no bitmap conversion is needed.
+     */
+    public static long dHash(CapturedFrame frame) {
+        byte[] luma = frame.nv21;
+        int rowStride = frame.rowStride;
+        int width = frame.width;
+        int height = frame.height;
+
+        // 1. Average a few samples per cell of the 9x8 grid
+        int[] grid = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (gy * SAMPLES_PER_CELL + sy) * height / (GRID_HEIGHT * SAMPLES_PER_CELL);
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (gx * SAMPLES_PER_CELL + sx) * width / (GRID_WIDTH * SAMPLES_PER_CELL);
+                        sum += luma[y * rowStride + x] & 0xFF;
+                    }
+                }
+                grid[gy * GRID_WIDTH + gx] = sum;
+            }
+        }
+
+        // 2. One bit per horizontal neighbour comparison (8 x 8 = 64 bits)
+        long hash = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                hash <<= 1;
+                if (grid[gy * GRID_WIDTH + gx] > grid[gy * GRID_WIDTH + gx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of differing bits between two hashes.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
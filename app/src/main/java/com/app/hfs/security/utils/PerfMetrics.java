@@ -0,0 +1,95 @@
+package com.hfs.security.utils;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lightweight in-process performance counters.
+ * Hot paths (capture, encryption, alerting) record their duration and the
+ * number of bytes processed under a metric name. The aggregated report is
+ * shown in Settings > Diagnostics and logged under the HFS_Perf tag.
+ */
+public class PerfMetrics {
+
+    private static final String TAG = "HFS_Perf";
+
+    private static final Map<String, Stat> STATS = new TreeMap<>();
+
+    /**
+     * Aggregated samples of one metric.
+     */
+    private static class Stat {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long totalBytes;
+    }
+
+    /**
+     * Records one sample.
+     *
+     * @param name Metric name, e.g. "capture.encrypt".
+     * @param durationNanos Elapsed time of the operation.
+     * @param bytes Bytes processed by the operation (0 if not applicable).
+     */
+    public static void record(String name, long durationNanos, long bytes) {
+        synchronized (STATS) {
+            Stat stat = STATS.get(name);
+            if (stat == null) {
+                stat = new Stat();
+                STATS.put(name, stat);
+            }
+            stat.count++;
+            stat.totalNanos += durationNanos;
+            stat.maxNanos = Math.max(stat.maxNanos, durationNanos);
+            stat.totalBytes += bytes;
+        }
+        Log.d(TAG, name + ": " + (durationNanos / 1000) + " us, " + bytes + " B");
+    }
+
+    /**
+     * Returns a human-readable summary of all recorded metrics:
+     * sample count, average and max time, average bytes and throughput.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (STATS) {
+            if (STATS.isEmpty()) {
+                return "No samples recorded yet.";
+            }
+            for (Map.Entry<String, Stat> entry : STATS.entrySet()) {
+                Stat s = entry.getValue();
+                double avgMs = s.totalNanos / 1e6 / s.count;
+                double maxMs = s.maxNanos / 1e6;
+                sb.append(entry.getKey()).append('\n')
+                        .append(String.format(Locale.US, "  n=%d  avg=%.1f ms  max=%.1f ms", s.count, avgMs, maxMs));
+                if (s.totalBytes > 0) {
+                    sb.append(String.format(Locale.US, "\n  avg=%.1f KB  %.2f MB/s",
+                            s.totalBytes / 1024.0 / s.count, throughputMbPerSec(s.totalBytes, s.totalNanos)));
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Converts a byte count and duration into MB/s.
+     */
+    public static double throughputMbPerSec(long bytes, long nanos) {
+        if (nanos <= 0) return 0;
+        return (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+
+    /**
+     * Clears all recorded samples.
+     */
+    public static void reset() {
+        synchronized (STATS) {
+            STATS.clear();
+        }
+    }
+}
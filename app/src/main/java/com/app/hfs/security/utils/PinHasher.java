@@ -0,0 +1,97 @@
+package com.hfs.security.utils;
+
+import android.util.Base64;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 hashing of the master PIN.
+ * The iteration count is calibrated on the device when a PIN is saved, so
+ * one verification takes about TARGET_VERIFY_MS here: slow enough to make
+ * guessing the short PIN from a stolen settings file expensive, fast enough
+ * for unlocking. Stored as "pbkdf2-sha256$iterations$salt$hash" (Base64).
+ *
+ * Hashing blocks for the target time; never call it on the main thread.
+ */
+public class PinHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    public static final long TARGET_VERIFY_MS = 150;
+    // Bounds for the calibration result, whatever the timer says
+    private static final int MIN_ITERATIONS = 10000;
+    private static final int MAX_ITERATIONS = 5000000;
+    private static final int CALIBRATION_ITERATIONS = 20000;
+
+    /**
+     * Returns the iteration count that makes one hash take about targetMs on this device.
+     */
+    public static int calibrate(long targetMs) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        // 1. Warm up the JIT and the provider, then time a fixed amount of work
+        derive("0000", salt, 1000);
+        long start = System.nanoTime();
+        derive("0000", salt, CALIBRATION_ITERATIONS);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        PerfMetrics.record("pin.calibrate", elapsed, 0);
+
+        // 2. Scale linearly to the target
+        long iterations = CALIBRATION_ITERATIONS * TimeUnit.MILLISECONDS.toNanos(targetMs) / elapsed;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    /**
+     * Hashes the PIN with a new random salt.
+     *
+     * @return The encoded record to store.
+     */
+    public static String hash(String pin, int iterations) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(salt);
+        byte[] hash = derive(pin, salt, iterations);
+        return PREFIX + "$" + iterations
+                + "$" + Base64.encodeToString(salt, Base64.NO_WRAP)
+                + "$" + Base64.encodeToString(hash, Base64.NO_WRAP);
+    }
+
+    /**
+     * Checks the PIN against a stored record, comparing in constant time.
+     *
+     * @return False if the PIN does not match or the record is malformed.
+     */
+    public static boolean verify(String pin, String record) {
+        if (pin == null || pin.isEmpty() || record == null) return false;
+        String[] fields = record.split("\\$");
+        if (fields.length != 4 || !PREFIX.equals(fields[0])) return false;
+        try {
+            int iterations = Integer.parseInt(fields[1]);
+            byte[] salt = Base64.decode(fields[2], Base64.NO_WRAP);
+            byte[] expected = Base64.decode(fields[3], Base64.NO_WRAP);
+
+            long start = System.nanoTime();
+            byte[] actual = derive(pin, salt, iterations);
+            PerfMetrics.record("pin.verify", System.nanoTime() - start, 0);
+            return MessageDigest.isEqual(actual, expected);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String pin, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
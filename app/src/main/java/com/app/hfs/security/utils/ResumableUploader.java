@@ -0,0 +1,264 @@
+package com.hfs.security.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resumable chunked uploader for encrypted evidence files.
+ * Speaks a small subset of the tus 1.0 protocol against client-named
+ * resources (endpoint/uploadId), so no upload URL has to be persisted:
+ *
+ * - HEAD asks the server how many bytes it already holds (404 = none).
+ * - Each chunk is a PATCH with Upload-Offset and Upload-Length, sent as
+ *   POST with X-HTTP-Method-Override because HttpURLConnection has no PATCH.
+ *   The server answers with the new Upload-Offset.
+ *
+ * A failed chunk is retried with exponential backoff; if it keeps failing
+ * the upload throws and a later call resumes from the server's offset.
+ * Connections are kept alive by HttpURLConnection between requests to the
+ * same host, so several files uploaded in a row share one connection.
+ *
+ * Uses only java.net, so it can be exercised against a local mock server.
+ */
+public class ResumableUploader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_RETRIES = 4;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    private static final int TIMEOUT_MS = 30 * 1000;
+    private static final String TUS_VERSION = "1.0.0";
+
+    /**
+     * Transfer counters, accumulated over every upload made with one uploader.
+     */
+    public static class Stats {
+        public int files;
+        public int chunks;
+        public int retries;
+        public long bytesSent;
+        public long bytesSkipped;
+        public long nanos;
+
+        /**
+         * Human-readable summary, e.g. "3 files, 1.2 MB at 850 KB/s, 1 retry".
+         */
+        public String summary() {
+            double seconds = nanos / 1e9;
+            long rateKb = seconds > 0 ? Math.round(bytesSent / 1024.0 / seconds) : 0;
+            return files + (files == 1 ? " file, " : " files, ")
+                    + String.format(Locale.US, "%.1f MB", bytesSent / (1024.0 * 1024.0))
+                    + " at " + rateKb + " KB/s, "
+                    + retries + (retries == 1 ? " retry" : " retries")
+                    + (bytesSkipped > 0 ? ", " + bytesSkipped / 1024 + " KB resumed" : "");
+        }
+    }
+
+    private final String endpoint;
+    private final String token;
+    private final int chunkSize;
+    private final byte[] buffer;
+    private final Stats stats = new Stats();
+
+    /**
+     * @param endpoint Base URL; uploads are created at endpoint/uploadId.
+     * @param token Bearer token, or null/empty for none.
+     * @param chunkSize Bytes per PATCH request.
+     */
+    public ResumableUploader(String endpoint, String token, int chunkSize) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.token = token;
+        this.chunkSize = chunkSize;
+        this.buffer = new byte[chunkSize];
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Uploads a file, continuing from whatever the server already holds.
+     * Blocking.
+     *
+     * @param file The encrypted evidence file.
+     * @param uploadId Stable, URL-safe ID of this upload on the server.
+     * @param metadata Key/value pairs sent as Upload-Metadata.
+     * @throws IOException If a chunk still fails after all retries.
+     */
+    public void upload(File file, String uploadId, Map<String, String> metadata) throws IOException {
+        long start = System.nanoTime();
+        URL url = new URL(endpoint + "/" + uploadId);
+        long length = file.length();
+        String encodedMetadata = encodeMetadata(metadata);
+
+        long offset = withRetries(() -> queryOffset(url));
+        stats.bytesSkipped += offset;
+
+        int stalled = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            while (offset < length) {
+                final long chunkOffset = offset;
+                int count = (int) Math.min(chunkSize, length - chunkOffset);
+                raf.seek(chunkOffset);
+                raf.readFully(buffer, 0, count);
+
+                offset = withRetries(() -> sendChunk(url, chunkOffset, count, length, encodedMetadata));
+                if (offset <= chunkOffset) {
+                    // The server did not accept the chunk; resynchronize with its offset
+                    if (++stalled > MAX_CHUNK_RETRIES) {
+                        throw new IOException("Server is not accepting chunks at offset " + chunkOffset);
+                    }
+                    stats.retries++;
+                    offset = withRetries(() -> queryOffset(url));
+                } else {
+                    stalled = 0;
+                    stats.chunks++;
+                    stats.bytesSent += offset - chunkOffset;
+                }
+            }
+        }
+
+        stats.files++;
+        stats.nanos += System.nanoTime() - start;
+        PerfMetrics.record("upload.file", System.nanoTime() - start, length);
+    }
+
+    private long queryOffset(URL url) throws IOException {
+        HttpURLConnection conn = open(url, "HEAD");
+        try {
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) return 0;
+            if (code / 100 != 2) throw new IOException("HEAD failed: HTTP " + code);
+            return parseOffset(conn);
+        } finally {
+            drain(conn);
+        }
+    }
+
+    /**
+     * Sends one chunk from the buffer.
+     *
+     * @return The offset reported by the server after the chunk.
+     */
+    private long sendChunk(URL url, long offset, int count, long length, String metadata) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection conn = open(url, "POST");
+        try {
+            conn.setRequestProperty("X-HTTP-Method-Override", "PATCH");
+            conn.setRequestProperty("Content-Type", "application/offset+octet-stream");
+            conn.setRequestProperty("Upload-Offset", String.valueOf(offset));
+            conn.setRequestProperty("Upload-Length", String.valueOf(length));
+            if (offset == 0 && !metadata.isEmpty()) {
+                conn.setRequestProperty("Upload-Metadata", metadata);
+            }
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(count);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(buffer, 0, count);
+            }
+
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_CONFLICT) {
+                // Offset mismatch (e.g. a previous chunk landed after all); caller resyncs
+                return offset;
+            }
+            if (code / 100 != 2) throw new IOException("PATCH failed: HTTP " + code);
+            PerfMetrics.record("upload.chunk", System.nanoTime() - start, count);
+            return parseOffset(conn);
+        } finally {
+            drain(conn);
+        }
+    }
+
+    private interface Request {
+        long run() throws IOException;
+    }
+
+    /**
+     * Runs a request, retrying I/O failures with exponential backoff.
+     */
+    private long withRetries(Request request) throws IOException {
+        IOException last = null;
+        for (int attempt = 0; attempt <= MAX_CHUNK_RETRIES; attempt++) {
+            if (attempt > 0) {
+                stats.retries++;
+                PerfMetrics.record("upload.retry", 0, 0);
+                try {
+                    Thread.sleep(RETRY_BASE_DELAY_MS << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Upload interrupted", e);
+                }
+            }
+            try {
+                return request.run();
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    private HttpURLConnection open(URL url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(TIMEOUT_MS);
+        conn.setReadTimeout(TIMEOUT_MS);
+        conn.setUseCaches(false);
+        conn.setRequestProperty("Tus-Resumable", TUS_VERSION);
+        if (token != null && !token.isEmpty()) {
+            conn.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        return conn;
+    }
+
+    private static long parseOffset(HttpURLConnection conn) throws IOException {
+        String value = conn.getHeaderField("Upload-Offset");
+        if (value == null) throw new IOException("Response without Upload-Offset");
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Upload-Offset: " + value);
+        }
+    }
+
+    /**
+     * Reads the rest of the response so the connection can be reused for the next request.
+     */
+    private static void drain(HttpURLConnection conn) {
+        try {
+            InputStream in = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            if (in != null) {
+                byte[] scratch = new byte[1024];
+                while (in.read(scratch) != -1) {
+                    // discard
+                }
+                in.close();
+            }
+        } catch (IOException ignored) {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Encodes metadata as tus expects: "key base64(value)" pairs separated by commas.
+     */
+    private static String encodeMetadata(Map<String, String> metadata) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if (entry.getValue() == null) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(entry.getKey()).append(' ').append(Base64.getEncoder()
+                    .encodeToString(entry.getValue().getBytes(StandardCharsets.UTF_8)));
+        }
+        return sb.toString();
+    }
+}
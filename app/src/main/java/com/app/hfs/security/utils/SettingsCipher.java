@@ -0,0 +1,179 @@
+package com.hfs.security.utils;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.AtomicFile;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encryption at rest for the settings file.
+ * Settings are sealed with AES-256-GCM under a random data key. The data key
+ * is stored next to them, wrapped (AES-GCM) by a key that lives in the
+ * Android Keystore and never leaves it. Unwrapping is one Keystore call and
+ * happens once per instance, i.e. once per process for the settings store;
+ * sealing and opening then run in software without Keystore round trips.
+ * An existing key file is never replaced: if it cannot be unwrapped the
+ * error is thrown, and only a confirmed loss (KeyLostException) lets the
+ * caller start over.
+ *
+ * Key file : IV (12) | wrapped data key + tag
+ * Sealed   : "HFSX" | version (1) | IV (12) | ciphertext + tag
+ */
+class SettingsCipher {
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String WRAP_KEY_ALIAS = "hfs_settings_wrap_key";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int DATA_KEY_BYTES = 32;
+    private static final int IV_SIZE = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final byte[] MAGIC = {'H', 'F', 'S', 'X'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + IV_SIZE;
+
+    /**
+     * The data key is gone for good: the Keystore no longer has the wrapping
+     * key (e.g. app data restored to another device) or the key file was deleted.
+     */
+    static class KeyLostException extends IOException {
+        KeyLostException(String message) {
+            super(message);
+        }
+    }
+
+    private final AtomicFile keyFile;
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey dataKey;
+
+    SettingsCipher(File keyFile) {
+        this.keyFile = new AtomicFile(keyFile);
+    }
+
+    /**
+     * Returns true if the bytes were produced by seal().
+     */
+    static boolean isSealed(byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC);
+    }
+
+    byte[] seal(byte[] plain) throws IOException {
+        try {
+            byte[] iv = new byte[IV_SIZE];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getDataKey(true), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).put((byte) VERSION).put(iv).array();
+            cipher.updateAAD(header, 0, MAGIC.length + 1);
+            byte[] sealed = cipher.doFinal(plain);
+            return ByteBuffer.allocate(HEADER_SIZE + sealed.length).put(header).put(sealed).array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Settings encryption failed", e);
+        }
+    }
+
+    byte[] open(byte[] bytes) throws IOException {
+        if (!isSealed(bytes)) throw new IOException("Settings file is not encrypted");
+        int version = bytes[MAGIC.length] & 0xFF;
+        if (version != VERSION) throw new IOException("Unsupported settings encryption " + version);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getDataKey(false),
+                    new GCMParameterSpec(TAG_BITS, bytes, MAGIC.length + 1, IV_SIZE));
+            cipher.updateAAD(bytes, 0, MAGIC.length + 1);
+            return cipher.doFinal(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Settings decryption failed", e);
+        }
+    }
+
+    /**
+     * Returns the data key, unwrapping it on first use.
+     *
+     * @param create Create the key if there is no key file yet (sealing only;
+     *               data to open needs the key it was sealed with).
+     * @throws KeyLostException If the key can never be recovered.
+     */
+    synchronized SecretKey getDataKey(boolean create) throws GeneralSecurityException, IOException {
+        if (dataKey != null) return dataKey;
+
+        long start = System.nanoTime();
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        boolean hasWrapKey = keyStore.containsAlias(WRAP_KEY_ALIAS);
+        byte[] wrapped = readKeyFile();
+        if (wrapped != null) {
+            if (!hasWrapKey) throw new KeyLostException("Settings wrap key is missing from the Keystore");
+            // Any other failure may be transient: it is thrown and the key file is kept for the next attempt
+            SecretKey wrapKey = (SecretKey) keyStore.getKey(WRAP_KEY_ALIAS, null);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, wrapKey, new GCMParameterSpec(TAG_BITS, wrapped, 0, IV_SIZE));
+            dataKey = new SecretKeySpec(cipher.doFinal(wrapped, IV_SIZE, wrapped.length - IV_SIZE), "AES");
+            PerfMetrics.record("settings.key_unwrap", System.nanoTime() - start, 0);
+            return dataKey;
+        }
+        if (!create) throw new KeyLostException("Settings key file is missing");
+
+        // First start: create a data key and store it wrapped; the Keystore chooses the IV
+        SecretKey wrapKey = hasWrapKey ? (SecretKey) keyStore.getKey(WRAP_KEY_ALIAS, null) : generateWrapKey();
+        byte[] raw = new byte[DATA_KEY_BYTES];
+        random.nextBytes(raw);
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, wrapKey);
+        byte[] iv = cipher.getIV();
+        byte[] sealedKey = cipher.doFinal(raw);
+
+        FileOutputStream out = keyFile.startWrite();
+        try {
+            out.write(iv);
+            out.write(sealedKey);
+            keyFile.finishWrite(out);
+        } catch (IOException e) {
+            keyFile.failWrite(out);
+            throw e;
+        }
+        dataKey = new SecretKeySpec(raw, "AES");
+        return dataKey;
+    }
+
+    private byte[] readKeyFile() throws IOException {
+        try {
+            return keyFile.readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static SecretKey generateWrapKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(WRAP_KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    /**
+     * Deletes the wrapped data key file, after a KeyLostException.
+     */
+    void deleteKeyFile() {
+        keyFile.delete();
+    }
+}
@@ -0,0 +1,736 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKeys;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typed key-value store behind HFSDatabaseHelper.
+ * The whole state lives in an immutable in-memory snapshot, so reads are a
+ * single volatile load and take no lock. Changes are grouped in an Editor
+ * and published as one new snapshot; the file is then rewritten atomically
+ * (write to a temporary file, fsync, rename) with a compact binary encoding:
+ *
+ *   MAGIC, FORMAT_VERSION, entry count,
+ *   per entry: key, type tag, payload length, payload
+ *
+ * Entries with an unknown type tag are skipped using their length, so an
+ * older build can still read a file written by a newer one. The encoded
+ * state is encrypted as a whole (see SettingsCipher) and decrypted only
+ * when the store loads, so reads never pay for cryptography.
+ *
+ * Bursts of small edits (e.g. checkbox taps) use applyDebounced(), which
+ * publishes each edit at once but writes the file only once they pause.
+ *
+ * A file that cannot be read is never overwritten: the store stays
+ * unavailable (empty, writes refused) until retryLoad() succeeds. Only a
+ * confirmed loss of the encryption key starts over with new settings, and
+ * KEY_RESET_NOTICE is then set so the user can be told.
+ */
+public class SettingsStore {
+
+    private static final String TAG = "HFS_SettingsStore";
+    private static final String FILE_NAME = "hfs_settings.bin";
+    private static final String KEY_FILE_NAME = "hfs_settings.key";
+    // Set after the settings were lost with their encryption key; cleared once the user was told
+    public static final String KEY_RESET_NOTICE = "settings_reset_notice";
+    // Key written by benchmark()
+    private static final String BENCH_KEY = "bench_key";
+    // Every file benchmark() creates, in shared_prefs and the cache directory, starts with this
+    private static final String BENCH_FILE_PREFIX = "hfs_settings_bench";
+
+    private static final int MAGIC = 0x48465353; // "HFSS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_STRING = 4;
+    private static final byte TYPE_STRING_SET = 5;
+
+    private static SettingsStore instance;
+    private final AtomicFile file;
+    private final SettingsCipher cipher;
+    private volatile Map<String, Object> snapshot;
+
+    // Guards publishing a new snapshot; never held during disk I/O
+    private final Object editLock = new Object();
+    private long memoryVersion;
+    // Guards the file; writes of older snapshots are skipped (coalesced)
+    private final Object diskLock = new Object();
+    private long diskVersion;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    // Pending write of applyDebounced(), guarded by editLock
+    private ScheduledFuture<?> debouncedWrite;
+    private long debounceStartedAt;
+    // A continuous burst is still written at least every this many delays
+    private static final int MAX_DEBOUNCE_DELAYS = 4;
+    // How long close() waits for a write already running on the writer thread
+    private static final long WRITER_SHUTDOWN_TIMEOUT_MS = 5000;
+    // Set by load() when the file must be rewritten (e.g. a plaintext file to encrypt)
+    private boolean rewriteAfterLoad;
+    // Why the file could not be read; null while the store is available
+    private volatile IOException loadError;
+
+    /**
+     * @param cipher Encrypts the file, or null to store it in plaintext (benchmarks only).
+     */
+    SettingsStore(File file, SettingsCipher cipher) {
+        this.file = new AtomicFile(file);
+        this.cipher = cipher;
+        this.snapshot = load();
+        if (rewriteAfterLoad) {
+            // Queued only now, so the writer never sees a null snapshot
+            memoryVersion++;
+            writer.execute(this::writeToDisk);
+        }
+    }
+
+    public static synchronized SettingsStore getInstance(Context context) {
+        if (instance == null) {
+            File dir = context.getApplicationContext().getFilesDir();
+            instance = new SettingsStore(new File(dir, FILE_NAME), new SettingsCipher(new File(dir, KEY_FILE_NAME)));
+        }
+        return instance;
+    }
+
+    // --- LOCK-FREE READS ---
+
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = snapshot.get(key);
+        return value instanceof Boolean ? (Boolean) value : defValue;
+    }
+
+    public int getInt(String key, int defValue) {
+        Object value = snapshot.get(key);
+        return value instanceof Integer ? (Integer) value : defValue;
+    }
+
+    public long getLong(String key, long defValue) {
+        Object value = snapshot.get(key);
+        return value instanceof Long ? (Long) value : defValue;
+    }
+
+    public String getString(String key, String defValue) {
+        Object value = snapshot.get(key);
+        return value instanceof String ? (String) value : defValue;
+    }
+
+    /**
+     * Returns the stored set (read-only), or defValue if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValue) {
+        Object value = snapshot.get(key);
+        return value instanceof Set ? (Set<String>) value : defValue;
+    }
+
+    public boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    /**
+     * Returns false while the settings file could not be read. The store is
+     * then empty and refuses to write, so the unreadable file is kept.
+     */
+    public boolean isAvailable() {
+        return loadError == null;
+    }
+
+    /**
+     * Reads the settings file again after it could not be read. Changes made
+     * while the store was unavailable were never saved and are discarded.
+     *
+     * @return True if the store is available now.
+     */
+    public boolean retryLoad() {
+        synchronized (diskLock) {
+            if (loadError == null) return true;
+            loadError = null;
+            rewriteAfterLoad = false;
+            Map<String, Object> state = load();
+            if (loadError != null) return false;
+            synchronized (editLock) {
+                snapshot = state;
+                memoryVersion++;
+                if (!rewriteAfterLoad) diskVersion = memoryVersion;
+            }
+        }
+        if (rewriteAfterLoad) writer.execute(this::writeToDisk);
+        return true;
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Writes any debounced changes now, in the background.
+     */
+    public void flush() {
+        writer.execute(this::writeToDisk);
+    }
+
+    /**
+     * Writes any pending changes and stops the writer thread. The store must
+     * not be edited afterwards; only stores created for benchmark() are closed.
+     */
+    void close() {
+        writer.shutdown();
+        synchronized (editLock) {
+            if (debouncedWrite != null) debouncedWrite.cancel(false);
+        }
+        writeToDisk();
+        try {
+            writer.awaitTermination(WRITER_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A batch of changes, published together as one snapshot and one file write.
+     */
+    public class Editor {
+        // A null value removes the key
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Editor putString(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Editor putStringSet(String key, Set<String> value) {
+            changes.put(key, value == null ? null : Collections.unmodifiableSet(new HashSet<>(value)));
+            return this;
+        }
+
+        public Editor remove(String key) {
+            changes.put(key, null);
+            return this;
+        }
+
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        /**
+         * Publishes the changes at once and writes them to disk in the background.
+         */
+        public void apply() {
+            publish(this);
+            writer.execute(SettingsStore.this::writeToDisk);
+        }
+
+        /**
+         * Publishes the changes at once and writes them to disk when no further
+         * debounced changes arrived for delayMs.
+         */
+        public void applyDebounced(long delayMs) {
+            publish(this);
+            scheduleDebouncedWrite(delayMs);
+        }
+
+        /**
+         * Publishes the changes and blocks until they are on disk.
+         *
+         * @return False if the file could not be written.
+         */
+        public boolean commit() {
+            publish(this);
+            return writeToDisk();
+        }
+    }
+
+    private void publish(Editor editor) {
+        synchronized (editLock) {
+            Map<String, Object> next = editor.clear ? new HashMap<>() : new HashMap<>(snapshot);
+            for (Map.Entry<String, Object> change : editor.changes.entrySet()) {
+                if (change.getValue() == null) {
+                    next.remove(change.getKey());
+                } else {
+                    next.put(change.getKey(), change.getValue());
+                }
+            }
+            snapshot = Collections.unmodifiableMap(next);
+            memoryVersion++;
+        }
+    }
+
+    private void scheduleDebouncedWrite(long delayMs) {
+        synchronized (editLock) {
+            long now = SystemClock.uptimeMillis();
+            if (debouncedWrite != null && !debouncedWrite.isDone()) {
+                debouncedWrite.cancel(false);
+            } else {
+                debounceStartedAt = now;
+            }
+            long delay = Math.min(delayMs, debounceStartedAt + MAX_DEBOUNCE_DELAYS * delayMs - now);
+            debouncedWrite = writer.schedule(this::writeToDisk, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the latest snapshot unless it already is on disk.
+     */
+    private boolean writeToDisk() {
+        synchronized (diskLock) {
+            Map<String, Object> state;
+            long version;
+            synchronized (editLock) {
+                state = snapshot;
+                version = memoryVersion;
+            }
+            if (version <= diskVersion) return true;
+            if (loadError != null) {
+                // Writing now would replace the settings that could not be read
+                Log.w(TAG, "Settings unavailable, not writing: " + loadError.getMessage());
+                return false;
+            }
+
+            long start = System.nanoTime();
+            FileOutputStream out = null;
+            try {
+                byte[] bytes = encode(state);
+                if (cipher != null) bytes = cipher.seal(bytes);
+                out = file.startWrite();
+                out.write(bytes);
+                file.finishWrite(out);
+                diskVersion = version;
+                PerfMetrics.record("settings.write", System.nanoTime() - start, bytes.length);
+                return true;
+            } catch (IOException e) {
+                if (out != null) file.failWrite(out);
+                Log.e(TAG, "Failed to write settings: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private Map<String, Object> load() {
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = file.readFully();
+            Map<String, Object> state;
+            if (cipher == null || SettingsCipher.isSealed(bytes)) {
+                state = decode(cipher != null ? cipher.open(bytes) : bytes);
+            } else {
+                // Plaintext file of an older version: encrypt it right away
+                state = decode(bytes);
+                rewriteAfterLoad = true;
+            }
+            PerfMetrics.record("settings.load", System.nanoTime() - start, bytes.length);
+            return state;
+        } catch (FileNotFoundException e) {
+            return Collections.emptyMap();
+        } catch (SettingsCipher.KeyLostException e) {
+            // The file can never be decrypted again: start over, with a notice for the user
+            Log.e(TAG, "Settings key lost, starting with new settings: " + e.getMessage());
+            file.delete();
+            cipher.deleteKeyFile();
+            rewriteAfterLoad = true;
+            return Collections.singletonMap(KEY_RESET_NOTICE, true);
+        } catch (IOException e) {
+            // Corruption or a Keystore failure that may be transient: keep the file and retry later
+            Log.e(TAG, "Unreadable settings file, keeping it: " + e.getMessage());
+            loadError = e;
+            return Collections.emptyMap();
+        }
+    }
+
+    // --- BINARY ENCODING ---
+
+    static byte[] encode(Map<String, Object> state) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        DataOutputStream value = new DataOutputStream(payload);
+
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(state.size());
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            payload.reset();
+            byte type = writeValue(value, entry.getValue());
+            out.writeUTF(entry.getKey());
+            out.writeByte(type);
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+            return TYPE_BOOLEAN;
+        } else if (value instanceof Integer) {
+            out.writeInt((Integer) value);
+            return TYPE_INT;
+        } else if (value instanceof Long) {
+            out.writeLong((Long) value);
+            return TYPE_LONG;
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+            return TYPE_STRING;
+        } else if (value instanceof Set) {
+            Set<String> set = (Set<String>) value;
+            out.writeInt(set.size());
+            for (String item : set) {
+                writeString(out, item);
+            }
+            return TYPE_STRING_SET;
+        }
+        throw new IOException("Unsupported value type " + value.getClass().getName());
+    }
+
+    // Length-prefixed UTF-8; unlike writeUTF not limited to 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static Map<String, Object> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) throw new IOException("Not a settings file");
+        int version = in.readUnsignedByte();
+        if (version > FORMAT_VERSION) throw new IOException("Unsupported settings version " + version);
+
+        int count = in.readInt();
+        Map<String, Object> state = new HashMap<>(Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            byte type = in.readByte();
+            int length = in.readInt();
+            switch (type) {
+                case TYPE_BOOLEAN:
+                    state.put(key, in.readBoolean());
+                    break;
+                case TYPE_INT:
+                    state.put(key, in.readInt());
+                    break;
+                case TYPE_LONG:
+                    state.put(key, in.readLong());
+                    break;
+                case TYPE_STRING:
+                    state.put(key, readString(in));
+                    break;
+                case TYPE_STRING_SET:
+                    int size = in.readInt();
+                    Set<String> set = new HashSet<>(Math.max(16, size * 2));
+                    for (int j = 0; j < size; j++) {
+                        set.add(readString(in));
+                    }
+                    state.put(key, Collections.unmodifiableSet(set));
+                    break;
+                default:
+                    // Written by a newer build: skip it
+                    in.readFully(new byte[length]);
+                    break;
+            }
+        }
+        return Collections.unmodifiableMap(state);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- BENCHMARK ---
+
+    /**
+     * Timings of one settings backend in benchmark().
+     */
+    private static class BenchResult {
+        final String name;
+        long loadNanos;
+        long writeNanos;
+        long fileBytes;
+        double readNanos;
+
+        BenchResult(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Compares this store, plain and encrypted, with SharedPreferences and
+     * EncryptedSharedPreferences, using synthetic settings shaped like the
+     * current ones (see syntheticCopy); no real value is ever written: cold
+     * load time, bytes rewritten per change (write amplification) and the
+     * cost of a read. The encrypted store's cold load includes unwrapping its
+     * data key. Creates the EncryptedSharedPreferences master key in the
+     * Keystore if it does not exist yet.
+     *
+     * @return A human-readable summary.
+     */
+    public static String benchmark(Context context) throws IOException, GeneralSecurityException {
+        // Some backends are plaintext, and a crash would leave their files behind
+        Map<String, Object> current = syntheticCopy(getInstance(context).snapshot);
+        String prefsName = BENCH_FILE_PREFIX;
+        String encryptedName = BENCH_FILE_PREFIX + "_encrypted";
+        File prefsDir = new File(context.getDataDir(), "shared_prefs");
+        File plainFile = new File(context.getCacheDir(), BENCH_FILE_PREFIX + "_plain.bin");
+        File sealedFile = new File(context.getCacheDir(), BENCH_FILE_PREFIX + ".bin");
+        File keyFile = new File(context.getCacheDir(), BENCH_FILE_PREFIX + ".key");
+        String masterKey = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
+        // Each store owns a writer thread, so every one created here is closed again
+        SettingsStore plain = null;
+        SettingsStore sealed = null;
+        // Files of a run that was killed, e.g. a sealed store and its key
+        deleteBenchmarkFiles(context, prefsDir);
+
+        try {
+            // 1. Same synthetic settings in every backend
+            SharedPreferences prefs = context.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+            SharedPreferences encrypted = openEncryptedPrefs(context, encryptedName, masterKey);
+            plain = new SettingsStore(plainFile, null);
+            sealed = new SettingsStore(sealedFile, new SettingsCipher(keyFile));
+            fill(prefs, current);
+            fill(encrypted, current);
+            fill(plain, current);
+            fill(sealed, current);
+
+            // 2. Cold load: never-opened copies of the XML files versus decoding the binary files
+            BenchResult prefsResult = new BenchResult("prefs");
+            String coldName = prefsName + "_" + System.nanoTime();
+            copyFile(new File(prefsDir, prefsName + ".xml"), new File(prefsDir, coldName + ".xml"));
+            long start = System.nanoTime();
+            context.getSharedPreferences(coldName, Context.MODE_PRIVATE).getAll();
+            prefsResult.loadNanos = System.nanoTime() - start;
+            context.deleteSharedPreferences(coldName);
+
+            BenchResult encryptedResult = new BenchResult("encrypted prefs");
+            coldName = encryptedName + "_" + System.nanoTime();
+            copyFile(new File(prefsDir, encryptedName + ".xml"), new File(prefsDir, coldName + ".xml"));
+            start = System.nanoTime();
+            openEncryptedPrefs(context, coldName, masterKey).getAll();
+            encryptedResult.loadNanos = System.nanoTime() - start;
+            context.deleteSharedPreferences(coldName);
+
+            BenchResult plainResult = new BenchResult("store");
+            start = System.nanoTime();
+            SettingsStore cold = new SettingsStore(plainFile, null);
+            plainResult.loadNanos = System.nanoTime() - start;
+            cold.close();
+
+            BenchResult sealedResult = new BenchResult("encrypted store");
+            start = System.nanoTime();
+            cold = new SettingsStore(sealedFile, new SettingsCipher(keyFile));
+            sealedResult.loadNanos = System.nanoTime() - start;
+            cold.close();
+
+            // 3. Single-key updates (every backend rewrites its whole file) and reads
+            benchPrefs(prefs, prefsResult, new File(prefsDir, prefsName + ".xml"), 100000);
+            // Every read of EncryptedSharedPreferences decrypts, so fewer are enough
+            benchPrefs(encrypted, encryptedResult, new File(prefsDir, encryptedName + ".xml"), 1000);
+            benchStore(plain, plainResult, plainFile, 100000);
+            benchStore(sealed, sealedResult, sealedFile, 100000);
+
+            StringBuilder report = new StringBuilder(String.format(Locale.US,
+                    "Settings (%d keys): cold load / 1-key write / file / read", current.size()));
+            for (BenchResult result : new BenchResult[] {prefsResult, encryptedResult, plainResult, sealedResult}) {
+                report.append(String.format(Locale.US, "\n  %s: %.2f ms / %.2f ms / %d B / %.0f ns",
+                        result.name, result.loadNanos / 1e6, result.writeNanos / 1e6,
+                        result.fileBytes, result.readNanos));
+                String metric = "bench.settings." + result.name.replace(' ', '_');
+                PerfMetrics.record(metric + ".load", result.loadNanos, result.fileBytes);
+                PerfMetrics.record(metric + ".write", result.writeNanos, result.fileBytes);
+            }
+            report.append(String.format(Locale.US,
+                    "\n  save button (2 keys): prefs 2 writes / %d B, encrypted store 1 write / %d B",
+                    2 * prefsResult.fileBytes, sealedResult.fileBytes));
+            return report.toString();
+        } finally {
+            // Closed before the files are deleted, so no queued write recreates them
+            if (plain != null) plain.close();
+            if (sealed != null) sealed.close();
+            deleteBenchmarkFiles(context, prefsDir);
+        }
+    }
+
+    /**
+     * Deletes every file benchmark() creates, including the cold-load copies
+     * and the AtomicFile backups, whichever run left them behind.
+     */
+    private static void deleteBenchmarkFiles(Context context, File prefsDir) {
+        String[] prefs = prefsDir.list();
+        if (prefs != null) {
+            for (String name : prefs) {
+                if (name.startsWith(BENCH_FILE_PREFIX) && name.endsWith(".xml")) {
+                    context.deleteSharedPreferences(name.substring(0, name.length() - ".xml".length()));
+                }
+            }
+        }
+        File[] cached = context.getCacheDir().listFiles();
+        if (cached != null) {
+            for (File file : cached) {
+                if (file.getName().startsWith(BENCH_FILE_PREFIX)) file.delete();
+            }
+        }
+    }
+
+    private static SharedPreferences openEncryptedPrefs(Context context, String name, String masterKey)
+            throws IOException, GeneralSecurityException {
+        return EncryptedSharedPreferences.create(name, masterKey, context,
+                EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
+    }
+
+    private static void benchPrefs(SharedPreferences prefs, BenchResult result, File file, int reads) {
+        final int writes = 20;
+        long start = System.nanoTime();
+        for (int i = 1; i <= writes; i++) {
+            prefs.edit().putString(BENCH_KEY, String.valueOf(i)).commit();
+        }
+        result.writeNanos = (System.nanoTime() - start) / writes;
+        result.fileBytes = file.length();
+
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            prefs.getString(BENCH_KEY, null);
+        }
+        result.readNanos = (double) (System.nanoTime() - start) / reads;
+    }
+
+    private static void benchStore(SettingsStore store, BenchResult result, File file, int reads) {
+        final int writes = 20;
+        long start = System.nanoTime();
+        for (int i = 1; i <= writes; i++) {
+            store.edit().putString(BENCH_KEY, String.valueOf(i)).commit();
+        }
+        result.writeNanos = (System.nanoTime() - start) / writes;
+        result.fileBytes = file.length();
+
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            store.getString(BENCH_KEY, null);
+        }
+        result.readNanos = (double) (System.nanoTime() - start) / reads;
+    }
+
+    @SuppressWarnings("unchecked")
+    /**
+     * Returns settings with the same keys, types and value sizes as the given
+     * ones, but random values, so benchmarks never copy the PIN hash, face
+     * template, trusted number or upload token.
+     */
+    private static Map<String, Object> syntheticCopy(Map<String, Object> state) {
+        Random random = new Random();
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                value = random.nextBoolean();
+            } else if (value instanceof Integer) {
+                value = random.nextInt();
+            } else if (value instanceof Long) {
+                value = random.nextLong();
+            } else if (value instanceof String) {
+                value = randomString(random, ((String) value).length());
+            } else if (value instanceof Set) {
+                Set<String> set = new HashSet<>();
+                for (Object item : (Set<?>) value) {
+                    set.add(randomString(random, String.valueOf(item).length()));
+                }
+                value = set;
+            }
+            copy.put(entry.getKey(), value);
+        }
+        return copy;
+    }
+
+    private static String randomString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static void fill(SharedPreferences prefs, Map<String, Object> state) {
+        SharedPreferences.Editor editor = prefs.edit().clear();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else if (value instanceof Set) {
+                editor.putStringSet(key, (Set<String>) value);
+            }
+        }
+        editor.putString(BENCH_KEY, "0").commit();
+    }
+
+    private static void fill(SettingsStore store, Map<String, Object> state) {
+        Editor editor = store.edit().clear();
+        editor.changes.putAll(state);
+        editor.putString(BENCH_KEY, "0").commit();
+    }
+
+    private static void copyFile(File from, File to) throws IOException {
+        try (FileInputStream in = new FileInputStream(from); FileOutputStream out = new FileOutputStream(to)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
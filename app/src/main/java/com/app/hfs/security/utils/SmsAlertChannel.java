@@ -0,0 +1,43 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+
+import com.hfs.security.models.Alert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Sends alerts to the trusted number by SMS. Sent and delivery reports of
+ * every part are delivered asynchronously through AlertStatusReceiver.
+ */
+public class SmsAlertChannel implements AlertChannel {
+
+    private final Context appContext;
+
+    public SmsAlertChannel(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    @Override
+    public String getName() {
+        return "sms";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        String trustedNumber = HFSDatabaseHelper.getInstance(appContext).getTrustedNumber();
+        return trustedNumber != null && !trustedNumber.isEmpty();
+    }
+
+    @Override
+    public int send(Alert alert, String message, int attempt) throws IOException {
+        String trustedNumber = HFSDatabaseHelper.getInstance(appContext).getTrustedNumber();
+        ArrayList<String> parts = SmsHelper.divideMessage(appContext, message);
+        if (parts == null) throw new IOException("SMS service unavailable");
+        if (!SmsHelper.sendTrackedAlert(appContext, trustedNumber, parts, alert.getId(), attempt)) {
+            throw new IOException("SMS service rejected the alert");
+        }
+        return parts.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.hfs.security.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parser for remote SMS commands.
+ * Grammar (tokens separated by whitespace, keywords case-insensitive):
+ *
+ *   HFS LOCK          <PIN>
+ *   HFS UNLOCK        <PIN>
+ *   HFS STATUS        <PIN>
+ *   HFS WIPE-EVIDENCE <PIN>
+ *   HFS ARM           <PIN> <package>[,<package>...]
+ *
+ * The whole message must match: extra tokens, a missing PIN or a PIN that
+ * merely appears somewhere in the text are all rejected.
+ */
+public class SmsCommandParser {
+
+    private static final String PREFIX = "HFS";
+    private static final Pattern PACKAGE_NAME =
+            Pattern.compile("[A-Za-z][A-Za-z0-9_]*(\\.[A-Za-z][A-Za-z0-9_]*)+");
+
+    public enum Type {
+        LOCK("LOCK", false),
+        UNLOCK("UNLOCK", false),
+        STATUS("STATUS", false),
+        WIPE_EVIDENCE("WIPE-EVIDENCE", false),
+        ARM("ARM", true);
+
+        public final String keyword;
+        final boolean hasArgument;
+
+        Type(String keyword, boolean hasArgument) {
+            this.keyword = keyword;
+            this.hasArgument = hasArgument;
+        }
+
+        static Type fromKeyword(String token) {
+            for (Type type : values()) {
+                if (type.keyword.equalsIgnoreCase(token)) return type;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A syntactically valid command. The PIN is not verified yet
+     * (see HFSDatabaseHelper.verifyMasterPin).
+     */
+    public static class Command {
+        public final Type type;
+        public final String pin;
+        // Only set for commands that take one (ARM)
+        public final String argument;
+
+        Command(Type type, String pin, String argument) {
+            this.type = type;
+            this.pin = pin;
+            this.argument = argument;
+        }
+    }
+
+    /**
+     * Parses a complete (reassembled) message body.
+     *
+     * @return The command, or null if the message is not a well-formed HFS command.
+     */
+    public static Command parse(String body) {
+        if (body == null) return null;
+        String[] tokens = body.trim().split("\\s+");
+        if (tokens.length < 3 || !PREFIX.equalsIgnoreCase(tokens[0])) return null;
+
+        Type type = Type.fromKeyword(tokens[1]);
+        if (type == null || tokens.length != (type.hasArgument ? 4 : 3)) return null;
+
+        return new Command(type, tokens[2], type.hasArgument ? tokens[3] : null);
+    }
+
+    /**
+     * Splits the ARM argument into package names.
+     *
+     * @return The package names, or null if any of them is not a valid package name.
+     */
+    public static List<String> parsePackages(String argument) {
+        List<String> packages = new ArrayList<>();
+        for (String name : argument.split(",")) {
+            if (!PACKAGE_NAME.matcher(name).matches()) return null;
+            if (!packages.contains(name)) packages.add(name);
+        }
+        return packages;
+    }
+}
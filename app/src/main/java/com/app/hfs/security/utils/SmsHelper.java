@@ -1,11 +1,16 @@
 package com.hfs.security.utils;
 
+import android.app.PendingIntent;
 import android.content.Context;
+import android.location.Location;
 import android.telephony.SmsManager;
 import android.util.Log;
-import android.widget.Toast;
+
+import com.hfs.security.models.Alert;
+import com.hfs.security.receivers.AlertStatusReceiver;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Locale;
 
@@ -13,90 +18,130 @@ import java.util.Locale;
  * Automatic Alert Utility (Phase 4).
  * Handles the background transmission of alert messages to the 
  * owner's secondary trusted phone number.
+ * Alerts are queued and retried by AlertDispatcher; this class only
+ * formats them and hands them to the SMS service.
  */
 public class SmsHelper {
 
     private static final String TAG = "HFS_SmsHelper";
 
     /**
-     * Constructs and sends a security alert SMS to the trusted number.
-     * 
-     * @param context App context.
-     * @param targetAppName The name of the protected app that was accessed (e.g., "WhatsApp").
+     * Constructs the alert text for a queued alert. A single incident keeps the
+     * classic format; merged incidents are summarized in one message.
+     *
+     * @param alert The queued alert (see IntrusionIndexHelper.enqueueAlert).
+     * @param location The cached last-known location, or null to leave it out.
+     * @param now Current time, used to state the age of the location.
      */
-    public static void sendAlertSms(Context context, String targetAppName) {
-        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
-        
-        // Retrieve the trusted secondary phone number from the database
-        String trustedNumber = db.getTrustedNumber();
-        
-        // Safety check: Don't attempt to send if no number is configured
-        if (trustedNumber == null || trustedNumber.isEmpty()) {
-            Log.e(TAG, "SMS Alert failed: No trusted number configured in settings.");
-            return;
-        }
-
-        // Generate current timestamp for the alert message
-        String currentTime = new SimpleDateFormat("dd-MMM-yyyy hh:mm a", Locale.getDefault()).format(new Date());
+    public static String buildAlertMessage(Alert alert, Location location, long now) {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MMM-yyyy hh:mm a", Locale.getDefault());
+        String firstTime = format.format(new Date(alert.getFirstAt()));
 
         // Construct the message body as per the requirements document
         // ⚠ ALERT: Someone accessed your [App]
         // Time: [Timestamp]
         // Action: App locked + Intruder photo saved
         StringBuilder messageBuilder = new StringBuilder();
-        messageBuilder.append("⚠ ALERT: Someone accessed your ").append(targetAppName).append("\n");
-        messageBuilder.append("Time: ").append(currentTime).append("\n");
-        messageBuilder.append("Action: App locked + Intruder photo saved");
+        if (alert.getIncidentCount() <= 1) {
+            messageBuilder.append("⚠ ALERT: Someone accessed your ").append(alert.getAppNames()).append("\n");
+            messageBuilder.append("Time: ").append(firstTime).append("\n");
+            messageBuilder.append("Action: App locked + Intruder photo saved");
+        } else {
+            String lastTime = new SimpleDateFormat("hh:mm a", Locale.getDefault()).format(new Date(alert.getLastAt()));
+            messageBuilder.append("⚠ ALERT: ").append(alert.getIncidentCount())
+                    .append(" intrusions on your ").append(alert.getAppNames()).append("\n");
+            messageBuilder.append("Time: ").append(firstTime).append(" - ").append(lastTime).append("\n");
+            messageBuilder.append("Action: Apps locked + Intruder photos saved");
+        }
+        if (location != null) {
+            messageBuilder.append("\n").append(formatLocation(location, now));
+        }
+        return messageBuilder.toString();
+    }
 
-        String finalMessage = messageBuilder.toString();
+    /**
+     * Splits an alert into SMS parts, or returns null if the SMS service is unavailable.
+     */
+    public static ArrayList<String> divideMessage(Context context, String message) {
+        SmsManager smsManager = getSmsManager(context);
+        return smsManager != null ? smsManager.divideMessage(message) : null;
+    }
 
-        try {
-            // Initialize the Android SMS Manager
-            SmsManager smsManager;
-            
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
-                // For Android 12 and above
-                smsManager = context.getSystemService(SmsManager.class);
-            } else {
-                // For older versions
-                smsManager = SmsManager.getDefault();
-            }
+    /**
+     * Sends the parts of a queued alert to the trusted number with a sent report
+     * per part and a delivery report on the last part. Both reports go to
+     * AlertStatusReceiver, tagged with the alert and attempt they belong to.
+     *
+     * @return False if the message could not be handed to the SMS service at all.
+     */
+    public static boolean sendTrackedAlert(Context context, String trustedNumber, ArrayList<String> parts,
+                                           long alertId, int attempt) {
+        SmsManager smsManager = getSmsManager(context);
+        if (smsManager == null) return false;
 
-            if (smsManager != null) {
-                // Send the message silently in the background
-                // We use divideMessage to handle cases where the text exceeds 160 characters
-                java.util.ArrayList<String> parts = smsManager.divideMessage(finalMessage);
-                smsManager.sendMultipartTextMessage(trustedNumber, null, parts, null, null);
-                
-                Log.i(TAG, "Alert SMS successfully sent to: " + trustedNumber);
-            }
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>();
+        ArrayList<PendingIntent> deliveryIntents = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            sentIntents.add(AlertStatusReceiver.sentIntent(context, alertId, attempt, i));
+            // Only the last part asks for a delivery report, one per attempt is enough
+            deliveryIntents.add(i == parts.size() - 1
+                    ? AlertStatusReceiver.deliveredIntent(context, alertId, attempt) : null);
+        }
 
+        try {
+            smsManager.sendMultipartTextMessage(trustedNumber, null, parts, sentIntents, deliveryIntents);
+            Log.i(TAG, "Alert " + alertId + " handed to the SMS service (attempt " + attempt + ")");
+            return true;
         } catch (Exception e) {
-            Log.e(TAG, "Failed to send SMS alert: " + e.getMessage());
             // We do not show a Toast here to remain "Silent" as per requirements
+            Log.e(TAG, "Failed to send SMS alert: " + e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Optional: Method to include GPS location in the SMS if enabled in Phase 6.
-     * 
-     * @param context App context.
-     * @param latitude Device latitude.
-     * @param longitude Device longitude.
+     * Replies to a remote command with a single SMS. Longer text is cut to one part.
+     *
+     * @return True if the reply was handed to the SMS service.
      */
-    public static void sendLocationAlertSms(Context context, String targetAppName, double latitude, double longitude) {
-        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
-        String trustedNumber = db.getTrustedNumber();
-        
-        if (trustedNumber == null || trustedNumber.isEmpty()) return;
+    public static boolean sendCommandReply(Context context, String number, String text) {
+        SmsManager smsManager = getSmsManager(context);
+        if (smsManager == null) return false;
+        try {
+            ArrayList<String> parts = smsManager.divideMessage(text);
+            smsManager.sendTextMessage(number, null, parts.get(0), null, null);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to send command reply: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static SmsManager getSmsManager(Context context) {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
+            // For Android 12 and above
+            return context.getSystemService(SmsManager.class);
+        }
+        // For older versions
+        return SmsManager.getDefault();
+    }
 
-        String locationUrl = "https://maps.google.com/maps?q=" + latitude + "," + longitude;
-        String message = "⚠ ALERT: HFS detected intrusion in " + targetAppName + 
-                         ". Location: " + locationUrl;
+    /**
+     * Location line appended to an alert, e.g.
+     * "Location: https://maps.google.com/maps?q=12.97,77.59 (±30 m, 4 min old)".
+     */
+    private static String formatLocation(Location location, long now) {
+        long ageMinutes = LocationCache.ageMs(location, now) / 60000;
+        return "Location: https://maps.google.com/maps?q=" + location.getLatitude() + "," + location.getLongitude()
+                + " (±" + Math.round(location.getAccuracy()) + " m, "
+                + (ageMinutes == 0 ? "current" : ageMinutes + " min old") + ")";
+    }
 
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(trustedNumber, null, message, null, null);
-        } catch (Exception ignored) {}
+    /**
+     * Constructs the follow-up sent when a fresher fix arrives shortly after an alert.
+     */
+    public static String buildLocationFollowUp(Alert alert, Location location, long now) {
+        String alertTime = new SimpleDateFormat("hh:mm a", Locale.getDefault()).format(new Date(alert.getFirstAt()));
+        return "⚠ HFS: Updated location for the " + alertTime + " alert\n" + formatLocation(location, now);
     }
 }
\ No newline at end of file
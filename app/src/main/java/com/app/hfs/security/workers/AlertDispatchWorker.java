@@ -0,0 +1,51 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.utils.AlertDispatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes the alert queue when the next queued alert or retry is due,
+ * even if the app process was killed in the meantime.
+ */
+public class AlertDispatchWorker extends Worker {
+
+    private static final String WORK_NAME = "hfs_alert_dispatch";
+
+    public AlertDispatchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        AlertDispatcher.getInstance(getApplicationContext()).dispatchDue();
+        return Result.success();
+    }
+
+    /**
+     * Schedules the single wakeup of the alert queue, replacing any earlier one.
+     *
+     * @param wakeupAt Time the queue next needs attention, or -1 to cancel the wakeup.
+     */
+    public static void scheduleAt(Context context, long wakeupAt, long now) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        if (wakeupAt < 0) {
+            workManager.cancelUniqueWork(WORK_NAME);
+            return;
+        }
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(AlertDispatchWorker.class)
+                .setInitialDelay(Math.max(0, wakeupAt - now), TimeUnit.MILLISECONDS)
+                .build();
+        workManager.enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+}
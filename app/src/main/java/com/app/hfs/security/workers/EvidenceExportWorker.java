@@ -0,0 +1,412 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.documentfile.provider.DocumentFile;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.models.Incident;
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceCrypto;
+import com.hfs.security.utils.EvidenceManifest;
+import com.hfs.security.utils.HashingOutputStream;
+import com.hfs.security.utils.IntrusionIndexHelper;
+import com.hfs.security.utils.PerfMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * One-off job that exports incidents into a single ZIP document chosen by the
+ * user through the Storage Access Framework.
+ *
+ * The bundle holds the decrypted photos (incidents/<id>/...), metadata.json
+ * describing every incident and capture, SHA256SUMS for the exported photos
+ * and a copy of the evidence manifest. Since the manifest chains the digests
+ * of the encrypted source files, metadata.json lists each photo's source
+ * digest and the digest the manifest recorded for it next to the photo's own,
+ * linking every exported photo to its manifest entry. Everything is streamed through one
+ * fixed-size buffer straight into the document, so memory use does not
+ * depend on the size of the export. Progress is published per incident,
+ * and cancelling the work deletes the partial document. A capture that
+ * cannot be read (missing, truncated or tampered) does not fail the export:
+ * it is left out of SHA256SUMS and its error is recorded in metadata.json.
+ */
+public class EvidenceExportWorker extends Worker {
+
+    private static final String TAG = "HFS_EvidenceExport";
+    public static final String UNIQUE_WORK_NAME = "hfs_evidence_export";
+
+    // Input: target document, and either the incident IDs or the export-all flag
+    private static final String KEY_TARGET_URI = "target_uri";
+    private static final String KEY_INCIDENT_IDS = "incident_ids";
+    private static final String KEY_EXPORT_ALL = "export_all";
+
+    // Progress and output
+    public static final String KEY_DONE = "done";
+    public static final String KEY_TOTAL = "total";
+    public static final String KEY_PHOTOS = "photos";
+
+    // The only buffer used for copying; the ZIP stream gets one of the same size
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_SIZE = 200;
+
+    private final IntrusionIndexHelper index;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    // Exported entry, photo digest and source file digest per capture ID, for metadata.json
+    private final Map<Long, String[]> exported = new HashMap<>();
+    // Entry (null if none was opened) and error per capture that could not be read
+    private final Map<Long, String[]> failed = new HashMap<>();
+    private final SimpleDateFormat entryDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+
+    public EvidenceExportWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        index = IntrusionIndexHelper.getInstance(context);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String target = getInputData().getString(KEY_TARGET_URI);
+        if (target == null) return Result.failure();
+        Uri uri = Uri.parse(target);
+        DocumentFile document = DocumentFile.fromSingleUri(getApplicationContext(), uri);
+        if (document == null || !document.canWrite()) {
+            Log.e(TAG, "Export target is not writable: " + uri);
+            return Result.failure();
+        }
+
+        long start = System.nanoTime();
+        List<Long> incidentIds = resolveIncidentIds();
+        long bytes = 0;
+        boolean complete = false;
+
+        try (OutputStream out = getApplicationContext().getContentResolver().openOutputStream(uri, "w")) {
+            if (out == null) throw new IOException("Cannot open export target");
+            ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+
+            // 1. Photos, one incident at a time
+            StringBuilder sums = new StringBuilder();
+            for (int i = 0; i < incidentIds.size(); i++) {
+                if (isStopped()) break;
+                for (IntruderLog capture : index.getIncidentCaptures(incidentIds.get(i))) {
+                    if (isStopped()) break;
+                    if (capture.hasPhoto()) {
+                        bytes += writePhoto(zip, incidentIds.get(i), capture, sums);
+                    }
+                }
+                setProgressAsync(new Data.Builder()
+                        .putInt(KEY_DONE, i + 1)
+                        .putInt(KEY_TOTAL, incidentIds.size())
+                        .build());
+            }
+
+            if (!isStopped()) {
+                // 2. Metadata, digests and the manifest are small and compress well
+                zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+                writeMetadata(zip, incidentIds);
+
+                zip.putNextEntry(new ZipEntry("SHA256SUMS"));
+                zip.write(sums.toString().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry("evidence_manifest.log"));
+                EvidenceManifest.getInstance(getApplicationContext()).copyTo(zip, buffer);
+                zip.closeEntry();
+
+                zip.finish();
+                complete = true;
+            }
+            zip.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Export failed: " + e.getMessage());
+        }
+
+        if (!complete) {
+            // Cancelled or failed: do not leave a truncated bundle behind
+            document.delete();
+            return Result.failure();
+        }
+
+        PerfMetrics.record("export.bundle", System.nanoTime() - start, bytes);
+        Log.i(TAG, "Exported " + exported.size() + " photos from " + incidentIds.size() + " incidents, "
+                + failed.size() + " unreadable");
+        return Result.success(new Data.Builder()
+                .putInt(KEY_TOTAL, incidentIds.size())
+                .putInt(KEY_PHOTOS, exported.size())
+                .build());
+    }
+
+    private List<Long> resolveIncidentIds() {
+        List<Long> ids = new ArrayList<>();
+        if (!getInputData().getBoolean(KEY_EXPORT_ALL, false)) {
+            long[] selected = getInputData().getLongArray(KEY_INCIDENT_IDS);
+            if (selected != null) {
+                for (long id : selected) ids.add(id);
+            }
+            return ids;
+        }
+
+        // Only the IDs are kept; incident details are read again per incident
+        long beforeStartedAt = Long.MAX_VALUE;
+        long beforeId = Long.MAX_VALUE;
+        List<Incident> page;
+        do {
+            page = index.getIncidentsPage(beforeStartedAt, beforeId, PAGE_SIZE);
+            for (Incident incident : page) {
+                ids.add(incident.getId());
+            }
+            if (!page.isEmpty()) {
+                Incident last = page.get(page.size() - 1);
+                beforeStartedAt = last.getStartedAt();
+                beforeId = last.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        return ids;
+    }
+
+    /**
+     * Streams one decrypted photo into its own ZIP entry, hashing it on the way.
+     * The first block is read before the entry is opened, to pick the file extension.
+     * Read errors only affect this capture; write errors (the target) fail the export.
+     *
+     * @return The number of photo bytes written.
+     */
+    private long writePhoto(ZipOutputStream zip, long incidentId, IntruderLog capture,
+                            StringBuilder sums) throws IOException {
+        File file = new File(capture.getFilePath());
+        InputStream in = null;
+        String name = null;
+        long written = 0;
+        try {
+            in = EvidenceCrypto.isEncrypted(file.getPath())
+                    ? EvidenceCrypto.openSection(file, EvidenceCrypto.SECTION_IMAGE)
+                    : new FileInputStream(file);
+            int head = readFully(in, buffer);
+            name = "incidents/" + incidentId + "/"
+                    + entryDateFormat.format(new Date(capture.getTimestamp()))
+                    + "_" + capture.getId() + extensionOf(buffer, head);
+
+            // Photos are already compressed; storing them deflated at level 0 avoids wasted CPU
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(name));
+            HashingOutputStream hashing = new HashingOutputStream(new NonClosingOutputStream(zip));
+            hashing.write(buffer, 0, head);
+            written = head;
+            IOException readError = null;
+            while (!isStopped()) {
+                int n;
+                try {
+                    n = in.read(buffer);
+                } catch (IOException e) {
+                    readError = e;
+                    break;
+                }
+                if (n == -1) break;
+                hashing.write(buffer, 0, n);
+                written += n;
+            }
+            zip.closeEntry();
+
+            if (readError != null) {
+                // The entry holds what could be read; it is not listed as a verified copy
+                fail(capture, name, readError);
+                return written;
+            }
+            String sha = EvidenceManifest.toHex(hashing.getDigest());
+            sums.append(sha).append("  ").append(name).append('\n');
+            exported.put(capture.getId(), new String[]{name, sha, hashSource(file)});
+            return written;
+        } catch (IOException e) {
+            // Opening or the first read failed, before anything was written to the bundle
+            if (name != null) throw e;
+            fail(capture, null, e);
+            return 0;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Nothing left to read
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes the evidence file as stored, to match it against its manifest entry.
+     *
+     * @return The digest, or null if the file could not be read again.
+     */
+    private static String hashSource(File file) {
+        try {
+            return EvidenceManifest.hashFile(file);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not hash " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void fail(IntruderLog capture, String entryName, IOException error) {
+        Log.w(TAG, "Unreadable evidence " + capture.getFileName() + ": " + error.getMessage());
+        failed.put(capture.getId(), new String[]{entryName, String.valueOf(error.getMessage())});
+    }
+
+    /**
+     * Writes metadata.json for the exported incidents, streaming each incident
+     * as it is read from the index.
+     */
+    private void writeMetadata(ZipOutputStream zip, List<Long> incidentIds) throws IOException {
+        zip.putNextEntry(new ZipEntry("metadata.json"));
+        Writer writer = new OutputStreamWriter(new NonClosingOutputStream(zip), StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+
+        // Read before the manifest is copied, so the copy holds every entry referenced here
+        Map<String, String> recorded = EvidenceManifest.getInstance(getApplicationContext()).getRecordedDigests();
+
+        json.beginObject();
+        json.name("exported_at").value(System.currentTimeMillis());
+        json.name("incidents").beginArray();
+        for (long incidentId : incidentIds) {
+            Incident incident = index.getIncident(incidentId);
+            if (incident == null) continue;
+
+            json.beginObject();
+            json.name("id").value(incident.getId());
+            json.name("app_name").value(incident.getAppName());
+            json.name("package_name").value(incident.getPackageName());
+            json.name("started_at").value(incident.getStartedAt());
+            json.name("last_event_at").value(incident.getLastEventAt());
+            json.name("sessions").value(incident.getSessionCount());
+            json.name("attempts").value(incident.getAttemptCount());
+            json.name("wrong_pins").value(incident.getWrongPinCount());
+            json.name("alert_status").value(incident.getAlertStatus());
+            json.name("captures").beginArray();
+            for (IntruderLog capture : index.getIncidentCaptures(incidentId)) {
+                json.beginObject();
+                json.name("id").value(capture.getId());
+                json.name("timestamp").value(capture.getTimestamp());
+                json.name("verdict_score").value(capture.getVerdictScore());
+                json.name("occurrences").value(capture.getOccurrences());
+                json.name("source_file").value(capture.getFileName());
+                String[] entry = exported.get(capture.getId());
+                if (entry != null) {
+                    json.name("file").value(entry[0]);
+                    json.name("sha256").value(entry[1]);
+                    if (entry[2] != null) json.name("source_sha256").value(entry[2]);
+                    String manifestSha = recorded.get(capture.getFileName());
+                    if (manifestSha != null) json.name("manifest_sha256").value(manifestSha);
+                }
+                String[] failure = failed.get(capture.getId());
+                if (failure != null) {
+                    // A file entry here is incomplete
+                    if (failure[0] != null) json.name("file").value(failure[0]);
+                    json.name("error").value(failure[1]);
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        zip.closeEntry();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        int n;
+        while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) != -1) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Picks the entry extension from the image signature (JPEG or WebP).
+     */
+    private static String extensionOf(byte[] head, int length) {
+        if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return ".webp";
+        }
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return ".png";
+        }
+        return ".jpg";
+    }
+
+    /**
+     * Lets per-entry writers be flushed or closed without closing the ZIP stream.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Starts an export into the given document, replacing any export in progress.
+     *
+     * @param target Document created by the user through ACTION_CREATE_DOCUMENT.
+     * @param incidentIds Incidents to export, or null to export the whole history.
+     */
+    public static void enqueue(Context context, Uri target, long[] incidentIds) {
+        Data.Builder input = new Data.Builder().putString(KEY_TARGET_URI, target.toString());
+        if (incidentIds == null) {
+            input.putBoolean(KEY_EXPORT_ALL, true);
+        } else {
+            input.putLongArray(KEY_INCIDENT_IDS, incidentIds);
+        }
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(EvidenceExportWorker.class)
+                .setInputData(input.build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                UNIQUE_WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+    }
+}
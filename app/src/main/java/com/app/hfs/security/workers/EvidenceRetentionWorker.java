@@ -0,0 +1,53 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.utils.EvidenceManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job that enforces the evidence retention policy
+ * (maximum age, count and total size) through the EvidenceManager.
+ */
+public class EvidenceRetentionWorker extends Worker {
+
+    private static final String UNIQUE_WORK_NAME = "hfs_evidence_retention";
+
+    public EvidenceRetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        EvidenceManager.getInstance(getApplicationContext()).enforceRetention();
+        return Result.success();
+    }
+
+    /**
+     * Schedules the retention job twice a day. Safe to call on every app start;
+     * an already scheduled job is kept.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                EvidenceRetentionWorker.class, 12, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+}
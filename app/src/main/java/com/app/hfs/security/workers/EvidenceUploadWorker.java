@@ -0,0 +1,243 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.EvidenceCrypto;
+import com.hfs.security.utils.FileSecureHelper;
+import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.IntrusionIndexHelper;
+import com.hfs.security.utils.ResumableUploader;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads encrypted evidence files off the device, so captures survive a
+ * wiped or stolen phone. The device's Keystore key dies with the phone, so
+ * what is uploaded is a recovery copy whose data key is wrapped for the
+ * owner's recovery key instead (see EvidenceCrypto.writeRecoveryCopy). The
+ * copy is staged in private storage and kept until its upload completes, so
+ * a resumed upload continues with the same bytes. Each copy is uploaded
+ * under its own name, so a copy that had to be written again never resumes
+ * the partial upload of an earlier one. Pending captures are read from the intrusion index
+ * in batches and sent one after another through a single ResumableUploader,
+ * which reuses the kept-alive connection across the captures of several
+ * incidents. An interrupted file resumes from the server's offset on the
+ * next run. The transfer summary is shown in Settings > Diagnostics.
+ *
+ * All uploads run as one unique chain of one-time jobs, so two runs never
+ * send the same capture at once. The periodic job only appends a run to
+ * that chain.
+ */
+public class EvidenceUploadWorker extends Worker {
+
+    private static final String TAG = "HFS_EvidenceUpload";
+    private static final String PERIODIC_WORK_NAME = "hfs_evidence_upload";
+    private static final String IMMEDIATE_WORK_NAME = "hfs_evidence_upload_now";
+
+    // Input flag of the periodic job: queue an upload run instead of uploading
+    private static final String KEY_TRIGGER_ONLY = "trigger_only";
+
+    // Captures read from the index per batch
+    private static final int BATCH_SIZE = 10;
+
+    public EvidenceUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(getApplicationContext());
+        if (!db.isUploadEnabled()) return Result.success();
+        if (getInputData().getBoolean(KEY_TRIGGER_ONLY, false)) {
+            requestUpload(getApplicationContext());
+            return Result.success();
+        }
+
+        PublicKey recoveryKey;
+        try {
+            recoveryKey = EvidenceCrypto.parseRecoveryKey(db.getUploadRecoveryKey());
+        } catch (GeneralSecurityException e) {
+            // Settings validate the key, so this only happens if it was changed behind their back
+            Log.e(TAG, "Recovery key unusable, not uploading: " + e.getMessage());
+            return Result.failure();
+        }
+
+        IntrusionIndexHelper index = IntrusionIndexHelper.getInstance(getApplicationContext());
+        File staging = FileSecureHelper.getUploadStagingDirectory(getApplicationContext());
+        ResumableUploader uploader = new ResumableUploader(db.getUploadEndpoint(), db.getUploadToken(),
+                ResumableUploader.DEFAULT_CHUNK_SIZE);
+        String deviceId = db.getUploadDeviceId();
+
+        try {
+            List<IntruderLog> batch;
+            while (!isStopped() && !(batch = index.getPendingUploads(BATCH_SIZE)).isEmpty()) {
+                for (IntruderLog capture : batch) {
+                    if (isStopped()) break;
+                    File file = new File(capture.getFilePath());
+                    File copy = findStagedCopy(staging, capture.getId());
+                    if (copy == null && file.exists()) {
+                        copy = stageRecoveryCopy(file, staging, capture.getId(), recoveryKey);
+                    }
+                    if (!file.exists() || copy == null) {
+                        // Deleted by retention or the user before it could be uploaded, or unreadable
+                        index.updateUploadState(capture.getId(), IntrusionIndexHelper.UPLOAD_SKIPPED);
+                        if (copy != null) copy.delete();
+                        continue;
+                    }
+                    String copyName = copy.getName().substring(0,
+                            copy.getName().length() - EvidenceCrypto.FILE_EXTENSION.length());
+                    uploader.upload(copy, deviceId + "-" + copyName, metadataOf(capture));
+                    index.updateUploadState(capture.getId(), IntrusionIndexHelper.UPLOAD_DONE);
+                    copy.delete();
+                }
+            }
+            if (!isStopped()) {
+                // Nothing is pending any more; copies left over belong to deleted captures
+                deleteStagedCopies(staging);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Upload interrupted, will resume: " + e.getMessage());
+            saveSummary(db, uploader, "interrupted (" + e.getMessage() + ")");
+            return Result.retry();
+        }
+
+        if (uploader.getStats().files > 0 || uploader.getStats().retries > 0) {
+            saveSummary(db, uploader, "complete");
+        }
+        return Result.success();
+    }
+
+    /**
+     * Returns the recovery copy an earlier run staged for a capture, or null.
+     */
+    private static File findStagedCopy(File staging, long captureId) {
+        String prefix = captureId + "-";
+        File[] files = staging.listFiles();
+        if (files == null) return null;
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && file.getName().endsWith(EvidenceCrypto.FILE_EXTENSION)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the recovery copy of a capture, named captureId-creationTime.
+     * @return The copy, or null if the evidence cannot be read, so it can never be uploaded.
+     */
+    private static File stageRecoveryCopy(File file, File staging, long captureId, PublicKey recoveryKey) {
+        String name = captureId + "-" + Long.toString(System.currentTimeMillis(), 36);
+        File copy = new File(staging, name + EvidenceCrypto.FILE_EXTENSION);
+        File partial = new File(staging, name + ".tmp");
+        try {
+            EvidenceCrypto.writeRecoveryCopy(file, partial, recoveryKey);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot prepare " + file.getName() + " for upload: " + e.getMessage());
+            partial.delete();
+            return null;
+        }
+        return partial.renameTo(copy) ? copy : null;
+    }
+
+    private static void deleteStagedCopies(File staging) {
+        File[] files = staging.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private void saveSummary(HFSDatabaseHelper db, ResumableUploader uploader, String outcome) {
+        String time = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault()).format(new Date());
+        String summary = time + ": " + uploader.getStats().summary() + ", " + outcome
+                + (getRunAttemptCount() > 0 ? ", attempt " + (getRunAttemptCount() + 1) : "");
+        db.saveUploadSummary(summary);
+        Log.i(TAG, summary);
+    }
+
+    private static Map<String, String> metadataOf(IntruderLog capture) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("filename", capture.getFileName());
+        metadata.put("intrusion_id", String.valueOf(capture.getId()));
+        metadata.put("package_name", capture.getPackageName());
+        metadata.put("app_name", capture.getAppName());
+        metadata.put("timestamp", String.valueOf(capture.getTimestamp()));
+        return metadata;
+    }
+
+    private static Constraints constraints(HFSDatabaseHelper db) {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(db.isUploadUnmeteredOnly() ? NetworkType.UNMETERED : NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+    }
+
+    /**
+     * Schedules the periodic catch-up upload, or cancels it when uploading
+     * is disabled. Safe to call on every app start and after settings change.
+     */
+    public static void schedule(Context context) {
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        WorkManager workManager = WorkManager.getInstance(context);
+        if (!db.isUploadEnabled()) {
+            workManager.cancelUniqueWork(PERIODIC_WORK_NAME);
+            workManager.cancelUniqueWork(IMMEDIATE_WORK_NAME);
+            deleteStagedCopies(FileSecureHelper.getUploadStagingDirectory(context));
+            return;
+        }
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                EvidenceUploadWorker.class, 6, TimeUnit.HOURS)
+                .setConstraints(constraints(db))
+                .setInputData(new Data.Builder().putBoolean(KEY_TRIGGER_ONLY, true).build())
+                .build();
+
+        // UPDATE so changed network constraints take effect
+        workManager.enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.UPDATE, request);
+    }
+
+    /**
+     * Uploads new evidence as soon as the constraints allow. Called after a capture.
+     */
+    public static void requestUpload(Context context) {
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        if (!db.isUploadEnabled()) return;
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(EvidenceUploadWorker.class)
+                .setConstraints(constraints(db))
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .build();
+
+        // A running upload keeps going; this run follows it and picks up whatever is still pending
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                IMMEDIATE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+}
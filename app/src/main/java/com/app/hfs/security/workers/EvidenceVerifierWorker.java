@@ -0,0 +1,63 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.utils.EvidenceManifest;
+import com.hfs.security.utils.HFSDatabaseHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job that verifies the evidence manifest chain and re-hashes the
+ * evidence files, recording the outcome for Settings > Diagnostics.
+ */
+public class EvidenceVerifierWorker extends Worker {
+
+    private static final String TAG = "HFS_EvidenceVerifier";
+    private static final String UNIQUE_WORK_NAME = "hfs_evidence_verifier";
+
+    public EvidenceVerifierWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        EvidenceManifest.VerificationResult result =
+                EvidenceManifest.getInstance(getApplicationContext()).verify();
+        HFSDatabaseHelper.getInstance(getApplicationContext())
+                .saveIntegrityReport(System.currentTimeMillis(), result.summary());
+        if (!result.isIntact()) {
+            Log.w(TAG, result.summary());
+        }
+        return Result.success();
+    }
+
+    /**
+     * Schedules the verification once a day while the device is idle, since it
+     * reads every evidence file. Safe to call on every app start.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresDeviceIdle(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                EvidenceVerifierWorker.class, 24, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+}
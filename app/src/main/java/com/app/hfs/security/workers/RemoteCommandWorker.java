@@ -0,0 +1,155 @@
+package com.hfs.security.workers;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.hfs.security.services.AppMonitorService;
+import com.hfs.security.utils.EvidenceManager;
+import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.SmsCommandParser;
+import com.hfs.security.utils.SmsHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the bulk remote commands (WIPE-EVIDENCE, ARM) outside the SMS
+ * broadcast, whose time budget is too short for them. The PIN has already
+ * been verified by SmsCommandReceiver. Each command applies its changes in
+ * one transaction and replies to the sender only after they are durable.
+ * Commands are chained, so they run in the order they arrived.
+ */
+public class RemoteCommandWorker extends Worker {
+
+    private static final String TAG = "HFS_RemoteCommand";
+    private static final String WORK_NAME = "hfs_remote_command";
+
+    private static final String KEY_COMMAND = "COMMAND";
+    private static final String KEY_SENDER = "SENDER";
+    private static final String KEY_ARGUMENT = "ARGUMENT";
+
+    // How long ARM waits for a freshly started guard to tick
+    private static final long GUARD_START_WAIT_MS = 3000;
+
+    public RemoteCommandWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String sender = getInputData().getString(KEY_SENDER);
+        String argument = getInputData().getString(KEY_ARGUMENT);
+        SmsCommandParser.Type type;
+        try {
+            type = SmsCommandParser.Type.valueOf(getInputData().getString(KEY_COMMAND));
+        } catch (Exception e) {
+            return Result.failure();
+        }
+
+        String reply;
+        try {
+            switch (type) {
+                case WIPE_EVIDENCE:
+                    reply = wipeEvidence();
+                    break;
+                case ARM:
+                    reply = arm(argument);
+                    break;
+                default:
+                    return Result.failure();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Remote " + type.keyword + " failed: " + e.getMessage());
+            reply = "HFS " + type.keyword + " failed: " + e.getMessage();
+        }
+
+        SmsHelper.sendCommandReply(getApplicationContext(), sender, reply);
+        return Result.success();
+    }
+
+    private String wipeEvidence() throws Exception {
+        int files = EvidenceManager.getInstance(getApplicationContext()).wipeAllEvidence();
+        return "HFS WIPE-EVIDENCE done: " + files + " evidence files removed.";
+    }
+
+    private String arm(String argument) {
+        List<String> packages = SmsCommandParser.parsePackages(argument);
+        if (packages == null) return "HFS ARM failed: invalid package name.";
+
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(getApplicationContext());
+        if (!db.addProtectedPackages(packages)) return "HFS ARM failed: settings could not be saved.";
+
+        // Report packages that are not installed (yet); they stay armed for when they are
+        PackageManager pm = getApplicationContext().getPackageManager();
+        List<String> missing = new ArrayList<>();
+        for (String packageName : packages) {
+            try {
+                pm.getApplicationInfo(packageName, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                missing.add(packageName);
+            }
+        }
+
+        String guard = ensureGuardRunning() ? "guard ON" : "guard OFF, open HFS to start it";
+        return "HFS ARM done: " + packages.size() + " app(s) protected, "
+                + db.getProtectedAppsCount() + " in total, " + guard + "."
+                + (missing.isEmpty() ? "" : " Not installed: " + String.join(",", missing));
+    }
+
+    /**
+     * Starts the guard if it is not ticking and reports whether it actually runs.
+     * Android 12+ refuses foreground-service starts from background work, so the
+     * reply is based on the monitor's tick time rather than on the start call.
+     */
+    private boolean ensureGuardRunning() {
+        if (AppMonitorService.isGuardActive(System.currentTimeMillis())) return true;
+        try {
+            getApplicationContext().startForegroundService(
+                    new Intent(getApplicationContext(), AppMonitorService.class));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not start the monitor service: " + e.getMessage());
+            return false;
+        }
+
+        // Give the service a few ticks to come up
+        long deadline = System.currentTimeMillis() + GUARD_START_WAIT_MS;
+        long requestedAt = System.currentTimeMillis();
+        while (System.currentTimeMillis() < deadline) {
+            if (AppMonitorService.getLastTickAt() >= requestedAt) return true;
+            try {
+                Thread.sleep(250);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return AppMonitorService.getLastTickAt() >= requestedAt;
+    }
+
+    /**
+     * Queues a verified bulk command behind any command still running.
+     */
+    public static void enqueue(Context context, SmsCommandParser.Type type, String sender, String argument) {
+        Data input = new Data.Builder()
+                .putString(KEY_COMMAND, type.name())
+                .putString(KEY_SENDER, sender)
+                .putString(KEY_ARGUMENT, argument)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RemoteCommandWorker.class)
+                .setInputData(input)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+}
@@ -0,0 +1,114 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.models.Alert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the alert fan-out with in-memory channels: latency from the
+ * intrusion to the last channel receiving the alert, channel parallelism,
+ * and the outcome AlertDispatcher bases its retries on.
+ */
+public class AlertFanoutTest {
+
+    private static final long SLOW_CHANNEL_MS = 200;
+    // Generous bound for a loaded CI machine; the fan-out itself takes well under a millisecond
+    private static final long MAX_DISPATCH_LATENCY_MS = 1000;
+
+    private AlertFanout fanout;
+
+    @Before
+    public void setUp() {
+        fanout = new AlertFanout(3);
+    }
+
+    @Test
+    public void fansOutToEveryChannel() {
+        List<InMemoryAlertChannel> channels = Arrays.asList(
+                new InMemoryAlertChannel("a"), new InMemoryAlertChannel("b"), new InMemoryAlertChannel("c"));
+
+        AlertFanout.Result result = fanout.send(Collections.unmodifiableList(channels), alert(1), "intruder", 1);
+
+        assertEquals(3, result.sent);
+        assertEquals(3, result.delivered);
+        assertTrue(result.failures.isEmpty());
+        for (InMemoryAlertChannel channel : channels) {
+            assertEquals(1, channel.getDeliveries().size());
+            assertEquals("intruder", channel.getDeliveries().get(0).message);
+        }
+    }
+
+    @Test
+    public void measuresLatencyFromIntrusionToDispatch() {
+        InMemoryAlertChannel sms = new InMemoryAlertChannel("sms");
+        InMemoryAlertChannel log = new InMemoryAlertChannel("log", true);
+        Alert alert = alert(System.currentTimeMillis());
+
+        long start = System.nanoTime();
+        fanout.send(Arrays.<AlertChannel>asList(sms, log), alert, "intruder", 1);
+        long fanoutNanos = System.nanoTime() - start;
+
+        long latencyMs = Math.max(sms.getDeliveries().get(0).receivedAtMillis,
+                log.getDeliveries().get(0).receivedAtMillis) - alert.getFirstAt();
+        PerfMetrics.record("test.alert.latency", TimeUnit.MILLISECONDS.toNanos(latencyMs), 0);
+        PerfMetrics.record("test.alert.fanout", fanoutNanos, 0);
+        System.out.println(PerfMetrics.report());
+        assertTrue("Dispatch took " + latencyMs + " ms", latencyMs < MAX_DISPATCH_LATENCY_MS);
+    }
+
+    @Test
+    public void slowChannelDoesNotDelayTheOthers() {
+        InMemoryAlertChannel slow = new InMemoryAlertChannel("slow");
+        slow.setDelayMs(SLOW_CHANNEL_MS);
+        InMemoryAlertChannel fast = new InMemoryAlertChannel("fast");
+        InMemoryAlertChannel alsoSlow = new InMemoryAlertChannel("also_slow");
+        alsoSlow.setDelayMs(SLOW_CHANNEL_MS);
+
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        AlertFanout.Result result = fanout.send(Arrays.<AlertChannel>asList(slow, fast, alsoSlow),
+                alert(startMillis), "intruder", 1);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(3, result.sent);
+        long fastMs = fast.getDeliveries().get(0).receivedAtMillis - startMillis;
+        assertTrue("Fast channel waited " + fastMs + " ms", fastMs < SLOW_CHANNEL_MS);
+        // In parallel the two slow channels overlap instead of adding up
+        assertTrue("Fan-out took " + elapsedMs + " ms", elapsedMs < 2 * SLOW_CHANNEL_MS);
+        assertTrue(result.channelNanos.get("slow") >= TimeUnit.MILLISECONDS.toNanos(SLOW_CHANNEL_MS));
+    }
+
+    @Test
+    public void failedAttemptIsNotDeliveredAndRetrySucceeds() {
+        InMemoryAlertChannel sms = new InMemoryAlertChannel("sms");
+        InMemoryAlertChannel log = new InMemoryAlertChannel("log", true);
+        sms.failNext(1);
+        List<AlertChannel> channels = Arrays.<AlertChannel>asList(sms, log);
+
+        // Only the local log took it, so AlertDispatcher schedules a retry
+        AlertFanout.Result first = fanout.send(channels, alert(1), "intruder", 1);
+        assertEquals(1, first.sent);
+        assertEquals(0, first.delivered);
+        assertTrue(first.failures.containsKey("sms"));
+
+        AlertFanout.Result retry = fanout.send(channels, alert(1), "intruder", 2);
+        assertEquals(1, retry.delivered);
+        assertTrue(retry.failures.isEmpty());
+        assertEquals(1, sms.getDeliveries().size());
+        assertEquals(2, sms.getDeliveries().get(0).attempt);
+        assertEquals(2, log.getDeliveries().size());
+    }
+
+    private static Alert alert(long firstAt) {
+        return new Alert(1, 0, "Gallery", firstAt, firstAt, 1, 0);
+    }
+}
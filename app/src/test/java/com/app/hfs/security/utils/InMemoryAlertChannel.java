@@ -0,0 +1,123 @@
+package com.hfs.security.utils;
+
+import com.hfs.security.models.Alert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fake channel that keeps dispatched alerts in memory, for tests that
+ * measure the alert path. Can be told to fail a number of sends to
+ * exercise the retry logic, to take a while like a real transport, or to
+ * act as a local-only channel.
+ */
+public class InMemoryAlertChannel implements AlertChannel {
+
+    /**
+     * One alert attempt as received by the channel.
+     */
+    public static class Delivery {
+        public final long alertId;
+        public final int attempt;
+        public final String message;
+        public final long receivedAtMillis;
+
+        Delivery(long alertId, int attempt, String message, long receivedAtMillis) {
+            this.alertId = alertId;
+            this.attempt = attempt;
+            this.message = message;
+            this.receivedAtMillis = receivedAtMillis;
+        }
+    }
+
+    private final String name;
+    private final boolean local;
+    private final List<Delivery> deliveries = new ArrayList<>();
+    private int failuresLeft;
+    private volatile long delayMs;
+
+    public InMemoryAlertChannel(String name) {
+        this(name, false);
+    }
+
+    public InMemoryAlertChannel(String name, boolean local) {
+        this.name = name;
+        this.local = local;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return local;
+    }
+
+    @Override
+    public int send(Alert alert, String message, int attempt) throws IOException {
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+        return record(alert, message, attempt);
+    }
+
+    private synchronized int record(Alert alert, String message, int attempt) throws IOException {
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            throw new IOException("Simulated failure");
+        }
+        deliveries.add(new Delivery(alert.getId(), attempt, message, System.currentTimeMillis()));
+        notifyAll();
+        return 0;
+    }
+
+    /**
+     * Makes every send take this long, like a slow transport.
+     */
+    public void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    /**
+     * Makes the next sends throw.
+     */
+    public synchronized void failNext(int count) {
+        failuresLeft = count;
+    }
+
+    public synchronized List<Delivery> getDeliveries() {
+        return new ArrayList<>(deliveries);
+    }
+
+    public synchronized void clear() {
+        deliveries.clear();
+    }
+
+    /**
+     * Waits until at least the given number of alerts arrived.
+     *
+     * @return False on timeout.
+     */
+    public synchronized boolean awaitDeliveries(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (deliveries.size() < count) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            wait(left);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs ResumableUploader against a local tus-style mock server.
+ */
+public class ResumableUploaderTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final String UPLOAD_ID = "device-1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockTusServer server;
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockTusServer();
+        content = new byte[10 * 1024 + 123];
+        new Random(7).nextBytes(content);
+        file = folder.newFile("capture.hfse");
+        Files.write(file.toPath(), content);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void uploadsWholeFileInChunks() throws IOException {
+        ResumableUploader uploader = newUploader();
+        uploader.upload(file, UPLOAD_ID, Collections.singletonMap("filename", "capture.hfse"));
+
+        assertArrayEquals(content, server.received(UPLOAD_ID));
+        assertEquals(3, uploader.getStats().chunks);
+        assertEquals(1, uploader.getStats().files);
+        assertEquals(0, uploader.getStats().retries);
+        assertEquals(content.length, uploader.getStats().bytesSent);
+    }
+
+    @Test
+    public void retriesRejectedChunk() throws IOException {
+        server.rejectNextPatches = 1;
+
+        ResumableUploader uploader = newUploader();
+        uploader.upload(file, UPLOAD_ID, Collections.emptyMap());
+
+        assertArrayEquals(content, server.received(UPLOAD_ID));
+        assertEquals(1, uploader.getStats().retries);
+    }
+
+    @Test
+    public void resumesFromServerOffset() throws IOException {
+        int alreadyUploaded = 5000;
+        server.seed(UPLOAD_ID, content, alreadyUploaded);
+
+        ResumableUploader uploader = newUploader();
+        uploader.upload(file, UPLOAD_ID, Collections.emptyMap());
+
+        assertArrayEquals(content, server.received(UPLOAD_ID));
+        assertEquals(alreadyUploaded, uploader.getStats().bytesSkipped);
+        assertEquals(content.length - alreadyUploaded, uploader.getStats().bytesSent);
+    }
+
+    @Test
+    public void resyncsAfterConflict() throws IOException {
+        // The chunk is stored but its response is lost: the retry hits 409 and the client asks for the offset
+        server.loseNextPatchResponses = 1;
+
+        ResumableUploader uploader = newUploader();
+        uploader.upload(file, UPLOAD_ID, Collections.emptyMap());
+
+        assertArrayEquals(content, server.received(UPLOAD_ID));
+        assertEquals(1, server.conflicts);
+    }
+
+    private ResumableUploader newUploader() {
+        return new ResumableUploader(server.endpoint(), "secret", CHUNK_SIZE);
+    }
+
+    /**
+     * Minimal tus server: HEAD reports the offset, PATCH (sent as POST with
+     * X-HTTP-Method-Override) appends at the expected offset or answers 409.
+     */
+    private static class MockTusServer {
+        private final HttpServer http;
+        private final Map<String, ByteArrayOutputStream> uploads = new HashMap<>();
+
+        // Answer the next PATCH requests with 500 without storing them
+        int rejectNextPatches;
+        // Store the next PATCH requests but answer them with 500
+        int loseNextPatchResponses;
+        int conflicts;
+
+        MockTusServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/files/", this::handle);
+            http.start();
+        }
+
+        String endpoint() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/files/";
+        }
+
+        synchronized void seed(String id, byte[] bytes, int length) {
+            ByteArrayOutputStream stored = new ByteArrayOutputStream();
+            stored.write(bytes, 0, length);
+            uploads.put(id, stored);
+        }
+
+        synchronized byte[] received(String id) {
+            ByteArrayOutputStream stored = uploads.get(id);
+            return stored != null ? stored.toByteArray() : new byte[0];
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        private synchronized void handle(HttpExchange exchange) throws IOException {
+            String id = exchange.getRequestURI().getPath().substring("/files/".length());
+            ByteArrayOutputStream stored = uploads.get(id);
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                if (stored == null) {
+                    respond(exchange, 404, -1);
+                } else {
+                    respond(exchange, 200, stored.size());
+                }
+                return;
+            }
+
+            byte[] body = readAll(exchange.getRequestBody());
+            if (!"PATCH".equals(exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override"))) {
+                respond(exchange, 405, -1);
+                return;
+            }
+            if (rejectNextPatches > 0) {
+                rejectNextPatches--;
+                respond(exchange, 500, -1);
+                return;
+            }
+
+            long offset = Long.parseLong(exchange.getRequestHeaders().getFirst("Upload-Offset"));
+            if (stored == null) {
+                stored = new ByteArrayOutputStream();
+                uploads.put(id, stored);
+            }
+            if (offset != stored.size()) {
+                conflicts++;
+                respond(exchange, 409, -1);
+                return;
+            }
+            stored.write(body, 0, body.length);
+
+            if (loseNextPatchResponses > 0) {
+                loseNextPatchResponses--;
+                respond(exchange, 500, -1);
+                return;
+            }
+            respond(exchange, 204, stored.size());
+        }
+
+        private static void respond(HttpExchange exchange, int code, long offset) throws IOException {
+            exchange.getResponseHeaders().add("Tus-Resumable", "1.0.0");
+            if (offset >= 0) {
+                exchange.getResponseHeaders().add("Upload-Offset", String.valueOf(offset));
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        }
+
+        private static byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}